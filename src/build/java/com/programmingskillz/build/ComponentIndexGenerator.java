@@ -0,0 +1,92 @@
+package com.programmingskillz.build;
+
+import com.programmingskillz.SampleApplication;
+import com.programmingskillz.util.ComponentIndex;
+import io.swagger.jaxrs.config.BeanConfig;
+import io.swagger.util.Json;
+import org.glassfish.jersey.server.internal.scanning.AnnotationAcceptingListener;
+import org.glassfish.jersey.server.internal.scanning.PackageNamesScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs during the {@code process-test-classes} phase and writes {@link ComponentIndex#COMPONENTS} and
+ * {@link ComponentIndex#SWAGGER} into the given output directory, so that {@link SampleApplication} neither
+ * scans the classpath nor reflects over the resources for Swagger at startup.
+ * <p>
+ * Uses the same scanner as {@code ResourceConfig.packages(...)} and the same {@link BeanConfig}, so the
+ * result is what the application would find by scanning. Lives in {@code src/build/java}, compiled with the
+ * tests, so it is not packaged into the WAR.
+ *
+ * @author Durim Kryeziu
+ */
+public class ComponentIndexGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentIndexGenerator.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: ComponentIndexGenerator <output directory>");
+        }
+        Path outputDirectory = Paths.get(args[0]);
+
+        List<Class<?>> components = scan(SampleApplication.class.getPackage().getName());
+        writeComponents(outputDirectory.resolve(ComponentIndex.COMPONENTS), components);
+        writeSwagger(outputDirectory.resolve(ComponentIndex.SWAGGER));
+
+        LOGGER.info("Indexed {} JAX-RS components into {}", components.size(), outputDirectory);
+    }
+
+    private static List<Class<?>> scan(String packageName) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        AnnotationAcceptingListener listener = AnnotationAcceptingListener.newJaxrsResourceAndProviderListener(loader);
+
+        PackageNamesScanner scanner = new PackageNamesScanner(loader, new String[]{packageName}, true);
+        try {
+            while (scanner.hasNext()) {
+                String name = scanner.next();
+                if (listener.accept(name)) {
+                    try (InputStream in = scanner.open()) {
+                        listener.process(name, in);
+                    }
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+
+        return listener.getAnnotatedClasses().stream()
+                .sorted(Comparator.comparing(Class::getName))
+                .collect(Collectors.toList());
+    }
+
+    private static void writeComponents(Path file, List<Class<?>> components) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Generated by " + ComponentIndexGenerator.class.getName() + ", do not edit\n");
+            for (Class<?> component : components) {
+                writer.write(component.getName());
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static void writeSwagger(Path file) throws IOException {
+        BeanConfig beanConfig = SampleApplication.swaggerConfig();
+        beanConfig.scanAndRead();
+
+        Files.createDirectories(file.getParent());
+        Files.write(file, Json.pretty().writeValueAsBytes(beanConfig.getSwagger()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.programmingskillz.benchmark;
+
+import com.programmingskillz.providers.AuthFilter;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.NotAuthorizedException;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AuthFilter#filter} for accepted and rejected credentials.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthFilterBenchmark {
+
+    private static final URI BASE_URI = URI.create("http://localhost:9999/webapi/");
+    private static final URI REQUEST_URI = URI.create("http://localhost:9999/webapi/books");
+
+    private AuthFilter filter;
+    private ContainerRequest authorized;
+    private ContainerRequest wrongPassword;
+    private ContainerRequest missingHeader;
+
+    @Setup
+    public void setUp() {
+        filter = new AuthFilter();
+        authorized = request("durimkryeziu:password");
+        wrongPassword = request("durimkryeziu:wrong");
+        missingHeader = request(null);
+    }
+
+    @Benchmark
+    public boolean authorized() throws IOException {
+        return filter(authorized);
+    }
+
+    @Benchmark
+    public boolean wrongPassword() throws IOException {
+        return filter(wrongPassword);
+    }
+
+    @Benchmark
+    public boolean missingHeader() throws IOException {
+        return filter(missingHeader);
+    }
+
+    private boolean filter(ContainerRequest request) throws IOException {
+        try {
+            filter.filter(request);
+            return true;
+        } catch (NotAuthorizedException e) {
+            return false;
+        }
+    }
+
+    private static ContainerRequest request(String credentials) {
+        ContainerRequest request = new ContainerRequest(BASE_URI, REQUEST_URI, "GET", null, new MapPropertiesDelegate());
+        if (credentials != null) {
+            request.header(HttpHeaders.AUTHORIZATION,
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        return request;
+    }
+}
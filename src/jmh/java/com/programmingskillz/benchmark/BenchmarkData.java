@@ -0,0 +1,41 @@
+package com.programmingskillz.benchmark;
+
+import com.programmingskillz.domain.Book;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sample books shared by the benchmarks.
+ *
+ * @author Durim Kryeziu
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Book book(int i) {
+        Book book = new Book();
+        book.setId(UUID.randomUUID().toString());
+        book.setTitle("Effective Java (2nd Edition) #" + i);
+        book.setAuthor("Joshua Bloch");
+        book.setDescription("Are you looking for a deeper understanding of the Java programming language so that you "
+                + "can write code that is clearer, more correct, more robust, and more reusable?");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        book.setPublisher("Addison-Wesley");
+        book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        return book;
+    }
+
+    static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(book(i));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,81 @@
+package com.programmingskillz.benchmark;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.repository.BookRepository;
+import com.programmingskillz.repository.DataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BookRepository} CRUD through HikariCP against an in-memory H2 database holding {@code rows} books.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookRepositoryBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private BookRepository repository;
+    private List<String> ids;
+    private Book book;
+
+    @Setup
+    public void setUp() throws SQLException {
+        System.setProperty("hikari.jdbcUrl", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        DataSource.init();
+        DataSource.applySchema();
+
+        repository = new BookRepository();
+        repository.deleteAll();
+        ids = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            ids.add(repository.save(BenchmarkData.book(i)).getId());
+        }
+        book = BenchmarkData.book(rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataSource.close();
+    }
+
+    @Benchmark
+    public Book findOne() throws SQLException {
+        return repository.findOne(randomId());
+    }
+
+    @Benchmark
+    public List<Book> findAll() throws SQLException {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public Book update() throws SQLException {
+        book.setId(randomId());
+        return repository.update(book);
+    }
+
+    @Benchmark
+    public Book saveAndDelete() throws SQLException {
+        book.setId(null);
+        Book saved = repository.save(book);
+        repository.delete(saved.getId());
+        return saved;
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
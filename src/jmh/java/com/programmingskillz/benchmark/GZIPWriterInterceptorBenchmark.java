@@ -0,0 +1,155 @@
+package com.programmingskillz.benchmark;
+
+import com.programmingskillz.providers.GZIPWriterInterceptor;
+import com.programmingskillz.providers.SampleObjectMapperProvider;
+import com.programmingskillz.domain.Book;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression of JSON bodies of different sizes by {@link GZIPWriterInterceptor}.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GZIPWriterInterceptorBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int bookCount;
+
+    private GZIPWriterInterceptor interceptor;
+    private byte[] body;
+    private ByteArrayOutputStream sink;
+
+    @Setup
+    public void setUp() throws IOException {
+        interceptor = new GZIPWriterInterceptor();
+        body = new SampleObjectMapperProvider().getContext(Book.class).writeValueAsBytes(BenchmarkData.books(bookCount));
+        sink = new ByteArrayOutputStream(body.length);
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        sink.reset();
+        Context context = new Context(body, sink);
+        interceptor.aroundWriteTo(context);
+        context.getOutputStream().close();
+        return sink.size();
+    }
+
+    /**
+     * Stands in for Jersey's context, proceeding writes the already serialized body.
+     */
+    private static final class Context implements WriterInterceptorContext {
+
+        private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        private Object entity;
+        private OutputStream outputStream;
+
+        Context(byte[] body, OutputStream outputStream) {
+            this.entity = body;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void proceed() throws IOException {
+            outputStream.write((byte[]) entity);
+        }
+
+        @Override
+        public Object getEntity() {
+            return entity;
+        }
+
+        @Override
+        public void setEntity(Object entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream os) {
+            this.outputStream = os;
+        }
+
+        @Override
+        public MultivaluedMap<String, Object> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getPropertyNames() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void setProperty(String name, Object object) {
+        }
+
+        @Override
+        public void removeProperty(String name) {
+        }
+
+        @Override
+        public Annotation[] getAnnotations() {
+            return new Annotation[0];
+        }
+
+        @Override
+        public void setAnnotations(Annotation[] annotations) {
+        }
+
+        @Override
+        public Class<?> getType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void setType(Class<?> type) {
+        }
+
+        @Override
+        public Type getGenericType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void setGenericType(Type genericType) {
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            return MediaType.APPLICATION_JSON_TYPE;
+        }
+
+        @Override
+        public void setMediaType(MediaType mediaType) {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.programmingskillz.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.providers.ParallelJsonGzip;
+import com.programmingskillz.util.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compressed JSON of large book lists, written by the mapper into a {@link GZIPOutputStream} as
+ * {@code GET /books} does for small lists, and by {@link ParallelJsonGzip} with different parallelism.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelJsonGzipBenchmark {
+
+    private static final TypeReference<List<Book>> BOOK_LIST = new TypeReference<List<Book>>() {
+    };
+
+    @Param({"10000", "100000"})
+    public int bookCount;
+
+    @Param({"1", "2", "4"})
+    public int parallelism;
+
+    private List<Book> books;
+    private ObjectWriter writer;
+    private ParallelJsonGzip parallelJsonGzip;
+    private ByteArrayOutputStream sink;
+
+    @Setup
+    public void setUp() {
+        books = BenchmarkData.books(bookCount);
+        writer = Mappers.json().writerFor(BOOK_LIST);
+        parallelJsonGzip = new ParallelJsonGzip(Mappers.json(), 500, parallelism);
+        sink = new ByteArrayOutputStream(bookCount * 128);
+    }
+
+    @Benchmark
+    public int sequential() throws IOException {
+        sink.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(sink)) {
+            writer.writeValue(gzip, books);
+        }
+        return sink.size();
+    }
+
+    @Benchmark
+    public int parallel() throws IOException {
+        sink.reset();
+        parallelJsonGzip.write(books, BOOK_LIST.getType(), sink);
+        return sink.size();
+    }
+}
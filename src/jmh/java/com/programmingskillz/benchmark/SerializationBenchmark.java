@@ -0,0 +1,67 @@
+package com.programmingskillz.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.providers.SampleObjectMapperProvider;
+import com.programmingskillz.util.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Book} data binding with the mappers used by the JSON and XML providers.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final TypeReference<List<Book>> BOOK_LIST = new TypeReference<List<Book>>() {
+    };
+
+    @Param({"1", "100"})
+    public int bookCount;
+
+    private ObjectMapper json;
+    private ObjectMapper xml;
+    private List<Book> books;
+    private byte[] jsonBytes;
+    private byte[] xmlBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = new SampleObjectMapperProvider().getContext(Book.class);
+        xml = Mappers.xml();
+        books = BenchmarkData.books(bookCount);
+        jsonBytes = json.writeValueAsBytes(books);
+        xmlBytes = xml.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws IOException {
+        return json.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public List<Book> readJson() throws IOException {
+        return json.readValue(jsonBytes, BOOK_LIST);
+    }
+
+    @Benchmark
+    public byte[] writeXml() throws IOException {
+        return xml.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public List<Book> readXml() throws IOException {
+        return xml.readValue(xmlBytes, BOOK_LIST);
+    }
+}
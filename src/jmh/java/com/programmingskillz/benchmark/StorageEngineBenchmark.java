@@ -0,0 +1,110 @@
+package com.programmingskillz.benchmark;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.repository.BookRepository;
+import com.programmingskillz.repository.DataSource;
+import com.programmingskillz.repository.LogStructuredBookRepository;
+import com.programmingskillz.repository.Repository;
+import com.programmingskillz.repository.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write bursts and point reads of the file based H2 {@link BookRepository} against the
+ * {@link LogStructuredBookRepository}, both holding {@code rows} books in a temporary directory.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageEngineBenchmark {
+
+    @Param({"jdbc", "log"})
+    public String backend;
+
+    @Param({"10000"})
+    public int rows;
+
+    private Path directory;
+    private Repository<Book> repository;
+    private List<String> ids;
+    private Book book;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("storage-benchmark");
+        if ("jdbc".equals(backend)) {
+            System.setProperty("hikari.jdbcUrl", "jdbc:h2:" + directory.resolve("library"));
+            DataSource.init();
+            DataSource.applySchema();
+            repository = new BookRepository();
+        } else {
+            repository = new LogStructuredBookRepository(directory, new TimeOrderedIdGenerator());
+        }
+
+        ids = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            ids.add(repository.save(BenchmarkData.book(i)).getId());
+        }
+        book = BenchmarkData.book(rows);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (repository instanceof LogStructuredBookRepository) {
+            ((LogStructuredBookRepository) repository).close();
+        } else {
+            DataSource.close();
+            System.clearProperty("hikari.jdbcUrl");
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Book insert() throws SQLException {
+        book.setId(null);
+        return repository.save(book);
+    }
+
+    @Benchmark
+    public Book update() throws SQLException {
+        book.setId(randomId());
+        return repository.update(book);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Book updateBurst() throws SQLException {
+        for (int i = 0; i < 99; i++) {
+            book.setId(randomId());
+            repository.update(book);
+        }
+        book.setId(randomId());
+        return repository.update(book);
+    }
+
+    @Benchmark
+    public Book findOne() throws SQLException {
+        return repository.findOne(randomId());
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.programmingskillz.benchmark;
+
+import com.programmingskillz.constraint.IsbnValidator;
+import com.programmingskillz.domain.Book;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The custom ISBN constraint on its own and the full Bean Validation of a {@link Book}.
+ *
+ * @author Durim Kryeziu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private IsbnValidator isbnValidator;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private Book validBook;
+    private Book invalidBook;
+
+    @Setup
+    public void setUp() {
+        isbnValidator = new IsbnValidator();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validBook = BenchmarkData.book(0);
+        invalidBook = new Book();
+        invalidBook.setIsbn("1234567890");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public boolean isbn10() {
+        return isbnValidator.isValid("067142517X", null);
+    }
+
+    @Benchmark
+    public boolean isbn13() {
+        return isbnValidator.isValid("9780321356680", null);
+    }
+
+    @Benchmark
+    public boolean isbnInvalid() {
+        return isbnValidator.isValid("1234567890", null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Book>> validBook() {
+        return validator.validate(validBook);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Book>> invalidBook() {
+        return validator.validate(invalidBook);
+    }
+}
@@ -1,11 +1,18 @@
 package com.programmingskillz;
 
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.jaxrs.xml.JacksonXMLProvider;
 import com.programmingskillz.providers.SampleObjectMapperProvider;
+import com.programmingskillz.resource.StaticSwaggerResource;
+import com.programmingskillz.service.BookChangeFeed;
+import com.programmingskillz.service.BookChangeListener;
+import com.programmingskillz.service.BookService;
+import com.programmingskillz.service.BookServiceImpl;
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.ComponentIndex;
+import com.programmingskillz.util.Mappers;
 import io.swagger.jaxrs.config.BeanConfig;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.logging.LoggingFeature;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.ServerProperties;
@@ -13,10 +20,13 @@ import org.glassfish.jersey.server.filter.UriConnegFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Singleton;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.MediaType;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Durim Kryeziu
@@ -29,32 +39,41 @@ public class SampleApplication extends ResourceConfig {
     public SampleApplication() {
         setApplicationName("Jersey RESTful Webapp");
 
-        String[] packages = {this.getClass().getPackage().getName(), "io.swagger.jaxrs.listing"};
+        if (!registerIndexedComponents()) {
+            String[] packages = {this.getClass().getPackage().getName(), "io.swagger.jaxrs.listing"};
 
-        packages(packages);
+            packages(packages);
+            setUpSwagger();
+        }
 
         LOGGER.debug("Registering JAX-RS Components...");
 
         register(SampleObjectMapperProvider.class);
         register(jacksonXMLProvider());
         register(uriConnegFilter());
-        register(LoggingFeature.class);
-
-        setUpSwagger();
+        register(new AbstractBinder() {
+            @Override
+            protected void configure() {
+                bind(BookChangeFeed.class).to(BookChangeFeed.class).to(BookChangeListener.class).in(Singleton.class);
+                bind(BookServiceImpl.class).to(BookService.class).in(Singleton.class);
+            }
+        });
 
         property(ServerProperties.MONITORING_ENABLED, Boolean.TRUE);
         property(ServerProperties.BV_SEND_ERROR_IN_RESPONSE, Boolean.TRUE);
-        property(LoggingFeature.LOGGING_FEATURE_LOGGER_LEVEL_SERVER, "INFO");
-        property(LoggingFeature.LOGGING_FEATURE_VERBOSITY_SERVER, LoggingFeature.Verbosity.HEADERS_ONLY);
+
+        // LoggingFeature is auto-discovered as soon as one of its properties is set
+        if (ApplicationProperties.getBoolean("logging.requests.headers", false)) {
+            register(LoggingFeature.class);
+            property(LoggingFeature.LOGGING_FEATURE_LOGGER_LEVEL_SERVER, "INFO");
+            property(LoggingFeature.LOGGING_FEATURE_VERBOSITY_SERVER, LoggingFeature.Verbosity.HEADERS_ONLY);
+        }
     }
 
     private JacksonXMLProvider jacksonXMLProvider() {
-        XmlMapper xmlMapper = new XmlMapper();
-        xmlMapper.registerModule(new JavaTimeModule());
-
         JacksonXMLProvider xmlProvider = new JacksonXMLProvider();
 
-        xmlProvider.setMapper(xmlMapper);
+        xmlProvider.setMapper(Mappers.xml());
         xmlProvider.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         return xmlProvider;
     }
@@ -67,7 +86,44 @@ public class SampleApplication extends ResourceConfig {
         return new UriConnegFilter(mediaTypeMappings, null);
     }
 
+    /**
+     * Registers the components listed by the build and serves the prebuilt Swagger spec, unless
+     * {@code startup.scanning=true} or the index is missing, e.g. after an IDE only build.
+     *
+     * @return {@code false} if the packages have to be scanned instead
+     */
+    private boolean registerIndexedComponents() {
+        if (ApplicationProperties.getBoolean("startup.scanning", false)) {
+            LOGGER.info("Scanning packages for JAX-RS components (startup.scanning=true).");
+            return false;
+        }
+
+        try {
+            Set<Class<?>> components = ComponentIndex.components();
+            byte[] swagger = ComponentIndex.swagger();
+            if (components == null || swagger == null) {
+                LOGGER.warn("No component index found on the classpath, scanning packages instead.");
+                return false;
+            }
+
+            registerClasses(components);
+            registerResources(StaticSwaggerResource.resource(swagger));
+            LOGGER.debug("Registered {} indexed JAX-RS components.", components.size());
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the component index, scanning packages instead:", e);
+            return false;
+        }
+    }
+
     private void setUpSwagger() {
+        swaggerConfig().setScan(true);
+    }
+
+    /**
+     * Also used by {@code com.programmingskillz.build.ComponentIndexGenerator} to generate the static spec.
+     */
+    public static BeanConfig swaggerConfig() {
         BeanConfig beanConfig = new BeanConfig();
         beanConfig.setTitle("Sample Jersey 2.x RESTful Web Application");
         beanConfig.setDescription("Sample Jersey 2.x Web Application that can be deployed in a Servlet Container");
@@ -78,7 +134,7 @@ public class SampleApplication extends ResourceConfig {
         beanConfig.setHost("localhost:9999");
         beanConfig.setBasePath("webapi");
         beanConfig.setResourcePackage("com.programmingskillz.resource");
-        beanConfig.setScan(true);
         beanConfig.setPrettyPrint(true);
+        return beanConfig;
     }
 }
\ No newline at end of file
@@ -34,6 +34,23 @@ public class Book {
     @Max(value = 32767, message = "{book.pages.max}")
     private Integer pages;
 
+    public Book() {
+    }
+
+    /**
+     * Copies all properties of {@code book}, read through its getters.
+     */
+    public Book(Book book) {
+        this.id = book.getId();
+        this.title = book.getTitle();
+        this.author = book.getAuthor();
+        this.description = book.getDescription();
+        this.isbn = book.getIsbn();
+        this.pages = book.getPages();
+        this.publisher = book.getPublisher();
+        this.published = book.getPublished();
+    }
+
     public String getId() {
         return id;
     }
@@ -0,0 +1,47 @@
+package com.programmingskillz.domain;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The books found for a list of ids, in the order they were asked for, and the ids no book has.
+ *
+ * @author Durim Kryeziu
+ */
+@ApiModel(value = "BookLookup", description = "Books looked up by id")
+@JsonPropertyOrder({"books", "missing"})
+@JacksonXmlRootElement(localName = "lookup")
+public class BookLookup {
+
+    private List<Book> books = new ArrayList<>();
+    private List<String> missing = new ArrayList<>();
+
+    @JacksonXmlElementWrapper(localName = "books")
+    @JacksonXmlProperty(localName = "book")
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    @ApiModelProperty("Books found, in the order of the requested ids")
+    public void setBooks(List<Book> books) {
+        this.books = books;
+    }
+
+    @JacksonXmlElementWrapper(localName = "missing")
+    @JacksonXmlProperty(localName = "id")
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    @ApiModelProperty(value = "Requested ids no book has", example = "[\"767a463c-4cc3-48c1-b93e-25c0d216032b\"]")
+    public void setMissing(List<String> missing) {
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,116 @@
+package com.programmingskillz.domain;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts of books, overall and by author, publisher, publishing year and length. Counts are ordered from the
+ * highest down, the page ranges from the shortest up.
+ *
+ * @author Durim Kryeziu
+ */
+@ApiModel(value = "BookStats", description = "Statistics of the catalog")
+@JsonPropertyOrder({"books", "authors", "publishers", "publishedYears", "pages"})
+@JacksonXmlRootElement(localName = "stats")
+public class BookStats {
+
+    private long books;
+    private List<Count> authors = new ArrayList<>();
+    private List<Count> publishers = new ArrayList<>();
+    private List<Count> publishedYears = new ArrayList<>();
+    private List<Count> pages = new ArrayList<>();
+
+    public long getBooks() {
+        return books;
+    }
+
+    @ApiModelProperty(value = "Number of books", example = "1024")
+    public void setBooks(long books) {
+        this.books = books;
+    }
+
+    @JacksonXmlElementWrapper(localName = "authors")
+    @JacksonXmlProperty(localName = "author")
+    public List<Count> getAuthors() {
+        return authors;
+    }
+
+    @ApiModelProperty("Books per author")
+    public void setAuthors(List<Count> authors) {
+        this.authors = authors;
+    }
+
+    @JacksonXmlElementWrapper(localName = "publishers")
+    @JacksonXmlProperty(localName = "publisher")
+    public List<Count> getPublishers() {
+        return publishers;
+    }
+
+    @ApiModelProperty("Books per publisher, books without one are not counted")
+    public void setPublishers(List<Count> publishers) {
+        this.publishers = publishers;
+    }
+
+    @JacksonXmlElementWrapper(localName = "publishedYears")
+    @JacksonXmlProperty(localName = "year")
+    public List<Count> getPublishedYears() {
+        return publishedYears;
+    }
+
+    @ApiModelProperty("Books per year published (UTC), books without a date are not counted")
+    public void setPublishedYears(List<Count> publishedYears) {
+        this.publishedYears = publishedYears;
+    }
+
+    @JacksonXmlElementWrapper(localName = "pages")
+    @JacksonXmlProperty(localName = "range")
+    public List<Count> getPages() {
+        return pages;
+    }
+
+    @ApiModelProperty("Books per range of pages, e.g. 100-199 or 1000+")
+    public void setPages(List<Count> pages) {
+        this.pages = pages;
+    }
+
+    @ApiModel(value = "Count", description = "Number of books with a value")
+    @JsonPropertyOrder({"value", "count"})
+    public static class Count {
+
+        private String value;
+        private long count;
+
+        public Count() {
+        }
+
+        public Count(String value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @ApiModelProperty(value = "Value counted", example = "Joshua Bloch")
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @ApiModelProperty(value = "Number of books with the value", example = "3")
+        public void setCount(long count) {
+            this.count = count;
+        }
+    }
+}
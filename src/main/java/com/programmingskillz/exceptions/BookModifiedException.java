@@ -0,0 +1,29 @@
+package com.programmingskillz.exceptions;
+
+/**
+ * Thrown by a conditional write when the book was changed since it was read.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookModifiedException extends DomainException {
+
+    private final String id;
+
+    private BookModifiedException(String id) {
+        super(null);
+        this.id = id;
+    }
+
+    public static BookModifiedException forId(String id) {
+        return new BookModifiedException(id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Book with id '" + id + "' was changed since it was read.";
+    }
+}
@@ -3,9 +3,39 @@ package com.programmingskillz.exceptions;
 /**
  * @author Durim Kryeziu
  */
-public class BookNotFoundException extends RuntimeException {
+public class BookNotFoundException extends DomainException {
+
+    private final String id;
 
     public BookNotFoundException(String message) {
+        this(null, message);
+    }
+
+    private BookNotFoundException(String id, String message) {
         super(message);
+        this.id = id;
+    }
+
+    /**
+     * Creates the exception for the given id, the message is only built if somebody asks for it.
+     */
+    public static BookNotFoundException forId(String id) {
+        return new BookNotFoundException(id, null);
+    }
+
+    /**
+     * @return id of the missing book or {@code null} if created with a custom message
+     */
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getMessage() {
+        return id != null ? messageFor(id) : super.getMessage();
+    }
+
+    public static String messageFor(String id) {
+        return "Book with id '" + id + "' not found.";
     }
-}
\ No newline at end of file
+}
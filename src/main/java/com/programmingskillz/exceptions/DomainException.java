@@ -0,0 +1,15 @@
+package com.programmingskillz.exceptions;
+
+/**
+ * Base class for expected outcomes of the domain (e.g. a book that does not exist) that are reported to
+ * the client rather than investigated. They are thrown on hot paths, so they skip filling in the stack
+ * trace and suppression support.
+ *
+ * @author Durim Kryeziu
+ */
+public abstract class DomainException extends RuntimeException {
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,94 @@
+package com.programmingskillz.exceptions;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Serialized {@link ErrorResponse} bodies. Bodies carrying the default message of a status
+ * ({@code "HTTP 404 Not Found"}) are built once and reused, "book not found" bodies are spliced together
+ * from prebuilt halves around the escaped id, anything else is written without pretty printing.
+ *
+ * @author Durim Kryeziu
+ */
+public class ErrorResponses {
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(ErrorResponse.class);
+
+    private static final ConcurrentMap<Integer, byte[]> DEFAULT_BODIES = new ConcurrentHashMap<>();
+
+    private static final byte[] BOOK_NOT_FOUND_PREFIX;
+    private static final byte[] BOOK_NOT_FOUND_SUFFIX;
+
+    static {
+        for (Response.Status status : Response.Status.values()) {
+            if (status.getFamily() == Response.Status.Family.CLIENT_ERROR
+                    || status.getFamily() == Response.Status.Family.SERVER_ERROR) {
+                DEFAULT_BODIES.put(status.getStatusCode(), serialize(status, defaultMessage(status)));
+            }
+        }
+
+        String marker = "\u0000";
+        String template = new String(serialize(Response.Status.NOT_FOUND, BookNotFoundException.messageFor(marker)),
+                StandardCharsets.UTF_8);
+        String escapedMarker = new String(JsonStringEncoder.getInstance().quoteAsString(marker));
+        int split = template.indexOf(escapedMarker);
+
+        BOOK_NOT_FOUND_PREFIX = template.substring(0, split).getBytes(StandardCharsets.UTF_8);
+        BOOK_NOT_FOUND_SUFFIX = template.substring(split + escapedMarker.length()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the JSON body for the given status and message.
+     */
+    public static byte[] of(Response.StatusType status, String message) {
+        if (message != null && message.equals(defaultMessage(status))) {
+            byte[] body = DEFAULT_BODIES.get(status.getStatusCode());
+            if (body != null) {
+                return body;
+            }
+        }
+        return serialize(status, message);
+    }
+
+    /**
+     * Returns the JSON body reporting that the book with the given id does not exist.
+     */
+    public static byte[] bookNotFound(String id) {
+        byte[] escapedId = JsonStringEncoder.getInstance().quoteAsUTF8(id);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                BOOK_NOT_FOUND_PREFIX.length + escapedId.length + BOOK_NOT_FOUND_SUFFIX.length);
+        out.write(BOOK_NOT_FOUND_PREFIX, 0, BOOK_NOT_FOUND_PREFIX.length);
+        out.write(escapedId, 0, escapedId.length);
+        out.write(BOOK_NOT_FOUND_SUFFIX, 0, BOOK_NOT_FOUND_SUFFIX.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Message of a JAX-RS exception created without an explicit message.
+     */
+    private static String defaultMessage(Response.StatusType status) {
+        return "HTTP " + status.getStatusCode() + ' ' + status.getReasonPhrase();
+    }
+
+    private static byte[] serialize(Response.StatusType status, String message) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode(status.getStatusCode());
+        errorResponse.setStatus(status.getReasonPhrase());
+        errorResponse.setMessage(message);
+
+        try {
+            return WRITER.writeValueAsBytes(errorResponse);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.programmingskillz.export;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.BookXml;
+import com.programmingskillz.util.Mappers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The JSON or XML of a list of books, serialized {@code booksPerChunk} books at a time when the next chunk is
+ * asked for. The chunks concatenated are what the JAX-RS providers write for the whole list.
+ *
+ * @author Durim Kryeziu
+ */
+class BookExport {
+
+    private final Iterator<Book> books;
+    private final int booksPerChunk;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+    private final Sink sink;
+    private boolean done;
+
+    private BookExport(List<Book> books, int booksPerChunk, boolean xml) throws IOException {
+        this.books = books.iterator();
+        this.booksPerChunk = booksPerChunk;
+        this.sink = xml ? xmlSink(buffer) : jsonSink(buffer);
+    }
+
+    static BookExport json(List<Book> books, int booksPerChunk) throws IOException {
+        return new BookExport(books, booksPerChunk, false);
+    }
+
+    static BookExport xml(List<Book> books, int booksPerChunk) throws IOException {
+        return new BookExport(books, booksPerChunk, true);
+    }
+
+    /**
+     * @return the next chunk, {@code null} after the last one
+     */
+    byte[] next() throws IOException {
+        if (done) {
+            return null;
+        }
+
+        for (int i = 0; i < booksPerChunk && books.hasNext(); i++) {
+            sink.write(books.next());
+        }
+        if (books.hasNext()) {
+            sink.flush();
+        } else {
+            sink.close();
+            done = true;
+        }
+
+        byte[] chunk = buffer.toByteArray();
+        buffer.reset();
+        return chunk;
+    }
+
+    private static Sink jsonSink(ByteArrayOutputStream buffer) throws IOException {
+        SequenceWriter writer = Mappers.json().writerFor(Book.class).writeValuesAsArray(buffer);
+        return new Sink() {
+            @Override
+            public void write(Book book) throws IOException {
+                writer.write(book);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    private static Sink xmlSink(ByteArrayOutputStream buffer) throws IOException {
+        BookXml.Writer writer = BookXml.writer(buffer);
+        return new Sink() {
+            @Override
+            public void write(Book book) throws IOException {
+                writer.write(book);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    private interface Sink extends Closeable {
+
+        void write(Book book) throws IOException;
+
+        void flush() throws IOException;
+    }
+}
@@ -0,0 +1,136 @@
+package com.programmingskillz.export;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.providers.AuthFilter;
+import com.programmingskillz.service.BookService;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Exports all books with Servlet 3.1 non-blocking output, for responses too large to hold a container thread
+ * while a slow client reads them: {@code GET /export/books}, {@code /export/books.json} or
+ * {@code /export/books.xml}. Written like {@code GET /webapi/books}, without compression.
+ * <p>
+ * Jersey writes its responses with blocking I/O, hence a plain servlet next to it. The books are read before the
+ * response starts, so a slow client does not hold a database connection either. Since every export holds a copy
+ * of all books until it is written, at most {@code maxConcurrent} run at a time, further ones get a 503.
+ *
+ * @author Durim Kryeziu
+ */
+@WebServlet(urlPatterns = {"/export/books", "/export/books.json", "/export/books.xml"}, asyncSupported = true)
+public class BookExportServlet extends HttpServlet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookExportServlet.class);
+
+    private static volatile Supplier<BookService> bookService;
+
+    private final int booksPerChunk = ApplicationProperties.getInt("export.async.booksPerChunk", 100);
+    private final long timeoutMillis = ApplicationProperties.getLong("export.async.timeoutMillis", 600000);
+    private final int maxConcurrent = ApplicationProperties.getInt("export.async.maxConcurrent", 4);
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final MetricsCollector metrics = writer -> {
+        writer.family("book_exports_active", "gauge", "Book exports being read or written to clients.");
+        writer.sample("book_exports_active", active.get());
+        writer.family("book_exports_rejected_total", "counter", "Book exports refused because of maxConcurrent.");
+        writer.sample("book_exports_rejected_total", rejected.sum());
+    };
+
+    /**
+     * Called by the application once its services are available, with {@code null} when it is destroyed.
+     */
+    public static void serveFrom(Supplier<BookService> service) {
+        bookService = service;
+    }
+
+    @Override
+    public void init() {
+        MetricsRegistry.register(metrics);
+    }
+
+    @Override
+    public void destroy() {
+        MetricsRegistry.unregister(metrics);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!AuthFilter.isAuthorized(request.getHeader(HttpHeaders.AUTHORIZATION))) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        Supplier<BookService> service = bookService;
+        if (service == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        // Taken before the books are read, as that is when an export starts holding them
+        if (active.incrementAndGet() > maxConcurrent) {
+            active.decrementAndGet();
+            rejected.increment();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        boolean started = false;
+        try {
+            List<Book> books;
+            try {
+                books = service.get().getAll();
+            } catch (SQLException e) {
+                LOGGER.error("Could not read the books to export:", e);
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
+
+            boolean xml = wantsXml(request);
+            BookExport export = xml ? BookExport.xml(books, booksPerChunk) : BookExport.json(books, booksPerChunk);
+            response.setContentType(xml ? MediaType.APPLICATION_XML : MediaType.APPLICATION_JSON);
+            response.setCharacterEncoding("UTF-8");
+
+            AsyncContext async = request.startAsync();
+            async.setTimeout(timeoutMillis);
+            ServletOutputStream out = response.getOutputStream();
+            BookExportWriter writer = new BookExportWriter(async, out, export, active::decrementAndGet);
+            async.addListener(writer);
+            started = true;
+            // The container calls onWritePossible right away, and again whenever the client catches up
+            out.setWriteListener(writer);
+        } finally {
+            if (!started) {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static boolean wantsXml(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.endsWith(".xml") || uri.endsWith(".json")) {
+            return uri.endsWith(".xml");
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null
+                && accept.contains(MediaType.APPLICATION_XML) && !accept.contains(MediaType.APPLICATION_JSON);
+    }
+}
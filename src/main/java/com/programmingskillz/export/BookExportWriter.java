@@ -0,0 +1,88 @@
+package com.programmingskillz.export;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a {@link BookExport} to a non-blocking response: the next chunk is only serialized and written while the
+ * container reports that the output is ready. When it is not, {@link #onWritePossible()} returns and the thread
+ * goes back to the container, which calls it again once the client has read what is pending. A slow client so
+ * holds at most one chunk in buffers instead of a thread.
+ * <p>
+ * The export is completed once, whichever of the last chunk, a write error or the timeout comes first.
+ *
+ * @author Durim Kryeziu
+ */
+class BookExportWriter implements WriteListener, AsyncListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookExportWriter.class);
+
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final BookExport export;
+    private final Runnable onDone;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    BookExportWriter(AsyncContext async, ServletOutputStream out, BookExport export, Runnable onDone) {
+        this.async = async;
+        this.out = out;
+        this.export = export;
+        this.onDone = onDone;
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (!completed.get() && out.isReady()) {
+            byte[] chunk = export.next();
+            if (chunk == null) {
+                // Only completes once the last chunk has left the buffers
+                complete();
+                return;
+            }
+            out.write(chunk);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOGGER.debug("Book export aborted: {}", t.toString());
+        complete();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        LOGGER.warn("Book export timed out after {} ms, the client reads too slowly.", async.getTimeout());
+        complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        onDone.run();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * The write listener and the async listener may both report the same failure, and completing twice throws.
+     */
+    private void complete() {
+        if (completed.compareAndSet(false, true)) {
+            async.complete();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.programmingskillz.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Heap, garbage collection and thread statistics of the running JVM.
+ *
+ * @author Durim Kryeziu
+ */
+public class JvmMetrics implements MetricsCollector {
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        writer.family("jvm_memory_bytes_used", "gauge", "Used bytes of a given JVM memory area.");
+        writer.sample("jvm_memory_bytes_used", heap.getUsed(), "area", "heap");
+        writer.sample("jvm_memory_bytes_used", nonHeap.getUsed(), "area", "nonheap");
+
+        writer.family("jvm_memory_bytes_committed", "gauge", "Committed bytes of a given JVM memory area.");
+        writer.sample("jvm_memory_bytes_committed", heap.getCommitted(), "area", "heap");
+        writer.sample("jvm_memory_bytes_committed", nonHeap.getCommitted(), "area", "nonheap");
+
+        writer.family("jvm_memory_bytes_max", "gauge", "Max bytes of a given JVM memory area.");
+        writer.sample("jvm_memory_bytes_max", heap.getMax(), "area", "heap");
+
+        writer.family("jvm_gc_collection_seconds", "summary", "Time spent in a given JVM garbage collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.sample("jvm_gc_collection_seconds_count", gc.getCollectionCount(), "gc", gc.getName());
+            writer.sample("jvm_gc_collection_seconds_sum", gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        writer.family("jvm_threads_current", "gauge", "Current thread count of the JVM.");
+        writer.sample("jvm_threads_current", threads.getThreadCount());
+        writer.family("jvm_threads_daemon", "gauge", "Daemon thread count of the JVM.");
+        writer.sample("jvm_threads_daemon", threads.getDaemonThreadCount());
+
+        writer.family("process_uptime_seconds", "gauge", "Uptime of the JVM.");
+        writer.sample("process_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+}
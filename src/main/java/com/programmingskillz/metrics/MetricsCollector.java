@@ -0,0 +1,11 @@
+package com.programmingskillz.metrics;
+
+/**
+ * Source of metrics that are rendered on every scrape of {@code GET /metrics}.
+ *
+ * @author Durim Kryeziu
+ */
+public interface MetricsCollector {
+
+    void collect(PrometheusWriter writer);
+}
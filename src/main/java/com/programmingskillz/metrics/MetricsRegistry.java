@@ -0,0 +1,51 @@
+package com.programmingskillz.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Application wide registry of {@link MetricsCollector}s rendered by {@code GET /metrics}.
+ *
+ * @author Durim Kryeziu
+ */
+public class MetricsRegistry {
+
+    private static final RequestMetrics REQUEST_METRICS = new RequestMetrics();
+    private static final PoolMetrics POOL_METRICS = new PoolMetrics();
+    private static final QueryMetrics QUERY_METRICS = new QueryMetrics();
+    private static final CopyOnWriteArrayList<MetricsCollector> COLLECTORS = new CopyOnWriteArrayList<>();
+
+    static {
+        COLLECTORS.add(REQUEST_METRICS);
+        COLLECTORS.add(POOL_METRICS);
+        COLLECTORS.add(QUERY_METRICS);
+        COLLECTORS.add(new JvmMetrics());
+    }
+
+    public static RequestMetrics requests() {
+        return REQUEST_METRICS;
+    }
+
+    public static PoolMetrics pool() {
+        return POOL_METRICS;
+    }
+
+    public static QueryMetrics queries() {
+        return QUERY_METRICS;
+    }
+
+    public static void register(MetricsCollector collector) {
+        COLLECTORS.addIfAbsent(collector);
+    }
+
+    public static void unregister(MetricsCollector collector) {
+        COLLECTORS.remove(collector);
+    }
+
+    public static String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        for (MetricsCollector collector : COLLECTORS) {
+            collector.collect(writer);
+        }
+        return writer.toString();
+    }
+}
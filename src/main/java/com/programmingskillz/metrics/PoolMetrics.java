@@ -0,0 +1,72 @@
+package com.programmingskillz.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receives HikariCP pool events and exposes connection pool statistics.
+ *
+ * @author Durim Kryeziu
+ */
+public class PoolMetrics implements MetricsTrackerFactory, MetricsCollector {
+
+    private volatile String poolName;
+    private volatile PoolStats poolStats;
+
+    private final Histogram acquireMicros = new Histogram();
+    private final Histogram usageMillis = new Histogram();
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolName = poolName;
+        this.poolStats = poolStats;
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos));
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.record(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        PoolStats stats = poolStats;
+        if (stats == null) {
+            return;
+        }
+        String pool = poolName;
+
+        writer.family("hikaricp_connections", "gauge", "Connections in the pool by state.");
+        writer.sample("hikaricp_connections", stats.getActiveConnections(), "pool", pool, "state", "active");
+        writer.sample("hikaricp_connections", stats.getIdleConnections(), "pool", pool, "state", "idle");
+        writer.sample("hikaricp_connections", stats.getTotalConnections(), "pool", pool, "state", "total");
+
+        writer.family("hikaricp_pending_threads", "gauge", "Threads waiting for a connection.");
+        writer.sample("hikaricp_pending_threads", stats.getPendingThreads(), "pool", pool);
+
+        writer.family("hikaricp_connection_timeouts_total", "counter", "Connection borrow timeouts.");
+        writer.sample("hikaricp_connection_timeouts_total", timeouts.sum(), "pool", pool);
+
+        writer.family("hikaricp_connection_acquire_seconds", "summary", "Time to borrow a connection.");
+        writer.summary("hikaricp_connection_acquire_seconds", acquireMicros, 1e-6, "pool", pool);
+
+        writer.family("hikaricp_connection_usage_seconds", "summary", "Time a connection was held.");
+        writer.summary("hikaricp_connection_usage_seconds", usageMillis, 1e-3, "pool", pool);
+    }
+}
@@ -0,0 +1,99 @@
+package com.programmingskillz.metrics;
+
+/**
+ * Renders metric families in the Prometheus text exposition format (version 0.0.4).
+ *
+ * @author Durim Kryeziu
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder sb = new StringBuilder(4096);
+
+    public PrometheusWriter family(String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes one sample. {@code labels} are alternating label names and values.
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        sb.append(name);
+        appendLabels(labels, null, null);
+        sb.append(' ');
+        appendValue(value);
+        sb.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the quantile, {@code _sum} and {@code _count} samples of a summary family.
+     * Histogram values are multiplied by {@code scale}, e.g. {@code 1e-6} to turn microseconds into seconds.
+     */
+    public PrometheusWriter summary(String name, Histogram histogram, double scale, String... labels) {
+        long[] values = histogram.valuesAtQuantiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sb.append(name);
+            appendLabels(labels, "quantile", Double.toString(QUANTILES[i]));
+            sb.append(' ');
+            appendValue(values[i] * scale);
+            sb.append('\n');
+        }
+        sample(name + "_sum", histogram.getSum() * scale, labels);
+        sample(name + "_count", histogram.getCount(), labels);
+        return this;
+    }
+
+    private void appendLabels(String[] labels, String extraName, String extraValue) {
+        if (labels.length == 0 && extraName == null) {
+            return;
+        }
+        sb.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendLabel(labels[i], labels[i + 1]);
+        }
+        if (extraName != null) {
+            if (labels.length > 0) {
+                sb.append(',');
+            }
+            appendLabel(extraName, extraValue);
+        }
+        sb.append('}');
+    }
+
+    private void appendLabel(String name, String value) {
+        sb.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private void appendValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+}
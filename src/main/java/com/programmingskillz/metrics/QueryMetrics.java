@@ -0,0 +1,87 @@
+package com.programmingskillz.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per repository operation timings split into connection borrow, statement execution,
+ * {@code ResultSet} fetching and row mapping.
+ *
+ * @author Durim Kryeziu
+ */
+public class QueryMetrics implements MetricsCollector {
+
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    public OperationStats operation(String name) {
+        OperationStats stats = operations.get(name);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(name, OperationStats::new);
+        }
+        return stats;
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.family("db_query_seconds", "summary", "Repository operation time by phase.");
+        for (OperationStats stats : operations.values()) {
+            writer.summary("db_query_seconds", stats.borrow, 1e-6, "operation", stats.name, "phase", "borrow");
+            writer.summary("db_query_seconds", stats.execute, 1e-6, "operation", stats.name, "phase", "execute");
+            writer.summary("db_query_seconds", stats.fetch, 1e-6, "operation", stats.name, "phase", "fetch");
+            writer.summary("db_query_seconds", stats.map, 1e-6, "operation", stats.name, "phase", "map");
+            writer.summary("db_query_seconds", stats.total, 1e-6, "operation", stats.name, "phase", "total");
+        }
+
+        writer.family("db_query_rows", "summary", "Rows read or written per repository operation.");
+        for (OperationStats stats : operations.values()) {
+            writer.summary("db_query_rows", stats.rows, 1, "operation", stats.name);
+        }
+
+        writer.family("db_query_errors_total", "counter", "Repository operations that failed.");
+        for (OperationStats stats : operations.values()) {
+            writer.sample("db_query_errors_total", stats.errors.sum(), "operation", stats.name);
+        }
+
+        writer.family("db_slow_queries_total", "counter", "Repository operations above the slow query threshold.");
+        for (OperationStats stats : operations.values()) {
+            writer.sample("db_slow_queries_total", stats.slow.sum(), "operation", stats.name);
+        }
+    }
+
+    /**
+     * Statistics of a single repository operation, all times in microseconds.
+     */
+    public static class OperationStats {
+
+        private final String name;
+        private final Histogram borrow = new Histogram();
+        private final Histogram execute = new Histogram();
+        private final Histogram fetch = new Histogram();
+        private final Histogram map = new Histogram();
+        private final Histogram total = new Histogram();
+        private final Histogram rows = new Histogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+
+        OperationStats(String name) {
+            this.name = name;
+        }
+
+        public void record(long borrowMicros, long executeMicros, long fetchMicros, long mapMicros,
+                           long totalMicros, long rowCount, boolean failed, boolean slowQuery) {
+            borrow.record(borrowMicros);
+            execute.record(executeMicros);
+            fetch.record(fetchMicros);
+            map.record(mapMicros);
+            total.record(totalMicros);
+            rows.record(rowCount);
+            if (failed) {
+                errors.increment();
+            }
+            if (slowQuery) {
+                slow.increment();
+            }
+        }
+    }
+}
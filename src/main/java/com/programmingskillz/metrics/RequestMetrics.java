@@ -0,0 +1,160 @@
+package com.programmingskillz.metrics;
+
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and in-flight statistics per resource method and status class, and the bytes allocated by
+ * a sample of the requests per resource method and phase.
+ * <p>
+ * Statistics for an endpoint are created the first time it is seen, afterwards recording a request
+ * is a lock-free map lookup plus a few atomic increments.
+ *
+ * @author Durim Kryeziu
+ */
+public class RequestMetrics implements MetricsCollector {
+
+    private static final Object UNMATCHED = new Object();
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    // Up to the resource method (matching, request filters, reading the entity), the resource method, after it
+    // (response filters, writer interceptors, serialization) and all of it
+    private static final String[] ALLOCATION_PHASES = {"request", "resource", "response", "total"};
+
+    private final ConcurrentMap<Object, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    /**
+     * @param method matched resource method or {@code null} if the request never matched one
+     *               (e.g. 404 or rejected by a pre-matching filter)
+     */
+    public void requestFinished(ResourceMethod method, int status, long durationNanos) {
+        inFlight.decrement();
+        endpoint(method).histogram(status).record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    /**
+     * Records the bytes a request allocated before, in and after its resource method.
+     *
+     * @param method matched resource method or {@code null}
+     */
+    public void allocationRecorded(ResourceMethod method, long requestBytes, long resourceBytes, long responseBytes) {
+        EndpointStats stats = endpoint(method);
+        stats.allocation(0).record(requestBytes);
+        stats.allocation(1).record(resourceBytes);
+        stats.allocation(2).record(responseBytes);
+        stats.allocation(3).record(requestBytes + resourceBytes + responseBytes);
+    }
+
+    /**
+     * Returns the statistics of the given resource method, creating them on first use.
+     */
+    public EndpointStats endpoint(ResourceMethod method) {
+        Object key = method != null ? method : UNMATCHED;
+
+        // get() first: computeIfAbsent() locks the bin even when the mapping is already present
+        EndpointStats stats = endpoints.get(key);
+        if (stats == null) {
+            stats = endpoints.computeIfAbsent(key, k -> new EndpointStats(method));
+        }
+        return stats;
+    }
+
+    public Map<Object, EndpointStats> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.family("http_server_requests_in_flight", "gauge", "Requests currently being processed.");
+        writer.sample("http_server_requests_in_flight", inFlight.sum());
+
+        writer.family("http_server_requests_seconds", "summary",
+                "Request latency by resource method and status class.");
+        for (EndpointStats stats : endpoints.values()) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                Histogram histogram = stats.histograms.get(i);
+                if (histogram != null) {
+                    writer.summary("http_server_requests_seconds", histogram, 1e-6,
+                            "method", stats.httpMethod, "path", stats.path, "status", STATUS_CLASSES[i]);
+                }
+            }
+        }
+
+        writer.family("http_server_request_allocated_bytes", "summary",
+                "Bytes allocated by the request thread per sampled request, by resource method and phase.");
+        for (EndpointStats stats : endpoints.values()) {
+            for (int i = 0; i < ALLOCATION_PHASES.length; i++) {
+                Histogram histogram = stats.allocations.get(i);
+                if (histogram != null) {
+                    writer.summary("http_server_request_allocated_bytes", histogram, 1,
+                            "method", stats.httpMethod, "path", stats.path, "phase", ALLOCATION_PHASES[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Statistics of a single resource method.
+     */
+    public static class EndpointStats {
+
+        private final String httpMethod;
+        private final String path;
+        private final AtomicReferenceArray<Histogram> histograms = new AtomicReferenceArray<>(STATUS_CLASSES.length);
+        private final AtomicReferenceArray<Histogram> allocations =
+                new AtomicReferenceArray<>(ALLOCATION_PHASES.length);
+
+        EndpointStats(ResourceMethod method) {
+            this.httpMethod = method != null ? method.getHttpMethod() : "";
+            this.path = method != null ? pathOf(method.getParent()) : "unmatched";
+        }
+
+        public String getHttpMethod() {
+            return httpMethod;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        Histogram histogram(int status) {
+            int index = Math.min(Math.max(status / 100 - 1, 0), STATUS_CLASSES.length - 1);
+            return histogram(histograms, index);
+        }
+
+        Histogram allocation(int phase) {
+            return histogram(allocations, phase);
+        }
+
+        private static Histogram histogram(AtomicReferenceArray<Histogram> histograms, int index) {
+            Histogram histogram = histograms.get(index);
+            if (histogram == null) {
+                histograms.compareAndSet(index, null, new Histogram());
+                histogram = histograms.get(index);
+            }
+            return histogram;
+        }
+
+        private static String pathOf(Resource resource) {
+            StringBuilder sb = new StringBuilder();
+            for (Resource r = resource; r != null; r = r.getParent()) {
+                String segment = r.getPath();
+                if (segment != null && !segment.isEmpty()) {
+                    sb.insert(0, segment.startsWith("/") ? segment : "/" + segment);
+                }
+            }
+            return sb.length() > 0 ? sb.toString() : "/";
+        }
+    }
+}
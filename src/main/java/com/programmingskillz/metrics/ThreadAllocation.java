@@ -0,0 +1,65 @@
+package com.programmingskillz.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Bytes allocated on the heap by the current thread, from HotSpot's {@code com.sun.management.ThreadMXBean}.
+ * <p>
+ * The counter is only updated when a thread-local allocation buffer is retired, so amounts below a few kilobytes
+ * are approximate. Reading it allocates a little itself, which {@link #bytesBetween(long, long)} takes off again.
+ *
+ * @author Durim Kryeziu
+ */
+public final class ThreadAllocation {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    private static final long SELF_ALLOCATION = selfAllocation();
+
+    private ThreadAllocation() {
+    }
+
+    /**
+     * @return {@code false} on JVMs without per-thread allocation counters, or with them turned off
+     */
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * @return the bytes the current thread has allocated since it started, {@code -1} if not supported
+     */
+    public static long allocatedBytes() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * @return what was allocated between two readings of {@link #allocatedBytes()}, without the second reading
+     */
+    public static long bytesBetween(long before, long after) {
+        return Math.max(0, after - before - SELF_ALLOCATION);
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotSpotThreads = (com.sun.management.ThreadMXBean) threads;
+            if (hotSpotThreads.isThreadAllocatedMemorySupported() && hotSpotThreads.isThreadAllocatedMemoryEnabled()) {
+                return hotSpotThreads;
+            }
+        }
+        return null;
+    }
+
+    private static long selfAllocation() {
+        if (THREADS == null) {
+            return 0;
+        }
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long before = allocatedBytes();
+            least = Math.min(least, allocatedBytes() - before);
+        }
+        return least;
+    }
+}
@@ -0,0 +1,135 @@
+package com.programmingskillz.providers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.service.BookService;
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.Mappers;
+import com.programmingskillz.util.Readiness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Exercises the hot paths once at startup so the first real requests do not pay for class loading, JIT
+ * compilation, Jackson serializer construction, Bean Validation metadata and H2 page loading. Marks the
+ * application {@link Readiness#ready() ready} when done.
+ * <p>
+ * Goes through the {@link BookService} of the application, so its repository stays the only one writing to the
+ * configured backend. Only reads by default, {@code warmup.writes=true} also inserts, updates and deletes a book.
+ *
+ * @author Durim Kryeziu
+ */
+class ApplicationWarmup implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationWarmup.class);
+
+    private static final TypeReference<List<Book>> BOOK_LIST = new TypeReference<List<Book>>() {
+    };
+
+    private final int iterations = ApplicationProperties.getInt("warmup.iterations", 1000);
+    private final int queryIterations = ApplicationProperties.getInt("warmup.queryIterations", 20);
+    private final boolean writes = ApplicationProperties.getBoolean("warmup.writes", false);
+
+    private final Supplier<BookService> bookService;
+
+    ApplicationWarmup(Supplier<BookService> bookService) {
+        this.bookService = bookService;
+    }
+
+    static boolean isEnabled() {
+        return ApplicationProperties.getBoolean("warmup.enabled", true);
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            Book book = sampleBook();
+
+            warmUpMapper(Mappers.json(), book);
+            warmUpMapper(Mappers.xml(), book);
+            warmUpValidation(book);
+            warmUpService(bookService.get(), book);
+
+            LOGGER.info("Warm-up finished in {} ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            // A failed warm-up only costs latency, it is no reason to keep the instance out of rotation
+            LOGGER.warn("Warm-up failed after {} ms: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), e.toString());
+        }
+        if (Readiness.ready()) {
+            LOGGER.info("Application is ready.");
+        }
+    }
+
+    private void warmUpMapper(ObjectMapper mapper, Book book) throws IOException {
+        List<Book> books = Arrays.asList(book, book, book);
+        for (int i = 0; i < iterations; i++) {
+            mapper.readValue(mapper.writeValueAsBytes(book), Book.class);
+            mapper.readValue(mapper.writeValueAsBytes(books), BOOK_LIST);
+        }
+    }
+
+    private void warmUpValidation(Book book) {
+        ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
+        try {
+            Validator validator = factory.getValidator();
+            Book invalid = new Book();
+            for (int i = 0; i < iterations; i++) {
+                validator.validate(book);
+                validator.validate(invalid);
+            }
+        } finally {
+            factory.close();
+        }
+    }
+
+    private void warmUpService(BookService service, Book book) throws SQLException {
+        for (int i = 0; i < queryIterations; i++) {
+            List<Book> books = service.getAll();
+            get(service, books.isEmpty() ? UUID.randomUUID().toString() : books.get(i % books.size()).getId());
+            get(service, UUID.randomUUID().toString());
+
+            if (writes) {
+                Book saved = service.add(new Book(book));
+                service.update(saved);
+                service.delete(saved.getId());
+            }
+        }
+    }
+
+    private static void get(BookService service, String id) throws SQLException {
+        try {
+            service.get(id);
+        } catch (BookNotFoundException ignored) {
+            // Expected for random ids, it warms up the not found path as well
+        }
+    }
+
+    private static Book sampleBook() {
+        Book book = new Book();
+        book.setId(UUID.randomUUID().toString());
+        book.setTitle("Warm-up");
+        book.setAuthor("Warm-up");
+        book.setDescription("Book used to warm up the application, it is never stored permanently");
+        book.setIsbn("9780321356680");
+        book.setPages(1);
+        book.setPublisher("Warm-up");
+        book.setPublished(Instant.now());
+        return book;
+    }
+}
@@ -7,10 +7,12 @@ import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.PreMatching;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.PathSegment;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Base64;
+import java.util.List;
 
 /**
  * @author Durim Kryeziu
@@ -28,14 +30,37 @@ public class AuthFilter implements ContainerRequestFilter {
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
 
-        if (requestContext.getUriInfo().getRequestUri().getPath().endsWith("swagger.json")) {
+        if (isPublic(requestContext.getUriInfo().getPathSegments())) {
             return;
         }
 
-        String auth = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (!isAuthorized(requestContext.getHeaderString(HttpHeaders.AUTHORIZATION))) {
+            throw notAuthorizedException;
+        }
+    }
+
+    /**
+     * Only the first segment of the path decides, without its matrix parameters, which a client could otherwise
+     * use to smuggle {@code /health/} into any path. The swagger spec arrives as {@code swagger} once the URI based
+     * content negotiation has removed the extension.
+     */
+    private static boolean isPublic(List<PathSegment> segments) {
+        if (segments.isEmpty()) {
+            return false;
+        }
+        String first = segments.get(0).getPath();
+        return first.equals("health") || first.equals("swagger.json") || first.equals("swagger");
+    }
+
+    /**
+     * Also checks requests served outside of Jersey, e.g. by the export servlet.
+     *
+     * @param auth the {@code Authorization} header, may be {@code null}
+     */
+    public static boolean isAuthorized(String auth) throws UnsupportedEncodingException {
 
         if (auth == null || auth.isEmpty() || !auth.startsWith("Basic")) {
-            throw notAuthorizedException;
+            return false;
         }
 
         auth = auth.replace(AUTHORIZATION_TYPE, "");
@@ -43,18 +68,16 @@ public class AuthFilter implements ContainerRequestFilter {
         String[] decodedUsernameAndPassword = decode(auth);
 
         if (decodedUsernameAndPassword.length < 2) {
-            throw notAuthorizedException;
+            return false;
         }
 
         String username = decodedUsernameAndPassword[0];
         String password = decodedUsernameAndPassword[1];
 
-        if (!checkUsernameAndPassword(username, password)) {
-            throw notAuthorizedException;
-        }
+        return checkUsernameAndPassword(username, password);
     }
 
-    private String[] decode(String auth) throws UnsupportedEncodingException {
+    private static String[] decode(String auth) throws UnsupportedEncodingException {
 
         byte[] decodedBytes = Base64.getDecoder().decode(auth);
 
@@ -63,7 +86,7 @@ public class AuthFilter implements ContainerRequestFilter {
         return decodedString.split("[:]", 2);
     }
 
-    private boolean checkUsernameAndPassword(String username, String password) {
+    private static boolean checkUsernameAndPassword(String username, String password) {
 
         // Here we use fixed username and password. You should do a proper validation
         return username.equals(USERNAME) && password.equals(PASSWORD);
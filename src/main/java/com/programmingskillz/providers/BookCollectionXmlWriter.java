@@ -0,0 +1,52 @@
+package com.programmingskillz.providers;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.BookXml;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Streams collections of books as XML with {@link BookXml}, flushing every {@code xml.flushEveryBooks} books.
+ * Being declared for collections, it is closer to them than the Jackson XML provider and takes precedence.
+ *
+ * @author Durim Kryeziu
+ */
+@Provider
+@Produces(MediaType.APPLICATION_XML)
+public class BookCollectionXmlWriter implements MessageBodyWriter<Collection<Book>> {
+
+    private final int flushEvery = ApplicationProperties.getInt("xml.flushEveryBooks", 100);
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Collection.class.isAssignableFrom(type)
+                && genericType instanceof ParameterizedType
+                && ((ParameterizedType) genericType).getActualTypeArguments()[0] == Book.class;
+    }
+
+    @Override
+    public long getSize(Collection<Book> books, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Collection<Book> books, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+
+        BookXml.write(books, entityStream, flushEvery);
+    }
+}
@@ -0,0 +1,34 @@
+package com.programmingskillz.providers;
+
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.ErrorResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * @author Durim Kryeziu
+ */
+@Provider
+public class BookModifiedExceptionMapper implements ExceptionMapper<BookModifiedException> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookModifiedExceptionMapper.class);
+
+    @Override
+    public Response toResponse(BookModifiedException exception) {
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        }
+        Response.Status status = Response.Status.PRECONDITION_FAILED;
+
+        return Response.status(status)
+                .entity(ErrorResponses.of(status, exception.getMessage()))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
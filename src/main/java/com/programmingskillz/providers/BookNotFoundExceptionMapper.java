@@ -1,7 +1,7 @@
 package com.programmingskillz.providers;
 
 import com.programmingskillz.exceptions.BookNotFoundException;
-import com.programmingskillz.exceptions.ErrorResponse;
+import com.programmingskillz.exceptions.ErrorResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,18 +17,20 @@ import javax.ws.rs.ext.Provider;
 public class BookNotFoundExceptionMapper implements ExceptionMapper<BookNotFoundException> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BookNotFoundExceptionMapper.class);
+    private static final ThrottledErrorLog ERROR_LOG = new ThrottledErrorLog(LOGGER);
 
     @Override
     public Response toResponse(BookNotFoundException exception) {
 
-        LOGGER.error("BookNotFoundException:", exception);
-        LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        ERROR_LOG.info(exception);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        }
         Response.Status status = Response.Status.NOT_FOUND;
 
-        ErrorResponse errorResponse = new ErrorResponse();
-        errorResponse.setCode(status.getStatusCode());
-        errorResponse.setStatus(status.getReasonPhrase());
-        errorResponse.setMessage(exception.getMessage());
+        byte[] errorResponse = exception.getId() != null
+                ? ErrorResponses.bookNotFound(exception.getId())
+                : ErrorResponses.of(status, exception.getMessage());
 
         return Response.status(status)
                 .entity(errorResponse)
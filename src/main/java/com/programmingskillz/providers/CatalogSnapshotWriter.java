@@ -0,0 +1,44 @@
+package com.programmingskillz.providers;
+
+import com.programmingskillz.service.CatalogSnapshot;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes the serialized form a {@link CatalogSnapshot} keeps, the same bytes the Jackson providers would write for
+ * its books, without serializing them again.
+ *
+ * @author Durim Kryeziu
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+public class CatalogSnapshotWriter implements MessageBodyWriter<CatalogSnapshot> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return CatalogSnapshot.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(CatalogSnapshot snapshot, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(CatalogSnapshot snapshot, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+
+        entityStream.write(mediaType.isCompatible(MediaType.APPLICATION_XML_TYPE) ? snapshot.xml() : snapshot.json());
+    }
+}
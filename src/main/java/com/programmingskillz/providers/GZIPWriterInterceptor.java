@@ -1,14 +1,19 @@
 package com.programmingskillz.providers;
 
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.Mappers;
+
 import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.Provider;
 import javax.ws.rs.ext.WriterInterceptor;
 import javax.ws.rs.ext.WriterInterceptorContext;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -19,14 +24,49 @@ import java.util.zip.GZIPOutputStream;
 @Priority(Priorities.ENTITY_CODER)
 public class GZIPWriterInterceptor implements WriterInterceptor {
 
+    /**
+     * JSON lists of at least {@code export.parallel.minRows} rows are serialized and compressed in parallel,
+     * instead of by the message body writer and a {@link GZIPOutputStream}, unless there is a single core.
+     */
+    private static final int PARALLEL_MIN_ROWS = ApplicationProperties.getInt("export.parallel.minRows", 2000);
+    private static final boolean PARALLEL_ENABLED = ApplicationProperties.getBoolean("export.parallel.enabled", true)
+            && ParallelJsonGzip.parallelismFromProperties() > 1;
+
+    // Created for the first large list, shut down with the application
+    private static ParallelJsonGzip parallelJsonGzip;
+
     @Override
     public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
 
         MultivaluedMap<String, Object> headers = context.getHeaders();
         headers.add("Content-Encoding", "gzip");
 
+        Object entity = context.getEntity();
+        if (PARALLEL_ENABLED && entity instanceof List && ((List<?>) entity).size() >= PARALLEL_MIN_ROWS
+                && MediaType.APPLICATION_JSON_TYPE.isCompatible(context.getMediaType())) {
+            parallelJsonGzip().write((List<?>) entity, context.getGenericType(), context.getOutputStream());
+            return;
+        }
+
         final OutputStream outputStream = context.getOutputStream();
         context.setOutputStream(new GZIPOutputStream(outputStream));
         context.proceed();
     }
-}
\ No newline at end of file
+
+    /**
+     * Stops the threads compressing large lists, called when the application is destroyed.
+     */
+    public static synchronized void shutdown() {
+        if (parallelJsonGzip != null) {
+            parallelJsonGzip.shutdown();
+            parallelJsonGzip = null;
+        }
+    }
+
+    private static synchronized ParallelJsonGzip parallelJsonGzip() {
+        if (parallelJsonGzip == null) {
+            parallelJsonGzip = ParallelJsonGzip.fromProperties(Mappers.json());
+        }
+        return parallelJsonGzip;
+    }
+}
@@ -1,6 +1,6 @@
 package com.programmingskillz.providers;
 
-import com.programmingskillz.exceptions.ErrorResponse;
+import com.programmingskillz.exceptions.ErrorResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,18 +16,17 @@ import javax.ws.rs.ext.Provider;
 public class GenericExceptionMapper implements ExceptionMapper<Throwable> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GenericExceptionMapper.class);
+    private static final ThrottledErrorLog ERROR_LOG = new ThrottledErrorLog(LOGGER);
 
     @Override
     public Response toResponse(Throwable exception) {
 
-        LOGGER.error("{}:", exception.getClass().getTypeName(), exception);
-        LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        ERROR_LOG.error(exception);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        }
         Response.Status status = Response.Status.INTERNAL_SERVER_ERROR;
 
-        ErrorResponse errorResponse = new ErrorResponse();
-        errorResponse.setCode(status.getStatusCode());
-        errorResponse.setStatus(status.getReasonPhrase());
-
         StringBuilder sb = new StringBuilder().append(exception.getMessage());
 
         // try-with-resources mechanism suppresses exceptions thrown as a result of closing resources
@@ -36,10 +35,8 @@ public class GenericExceptionMapper implements ExceptionMapper<Throwable> {
             sb.append("\n").append(t.getMessage());
         }
 
-        errorResponse.setMessage(sb.toString());
-
         return Response.status(status)
-                .entity(errorResponse)
+                .entity(ErrorResponses.of(status, sb.toString()))
                 .type(MediaType.APPLICATION_JSON)
                 .build();
     }
@@ -0,0 +1,94 @@
+package com.programmingskillz.providers;
+
+import com.programmingskillz.metrics.RequestMetrics;
+import com.programmingskillz.metrics.ThreadAllocation;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Times a single request and records it in {@link RequestMetrics} once it has finished.
+ * <p>
+ * Jersey asks for one listener per request, this instance is the only allocation; recording itself
+ * does not allocate.
+ * <p>
+ * Sampled requests also record the bytes their thread allocated before, in and after the resource method, read
+ * from {@link ThreadAllocation} as the events pass. A request that continues on another thread, e.g. one
+ * resumed through {@code AsyncResponse}, is not recorded, its allocations cannot be attributed.
+ *
+ * @author Durim Kryeziu
+ */
+public class MetricsRequestEventListener implements RequestEventListener {
+
+    private static final long NOT_REACHED = -1;
+
+    private final RequestMetrics requestMetrics;
+    private final long startNanos;
+
+    // The thread whose allocations are read, null if this request is not sampled or has left it
+    private Thread allocatingThread;
+    private long allocatedAtStart;
+    private long allocatedAtResourceStart = NOT_REACHED;
+    private long allocatedAtResourceFinish = NOT_REACHED;
+
+    /**
+     * @param sampleAllocation whether to record the bytes this request allocates, see {@link ThreadAllocation}
+     */
+    public MetricsRequestEventListener(RequestMetrics requestMetrics, boolean sampleAllocation) {
+        this.requestMetrics = requestMetrics;
+        this.startNanos = System.nanoTime();
+        if (sampleAllocation) {
+            this.allocatingThread = Thread.currentThread();
+            this.allocatedAtStart = ThreadAllocation.allocatedBytes();
+        }
+        requestMetrics.requestStarted();
+    }
+
+    @Override
+    public void onEvent(RequestEvent requestEvent) {
+        switch (requestEvent.getType()) {
+            case RESOURCE_METHOD_START:
+                allocatedAtResourceStart = allocated();
+                break;
+            case RESOURCE_METHOD_FINISHED:
+                allocatedAtResourceFinish = allocated();
+                break;
+            case FINISHED:
+                finished(requestEvent);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void finished(RequestEvent requestEvent) {
+        long allocatedAtEnd = allocated();
+
+        ContainerResponse response = requestEvent.getContainerResponse();
+        int status = response != null ? response.getStatus() : 500;
+
+        requestMetrics.requestFinished(requestEvent.getUriInfo().getMatchedResourceMethod(),
+                status, System.nanoTime() - startNanos);
+
+        if (allocatingThread != null) {
+            // Without a resource method, e.g. for a 404, everything counts as request phase
+            long resourceStart = allocatedAtResourceStart != NOT_REACHED ? allocatedAtResourceStart : allocatedAtEnd;
+            long resourceFinish = allocatedAtResourceFinish != NOT_REACHED ? allocatedAtResourceFinish : allocatedAtEnd;
+            requestMetrics.allocationRecorded(requestEvent.getUriInfo().getMatchedResourceMethod(),
+                    ThreadAllocation.bytesBetween(allocatedAtStart, resourceStart),
+                    ThreadAllocation.bytesBetween(resourceStart, resourceFinish),
+                    ThreadAllocation.bytesBetween(resourceFinish, allocatedAtEnd));
+        }
+    }
+
+    private long allocated() {
+        if (allocatingThread == null) {
+            return NOT_REACHED;
+        }
+        if (allocatingThread != Thread.currentThread()) {
+            allocatingThread = null;
+            return NOT_REACHED;
+        }
+        return ThreadAllocation.allocatedBytes();
+    }
+}
@@ -0,0 +1,265 @@
+package com.programmingskillz.providers;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.programmingskillz.util.ApplicationProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a list as gzip compressed JSON using several cores: the list is cut into chunks of
+ * {@code export.parallel.chunkSize} rows, which a fork-join pool of {@code export.parallel.parallelism} threads
+ * serializes and deflates independently, and the chunks are written in order as they complete.
+ * <p>
+ * The output is byte for byte the JSON the mapper writes for the whole list, as one gzip member. Every chunk but
+ * the last ends with a sync flush, so the raw deflate streams concatenate into one, and the CRC-32 of the member is
+ * combined from the CRCs of the chunks. Chunks do not share a dictionary, which costs a little compression.
+ *
+ * @author Durim Kryeziu
+ */
+public class ParallelJsonGzip {
+
+    // What GZIPOutputStream writes: no file name, no modification time
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final ObjectMapper mapper;
+    private final int chunkSize;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    // How the mapper frames array elements, e.g. "[ ", ", " and " ]" when indenting
+    private final byte[] arrayStart;
+    private final byte[] separator;
+    private final byte[] arrayEnd;
+
+    public ParallelJsonGzip(ObjectMapper mapper, int chunkSize, int parallelism) {
+        this.mapper = mapper;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+
+        try {
+            String probe = mapper.writeValueAsString(Arrays.asList(1, 2));
+            int first = probe.indexOf('1');
+            int second = probe.indexOf('2');
+            this.arrayStart = probe.substring(0, first).getBytes("UTF-8");
+            this.separator = probe.substring(first + 1, second).getBytes("UTF-8");
+            this.arrayEnd = probe.substring(second + 1).getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static ParallelJsonGzip fromProperties(ObjectMapper mapper) {
+        return new ParallelJsonGzip(mapper,
+                ApplicationProperties.getInt("export.parallel.chunkSize", 500), parallelismFromProperties());
+    }
+
+    /**
+     * @return {@code export.parallel.parallelism}, by default the number of cores
+     */
+    public static int parallelismFromProperties() {
+        return ApplicationProperties.getInt("export.parallel.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Stops the threads of the pool, writes still running finish.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public void write(List<?> rows, Type genericType, OutputStream out) throws IOException {
+        JavaType listType = mapper.getTypeFactory().constructType(genericType);
+        ObjectWriter writer = listType.isCollectionLikeType() ? mapper.writerFor(listType) : mapper.writer();
+        int chunks = Math.max(1, (rows.size() + chunkSize - 1) / chunkSize);
+
+        out.write(GZIP_HEADER);
+        long crc = 0;
+        long length = 0;
+
+        // Bounded, so that a huge list is not held compressed in memory all at once
+        Deque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < chunks || !inFlight.isEmpty()) {
+                while (next < chunks && inFlight.size() < 2 * parallelism) {
+                    int index = next++;
+                    inFlight.add(CompletableFuture.supplyAsync(() -> chunk(writer, rows, index, chunks), pool));
+                }
+
+                Chunk chunk = inFlight.removeFirst().get();
+                out.write(chunk.deflated);
+                crc = crc32Combine(crc, chunk.crc, chunk.length);
+                length += chunk.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            for (CompletableFuture<Chunk> pending : inFlight) {
+                pending.cancel(false);
+            }
+        }
+
+        writeIntLE(out, crc);
+        writeIntLE(out, length);
+    }
+
+    private Chunk chunk(ObjectWriter writer, List<?> rows, int index, int chunks) {
+        int from = index * chunkSize;
+        List<?> slice = rows.subList(from, Math.min(rows.size(), from + chunkSize));
+        boolean last = index == chunks - 1;
+
+        byte[] json;
+        try {
+            json = writer.writeValueAsBytes(slice);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // The elements of this chunk with what precedes them in the whole array, and the array end after the last
+        ByteArrayOutputStream text = new ByteArrayOutputStream(json.length + separator.length);
+        if (slice.isEmpty()) {
+            text.write(json, 0, json.length);
+        } else {
+            byte[] before = index == 0 ? arrayStart : separator;
+            text.write(before, 0, before.length);
+            text.write(json, arrayStart.length, json.length - arrayStart.length - arrayEnd.length);
+            if (last) {
+                text.write(arrayEnd, 0, arrayEnd.length);
+            }
+        }
+        byte[] input = text.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(input, 0, input.length);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(input.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflated.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // Ends on a byte boundary without a final block, so the next chunk can follow
+                int written;
+                do {
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    deflated.write(buffer, 0, written);
+                } while (written == buffer.length);
+            }
+            return new Chunk(deflated.toByteArray(), crc.getValue(), input.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeIntLE(OutputStream out, long value) throws IOException {
+        out.write((int) value & 0xff);
+        out.write((int) (value >>> 8) & 0xff);
+        out.write((int) (value >>> 16) & 0xff);
+        out.write((int) (value >>> 24) & 0xff);
+    }
+
+    /**
+     * The CRC-32 of two byte sequences concatenated, from their CRCs and the length of the second one, as zlib's
+     * {@code crc32_combine} computes it.
+     */
+    static long crc32Combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // The operator for one zero bit
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // Two zero bits, then four
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // Applies length2 zero bytes to crc1, squaring the operator for each bit of the length
+        long crc = crc1;
+        long length = length2;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length & 1) != 0) {
+                crc = gf2MatrixTimes(even, crc);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length & 1) != 0) {
+                crc = gf2MatrixTimes(odd, crc);
+            }
+            length >>= 1;
+        } while (length != 0);
+
+        return crc ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private static final class Chunk {
+
+        final byte[] deflated;
+        final long crc;
+        final long length;
+
+        Chunk(byte[] deflated, long crc, long length) {
+            this.deflated = deflated;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+}
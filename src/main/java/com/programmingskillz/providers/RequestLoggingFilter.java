@@ -0,0 +1,73 @@
+package com.programmingskillz.providers;
+
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs one line per request for a configurable sample of the traffic
+ * ({@code logging.requests.sampleRate}), plus every request that failed with a server error or took
+ * longer than {@code logging.requests.slowThresholdMillis}.
+ *
+ * @author Durim Kryeziu
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.AUTHENTICATION - 100)
+public class RequestLoggingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestLoggingFilter.class);
+
+    private static final String START_PROPERTY = RequestLoggingFilter.class.getName() + ".start";
+
+    private static final double SAMPLE_RATE =
+            ApplicationProperties.getDouble("logging.requests.sampleRate", 1.0);
+    private static final long SLOW_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            ApplicationProperties.getLong("logging.requests.slowThresholdMillis", 1000));
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (LOGGER.isInfoEnabled()) {
+            requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+            throws IOException {
+
+        Object start = requestContext.getProperty(START_PROPERTY);
+        if (start == null) {
+            return;
+        }
+
+        long durationNanos = System.nanoTime() - (Long) start;
+        int status = responseContext.getStatus();
+
+        if (status >= 500) {
+            LOGGER.warn("{} {} -> {} in {} ms", requestContext.getMethod(),
+                    requestContext.getUriInfo().getRequestUri().getPath(), status,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        } else if (durationNanos >= SLOW_THRESHOLD_NANOS) {
+            LOGGER.warn("Slow request {} {} -> {} in {} ms", requestContext.getMethod(),
+                    requestContext.getUriInfo().getRequestUri().getPath(), status,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        } else if (SAMPLE_RATE >= 1.0 || ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE) {
+            LOGGER.info("{} {} -> {} in {} ms", requestContext.getMethod(),
+                    requestContext.getUriInfo().getRequestUri().getPath(), status,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.programmingskillz.providers;
 
+import com.programmingskillz.export.BookExportServlet;
 import com.programmingskillz.repository.DataSource;
+import com.programmingskillz.service.BookService;
+import com.programmingskillz.util.Readiness;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.jersey.server.monitoring.ApplicationInfo;
 import org.glassfish.jersey.server.monitoring.DestroyListener;
 import org.slf4j.Logger;
@@ -24,11 +29,22 @@ public class SampleApplicationDestroyListener implements DestroyListener {
     @Inject
     private javax.inject.Provider<ApplicationInfo> applicationInfoProvider;
 
+    @Inject
+    private ServiceLocator serviceLocator;
+
     @Override
     public void onDestroy() {
 
         ApplicationInfo applicationInfo = applicationInfoProvider.get();
 
+        Readiness.notReady("shutting down");
+
+        BookExportServlet.serveFrom(null);
+
+        destroyBookService();
+
+        GZIPWriterInterceptor.shutdown();
+
         DataSource.close();
 
         deregisterJdbcDrivers();
@@ -36,6 +52,17 @@ public class SampleApplicationDestroyListener implements DestroyListener {
         LOGGER.info("Application '{}' destroyed.", applicationInfo.getResourceConfig().getApplicationName());
     }
 
+    /**
+     * HK2 would only destroy the service after this listener has closed the pool, too late for a write-behind
+     * repository to flush its pending changes.
+     */
+    private void destroyBookService() {
+        ServiceHandle<BookService> bookService = serviceLocator.getServiceHandle(BookService.class);
+        if (bookService != null && bookService.isActive()) {
+            bookService.destroy();
+        }
+    }
+
     private void deregisterJdbcDrivers() {
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
         Enumeration<Driver> drivers = DriverManager.getDrivers();
@@ -1,6 +1,16 @@
 package com.programmingskillz.providers;
 
+import com.programmingskillz.export.BookExportServlet;
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.metrics.ThreadAllocation;
 import com.programmingskillz.repository.DataSource;
+import com.programmingskillz.repository.Repositories;
+import com.programmingskillz.service.BookService;
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.Readiness;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.jersey.internal.util.PropertiesHelper;
+import org.glassfish.jersey.server.ServerProperties;
 import org.glassfish.jersey.server.monitoring.ApplicationEvent;
 import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
 import org.glassfish.jersey.server.monitoring.RequestEvent;
@@ -8,7 +18,10 @@ import org.glassfish.jersey.server.monitoring.RequestEventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
 import javax.ws.rs.ext.Provider;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static org.glassfish.jersey.server.monitoring.ApplicationEvent.Type.INITIALIZATION_FINISHED;
 
@@ -20,21 +33,63 @@ public class SampleApplicationEventListener implements ApplicationEventListener
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SampleApplicationEventListener.class);
 
+    /**
+     * One in {@code metrics.allocation.sampleEvery} requests records what it allocates, 0 turns it off.
+     */
+    private static final int ALLOCATION_SAMPLE_EVERY = ThreadAllocation.isSupported()
+            ? ApplicationProperties.getInt("metrics.allocation.sampleEvery", 10) : 0;
+
+    @Inject
+    private ServiceLocator serviceLocator;
+
+    private volatile boolean monitoringEnabled;
+
     @Override
-    public synchronized void onEvent(ApplicationEvent applicationEvent) {
+    public void onEvent(ApplicationEvent applicationEvent) {
         if (applicationEvent.getType().equals(INITIALIZATION_FINISHED)) {
 
             String applicationName = applicationEvent.getResourceConfig().getApplicationName();
             LOGGER.info("Initializing '{}'...", applicationName);
+            Readiness.starting();
+
+            monitoringEnabled = PropertiesHelper.isProperty(
+                    applicationEvent.getResourceConfig().getProperty(ServerProperties.MONITORING_ENABLED));
 
-            DataSource.init();
+            if (Repositories.usesDatabase()) {
+                DataSource.init();
+                try {
+                    DataSource.applySchema();
+                    DataSource.prefill();
+                } catch (SQLException e) {
+                    LOGGER.error("Could not prepare the database, the application will not report ready:", e);
+                    Readiness.notReady("database unavailable");
+                    return;
+                }
+            }
+
+            // Looked up on the first export, not to create the service before it is needed
+            BookExportServlet.serveFrom(() -> serviceLocator.getService(BookService.class));
+
+            if (ApplicationWarmup.isEnabled()) {
+                Thread warmup = new Thread(
+                        new ApplicationWarmup(() -> serviceLocator.getService(BookService.class)), "warmup");
+                warmup.setDaemon(true);
+                warmup.start();
+            } else {
+                Readiness.ready();
+            }
 
             LOGGER.info("Application '{}' was initialized.", applicationName);
         }
     }
 
     @Override
-    public synchronized RequestEventListener onRequest(RequestEvent requestEvent) {
-        return null;
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        if (!monitoringEnabled) {
+            return null;
+        }
+        boolean sampleAllocation = ALLOCATION_SAMPLE_EVERY > 0
+                && ThreadLocalRandom.current().nextInt(ALLOCATION_SAMPLE_EVERY) == 0;
+        return new MetricsRequestEventListener(MetricsRegistry.requests(), sampleAllocation);
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,7 @@
 package com.programmingskillz.providers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.programmingskillz.util.Mappers;
 
 import javax.ws.rs.ext.ContextResolver;
 
@@ -14,10 +13,7 @@ public class SampleObjectMapperProvider implements ContextResolver<ObjectMapper>
     private final ObjectMapper objectMapper;
 
     public SampleObjectMapperProvider() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper = Mappers.json();
     }
 
     @Override
@@ -0,0 +1,105 @@
+package com.programmingskillz.providers;
+
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limited, deduplicated logging for the exception mappers.
+ * <p>
+ * Exceptions are grouped by type and throwing frame. Within each {@code logging.errors.windowMillis}
+ * window only the first {@code logging.errors.maxPerWindow} occurrences of a group are logged, the
+ * rest are counted and reported with the next occurrence that is logged.
+ *
+ * @author Durim Kryeziu
+ */
+class ThrottledErrorLog {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            ApplicationProperties.getLong("logging.errors.windowMillis", 60000));
+    private static final int MAX_PER_WINDOW = ApplicationProperties.getInt("logging.errors.maxPerWindow", 5);
+    private static final int MAX_GROUPS = 1024;
+
+    private final Logger logger;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    ThrottledErrorLog(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Logs an unexpected failure at ERROR level, with its stack trace.
+     */
+    void error(Throwable exception) {
+        if (!logger.isErrorEnabled()) {
+            return;
+        }
+        long suppressed = acquire(exception);
+        if (suppressed >= 0) {
+            logger.error("{}: (suppressed {} similar)", exception.getClass().getTypeName(), suppressed, exception);
+        }
+    }
+
+    /**
+     * Logs an expected outcome, e.g. a client error, at INFO level without stack trace.
+     */
+    void info(Throwable exception) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        long suppressed = acquire(exception);
+        if (suppressed >= 0) {
+            logger.info("{}: {} (suppressed {} similar)",
+                    exception.getClass().getTypeName(), exception.getMessage(), suppressed);
+        }
+    }
+
+    /**
+     * @return number of occurrences suppressed since the last one logged, or -1 if this one must be suppressed
+     */
+    private long acquire(Throwable exception) {
+        String key = keyOf(exception);
+
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= MAX_GROUPS) {
+                windows.clear();
+            }
+            window = windows.computeIfAbsent(key, k -> new Window());
+        }
+        return window.acquire(System.nanoTime());
+    }
+
+    private static String keyOf(Throwable exception) {
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        if (stackTrace.length == 0) {
+            return exception.getClass().getName();
+        }
+        return exception.getClass().getName() + '@' + stackTrace[0];
+    }
+
+    private static class Window {
+
+        private final AtomicLong start = new AtomicLong(System.nanoTime());
+        private final AtomicInteger logged = new AtomicInteger();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        long acquire(long now) {
+            long windowStart = start.get();
+            if (now - windowStart >= WINDOW_NANOS && start.compareAndSet(windowStart, now)) {
+                logged.set(0);
+            }
+
+            if (logged.incrementAndGet() <= MAX_PER_WINDOW) {
+                return suppressed.getAndSet(0);
+            }
+            suppressed.incrementAndGet();
+            return -1;
+        }
+    }
+}
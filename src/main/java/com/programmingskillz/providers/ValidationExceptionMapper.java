@@ -1,6 +1,6 @@
 package com.programmingskillz.providers;
 
-import com.programmingskillz.exceptions.ErrorResponse;
+import com.programmingskillz.exceptions.ErrorResponses;
 import org.glassfish.jersey.server.validation.ValidationError;
 import org.glassfish.jersey.server.validation.internal.ValidationHelper;
 import org.slf4j.Logger;
@@ -22,17 +22,24 @@ import java.util.List;
 public class ValidationExceptionMapper implements ExceptionMapper<ValidationException> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ValidationExceptionMapper.class);
+    private static final ThrottledErrorLog ERROR_LOG = new ThrottledErrorLog(LOGGER);
 
     @Override
     public Response toResponse(ValidationException exception) {
 
-        LOGGER.error("{}:", exception.getClass().getTypeName(), exception);
-        LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        }
 
         if (exception instanceof ConstraintViolationException) {
             ConstraintViolationException violationException = (ConstraintViolationException) exception;
 
             Response.Status status = ValidationHelper.getResponseStatus(violationException);
+            if (status == Response.Status.BAD_REQUEST) {
+                ERROR_LOG.info(exception);
+            } else {
+                ERROR_LOG.error(exception);
+            }
 
             List<ValidationError> validationErrors = ValidationHelper.constraintViolationToValidationErrors(violationException);
 
@@ -42,15 +49,11 @@ public class ValidationExceptionMapper implements ExceptionMapper<ValidationExce
                     .type(MediaType.APPLICATION_JSON)
                     .build();
         } else {
+            ERROR_LOG.error(exception);
             Response.Status status = Response.Status.INTERNAL_SERVER_ERROR;
 
-            ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setCode(status.getStatusCode());
-            errorResponse.setStatus(status.getReasonPhrase());
-            errorResponse.setMessage(exception.getMessage());
-
             return Response.status(status)
-                    .entity(errorResponse)
+                    .entity(ErrorResponses.of(status, exception.getMessage()))
                     .type(MediaType.APPLICATION_JSON)
                     .build();
         }
@@ -1,6 +1,6 @@
 package com.programmingskillz.providers;
 
-import com.programmingskillz.exceptions.ErrorResponse;
+import com.programmingskillz.exceptions.ErrorResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,32 +20,39 @@ import java.util.Map;
 public class WebApplicationExceptionMapper implements ExceptionMapper<WebApplicationException> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WebApplicationExceptionMapper.class);
+    private static final ThrottledErrorLog ERROR_LOG = new ThrottledErrorLog(LOGGER);
 
     @Override
     public Response toResponse(WebApplicationException exception) {
 
-        LOGGER.error("WebApplicationException:", exception);
-        LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
-        ErrorResponse errorResponse = new ErrorResponse();
-
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Constructing Error Response for: [{}]", exception.toString());
+        }
         Response exceptionResponse = exception.getResponse();
         Response.StatusType statusInfo = exceptionResponse.getStatusInfo();
 
-        errorResponse.setCode(statusInfo.getStatusCode());
-        errorResponse.setStatus(statusInfo.getReasonPhrase());
-        errorResponse.setMessage(exception.getMessage());
+        if (statusInfo.getFamily() == Response.Status.Family.SERVER_ERROR) {
+            ERROR_LOG.error(exception);
+        } else {
+            ERROR_LOG.info(exception);
+        }
 
         Response.ResponseBuilder responseBuilder = Response.status(statusInfo)
-                .entity(errorResponse)
+                .entity(ErrorResponses.of(statusInfo, exception.getMessage()))
                 .type(MediaType.APPLICATION_JSON);
 
         MultivaluedMap<String, Object> headers = exceptionResponse.getHeaders();
         if (headers.size() > 0) {
-            LOGGER.debug("Adding headers:");
+            boolean debugEnabled = LOGGER.isDebugEnabled();
+            if (debugEnabled) {
+                LOGGER.debug("Adding headers:");
+            }
             for (Map.Entry<String, List<Object>> entry : headers.entrySet()) {
                 String headerKey = entry.getKey();
                 List<Object> headerValues = entry.getValue();
-                LOGGER.debug("  {} -> {}", headerKey, headerValues);
+                if (debugEnabled) {
+                    LOGGER.debug("  {} -> {}", headerKey, headerValues);
+                }
                 if (headerValues.size() == 1) {
                     responseBuilder.header(headerKey, headerValues.get(0));
                 } else {
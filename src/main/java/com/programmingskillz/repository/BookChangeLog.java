@@ -0,0 +1,144 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.util.ApplicationProperties;
+import org.adeptnet.sql.NamedParameterStatement;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * The {@code book_changes} table. With {@code repository.changeLog.enabled} every write of {@link BookRepository}
+ * appends the id it changed, in the same transaction, and no id for {@code deleteAll}. Versions are assigned in
+ * insert order but transactions may commit out of that order, readers have to expect versions to show up late.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookChangeLog {
+
+    public static boolean enabled() {
+        return ApplicationProperties.getBoolean("repository.changeLog.enabled", false);
+    }
+
+    /**
+     * Appends one change per id ({@code null} for all books) on the caller's connection and transaction.
+     */
+    void append(Connection conn, Collection<?> idParams) throws SQLException {
+        try (NamedParameterStatement nps = new NamedParameterStatement(conn,
+                "INSERT INTO book_changes (book_id) VALUES (:bookId)")) {
+            for (Object idParam : idParams) {
+                nps.setObject("bookId", idParam);
+                nps.addBatch();
+            }
+            nps.executeBatch();
+        }
+    }
+
+    /**
+     * @return the highest version appended so far, 0 if there is none
+     */
+    public long latestVersion() throws SQLException {
+        String sql = "SELECT COALESCE(MAX(version), 0) FROM book_changes";
+
+        QueryTimer timer = QueryTimer.start("changeLogLatest", sql);
+        try (Connection conn = DataSource.getConnection();
+             NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
+
+            long version;
+            try (ResultSet rs = nps.executeQuery()) {
+                timer.executed();
+                rs.next();
+                version = rs.getLong(1);
+                timer.fetched();
+            }
+            timer.succeeded();
+            return version;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * @return at most {@code limit} committed changes with a version above {@code after}, in version order
+     */
+    public List<Entry> since(long after, int limit) throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+
+        String sql = "SELECT version, book_id FROM book_changes WHERE version > :after ORDER BY version LIMIT :limit";
+
+        QueryTimer timer = QueryTimer.start("changeLogSince", sql);
+        try (Connection conn = DataSource.getConnection();
+             NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
+
+            Map<String, Object> params = new HashMap<>();
+            params.put("after", after);
+            params.put("limit", limit);
+            nps.setAll(params);
+            timer.params(params);
+
+            try (ResultSet rs = nps.executeQuery()) {
+                timer.executed();
+
+                while (rs.next()) {
+                    timer.fetched();
+                    entries.add(new Entry(rs.getLong("version"), rs.getString("book_id")));
+                    timer.mapped();
+                }
+                timer.fetched();
+            }
+            timer.succeeded();
+        } finally {
+            timer.finish();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Deletes the changes appended more than {@code retentionSeconds} ago by the database clock.
+     */
+    public int purge(long retentionSeconds) throws SQLException {
+        String sql = "DELETE FROM book_changes WHERE changed < DATEADD('SECOND', -:seconds, CURRENT_TIMESTAMP)";
+
+        QueryTimer timer = QueryTimer.start("changeLogPurge", sql);
+        try (Connection conn = DataSource.getConnection();
+             NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
+
+            nps.setObject("seconds", retentionSeconds);
+            timer.params(Collections.singletonMap("seconds", retentionSeconds));
+            int rows = nps.executeUpdate();
+            timer.rows(rows);
+            timer.executed();
+            timer.succeeded();
+            return rows;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    public static final class Entry {
+
+        private final long version;
+        private final String bookId;
+
+        Entry(long version, String bookId) {
+            this.version = version;
+            this.bookId = bookId;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the changed book, {@code null} if all books were deleted
+         */
+        public String getBookId() {
+            return bookId;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The binary layout of a book record in the {@link MappedBookRepository} file.
+ * <pre>
+ * int    length of the whole record, written last (0 marks the end of a segment)
+ * byte   flags: DELETED, NO_PUBLISHED, NO_PAGES, SECONDS
+ * long   id, most significant bits
+ * long   id, least significant bits
+ * long   published, epoch seconds
+ * int    published, nanoseconds within the second
+ * short  pages
+ * title, author, description, isbn, publisher: int length in bytes (-1 for null), UTF-8 bytes
+ * </pre>
+ * Records without the {@code SECONDS} flag were written before it existed: published is in epoch milliseconds
+ * and there are no nanoseconds, the fields after it start 4 bytes earlier.
+ * Records are never modified once written, except for the {@code DELETED} flag, so a book can be decoded
+ * field by field straight from the mapped file. The {@link LogStructuredBookRepository} stores the same records
+ * as the values of its log.
+ *
+ * @author Durim Kryeziu
+ */
+final class BookCodec {
+
+    static final int LENGTH = 0;
+    static final int FLAGS = 4;
+    static final int ID_MSB = 5;
+    static final int ID_LSB = 13;
+    static final int PUBLISHED = 21;
+    static final int PUBLISHED_NANOS = 29;
+    static final int PAGES = 33;
+    static final int STRINGS = 35;
+    static final int MILLIS_PAGES = 29;
+    static final int MILLIS_STRINGS = 31;
+    /**
+     * Length of the shortest record, one without the {@code SECONDS} flag and with only null strings.
+     */
+    static final int MIN_LENGTH = MILLIS_STRINGS + 5 * 4;
+
+    static final byte DELETED = 1;
+    static final byte NO_PUBLISHED = 2;
+    static final byte NO_PAGES = 4;
+    static final byte SECONDS = 8;
+
+    static final int TITLE = 0;
+    static final int AUTHOR = 1;
+    static final int DESCRIPTION = 2;
+    static final int ISBN = 3;
+    static final int PUBLISHER = 4;
+
+    private BookCodec() {
+    }
+
+    /**
+     * @return the record, with its length still 0
+     */
+    static byte[] encode(UUID id, Book book) throws SQLException {
+        Integer pages = book.getPages();
+        if (pages != null && (pages < Short.MIN_VALUE || pages > Short.MAX_VALUE)) {
+            throw new SQLException("Pages out of range: " + pages);
+        }
+
+        byte[][] strings = {
+                utf8(book.getTitle()), utf8(book.getAuthor()), utf8(book.getDescription()),
+                utf8(book.getIsbn()), utf8(book.getPublisher())
+        };
+        int length = STRINGS;
+        for (byte[] string : strings) {
+            length += 4 + (string != null ? string.length : 0);
+        }
+
+        byte flags = SECONDS;
+        if (book.getPublished() == null) {
+            flags |= NO_PUBLISHED;
+        }
+        if (pages == null) {
+            flags |= NO_PAGES;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(0);
+        record.put(flags);
+        record.putLong(id.getMostSignificantBits());
+        record.putLong(id.getLeastSignificantBits());
+        record.putLong(book.getPublished() != null ? book.getPublished().getEpochSecond() : 0L);
+        record.putInt(book.getPublished() != null ? book.getPublished().getNano() : 0);
+        record.putShort(pages != null ? pages.shortValue() : 0);
+        for (byte[] string : strings) {
+            if (string == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(string.length);
+                record.put(string);
+            }
+        }
+        return record.array();
+    }
+
+    static Book decode(ByteBuffer buffer, int record) {
+        Book book = new Book();
+        book.setId(id(buffer, record).toString());
+        book.setTitle(string(buffer, record, TITLE));
+        book.setAuthor(string(buffer, record, AUTHOR));
+        book.setDescription(string(buffer, record, DESCRIPTION));
+        book.setIsbn(string(buffer, record, ISBN));
+        book.setPages(pages(buffer, record));
+        book.setPublisher(string(buffer, record, PUBLISHER));
+        book.setPublished(published(buffer, record));
+        return book;
+    }
+
+    static int length(ByteBuffer buffer, int record) {
+        return buffer.getInt(record + LENGTH);
+    }
+
+    static boolean isDeleted(ByteBuffer buffer, int record) {
+        return (buffer.get(record + FLAGS) & DELETED) != 0;
+    }
+
+    static void markDeleted(ByteBuffer buffer, int record) {
+        buffer.put(record + FLAGS, (byte) (buffer.get(record + FLAGS) | DELETED));
+    }
+
+    static UUID id(ByteBuffer buffer, int record) {
+        return new UUID(buffer.getLong(record + ID_MSB), buffer.getLong(record + ID_LSB));
+    }
+
+    static Instant published(ByteBuffer buffer, int record) {
+        byte flags = buffer.get(record + FLAGS);
+        if ((flags & NO_PUBLISHED) != 0) {
+            return null;
+        }
+        if ((flags & SECONDS) == 0) {
+            return Instant.ofEpochMilli(buffer.getLong(record + PUBLISHED));
+        }
+        return Instant.ofEpochSecond(buffer.getLong(record + PUBLISHED), buffer.getInt(record + PUBLISHED_NANOS));
+    }
+
+    static Integer pages(ByteBuffer buffer, int record) {
+        byte flags = buffer.get(record + FLAGS);
+        if ((flags & NO_PAGES) != 0) {
+            return null;
+        }
+        return (int) buffer.getShort(record + ((flags & SECONDS) != 0 ? PAGES : MILLIS_PAGES));
+    }
+
+    /**
+     * @return the position of the length of the given string field
+     */
+    static int stringPosition(ByteBuffer buffer, int record, int field) {
+        int position = record + ((buffer.get(record + FLAGS) & SECONDS) != 0 ? STRINGS : MILLIS_STRINGS);
+        for (int i = 0; i < field; i++) {
+            position += 4 + Math.max(buffer.getInt(position), 0);
+        }
+        return position;
+    }
+
+    static String string(ByteBuffer buffer, int record, int field) {
+        int position = stringPosition(buffer, record, field);
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        copy(buffer, position + 4, bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies bytes with a relative bulk get, so this moves the position of {@code buffer}.
+     */
+    static void copy(ByteBuffer buffer, int position, byte[] target, int length) {
+        buffer.position(position);
+        buffer.get(target, 0, length);
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+}
@@ -1,7 +1,9 @@
 package com.programmingskillz.repository;
 
 import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookModifiedException;
 import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.util.ApplicationProperties;
 import org.adeptnet.sql.NamedParameterStatement;
 
 import java.sql.Connection;
@@ -15,19 +17,49 @@ import java.util.*;
  */
 public class BookRepository implements Repository<Book> {
 
+    /**
+     * {@code repository.idStorage=uuid} stores ids in a 16 byte {@code UUID} column (see {@code db/setup-uuid.sql})
+     * instead of {@code CHAR(36)}. The API keeps using the canonical string form either way.
+     */
+    private static final boolean UUID_STORAGE =
+            "uuid".equals(ApplicationProperties.getString("repository.idStorage", "char"));
+
+    private static final int FIND_ALL_BY_ID_CHUNK_SIZE =
+            ApplicationProperties.getInt("repository.findAllById.chunkSize", 100);
+
+    /**
+     * Properties {@link #update(Book, Set)} can write, each stored in the column of the same name.
+     */
+    private static final List<String> UPDATABLE_PROPERTIES = Collections.unmodifiableList(Arrays.asList(
+            "title", "author", "description", "isbn", "pages", "publisher", "published"));
+
+    private final IdGenerator idGenerator;
+    private final BookChangeLog changeLog;
+
+    public BookRepository() {
+        this(IdGenerator.fromProperties());
+    }
+
+    public BookRepository(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        this.changeLog = BookChangeLog.enabled() ? new BookChangeLog() : null;
+    }
+
     @Override
     public Book save(Book entity) throws SQLException {
 
         String sql = "INSERT INTO books (id, title, author, description, isbn, pages, publisher, published) " +
                 "VALUES(:id, :title, :author, :description, :isbn, :pages, :publisher, :published);";
 
+        QueryTimer timer = QueryTimer.start("save", sql);
         try (Connection conn = DataSource.getConnection();
              NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
 
-            entity.setId(UUID.randomUUID().toString());
+            entity.setId(newId());
 
             Map<String, Object> params = new HashMap<>();
-            params.put("id", entity.getId());
+            params.put("id", idParam(entity.getId()));
             params.put("title", entity.getTitle());
             params.put("author", entity.getAuthor());
             params.put("description", entity.getDescription());
@@ -36,9 +68,14 @@ public class BookRepository implements Repository<Book> {
             params.put("publisher", entity.getPublisher());
             params.put("published", entity.getPublished() != null ? Timestamp.from(entity.getPublished()) : null);
             nps.setAll(params);
+            timer.params(params);
 
-            nps.executeUpdate();
+            timer.rows(executeUpdate(conn, nps, params.get("id")));
+            timer.executed();
+            timer.succeeded();
             return entity;
+        } finally {
+            timer.finish();
         }
     }
 
@@ -48,26 +85,34 @@ public class BookRepository implements Repository<Book> {
 
         String sql = "SELECT * FROM books WHERE id = :id";
 
+        QueryTimer timer = QueryTimer.start("findOne", sql);
         try (Connection conn = DataSource.getConnection();
              NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
-            nps.setString("id", id);
+            timer.borrowed();
+            Object idParam = idParam(id);
+            if (idParam == null) {
+                timer.succeeded();
+                throw BookNotFoundException.forId(id);
+            }
+            nps.setObject("id", idParam);
+            timer.params(Collections.singletonMap("id", idParam));
 
             ResultSet rs = nps.executeQuery();
+            timer.executed();
             if (rs.next()) {
-                book = new Book();
-                book.setId(id);
-                book.setTitle(rs.getString("title"));
-                book.setAuthor(rs.getString("author"));
-                book.setDescription(rs.getString("description"));
-                book.setIsbn(rs.getString("isbn"));
-                book.setPages(rs.getInt("pages"));
-                book.setPublisher(rs.getString("publisher"));
-                book.setPublished(rs.getTimestamp("published") != null ? rs.getTimestamp("published").toInstant() : null);
+                timer.fetched();
+                book = toBook(rs);
+                timer.mapped();
             } else {
-                throw new BookNotFoundException("Book with id '" + id + "' not found.");
+                timer.fetched();
+                timer.succeeded();
+                throw BookNotFoundException.forId(id);
             }
             rs.close();
+            timer.succeeded();
             return book;
+        } finally {
+            timer.finish();
         }
     }
 
@@ -77,27 +122,118 @@ public class BookRepository implements Repository<Book> {
 
         String sql = "SELECT * FROM books";
 
+        QueryTimer timer = QueryTimer.start("findAll", sql);
         try (Connection conn = DataSource.getConnection();
-             NamedParameterStatement nps = new NamedParameterStatement(conn, sql);
-             ResultSet rs = nps.executeQuery()) {
-
-            while (rs.next()) {
-                Book book = new Book();
-                book.setId(rs.getString("id"));
-                book.setTitle(rs.getString("title"));
-                book.setAuthor(rs.getString("author"));
-                book.setDescription(rs.getString("description"));
-                book.setIsbn(rs.getString("isbn"));
-                book.setPages(rs.getInt("pages"));
-                book.setPublisher(rs.getString("publisher"));
-                book.setPublished(rs.getTimestamp("published") != null ? rs.getTimestamp("published").toInstant() : null);
-                books.add(book);
+             NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
+
+            try (ResultSet rs = nps.executeQuery()) {
+                timer.executed();
+
+                while (rs.next()) {
+                    timer.fetched();
+                    books.add(toBook(rs));
+                    timer.mapped();
+                }
+                timer.fetched();
             }
+            timer.succeeded();
+        } finally {
+            timer.finish();
         }
 
         return books;
     }
 
+    /**
+     * Looks the books up with {@code IN} queries of up to {@code repository.findAllById.chunkSize} ids, all on
+     * one connection. Each chunk is padded to a power of two by repeating its last id, so that only a few
+     * distinct statements are ever prepared.
+     */
+    @Override
+    public Map<String, Book> findAllById(Collection<String> ids) throws SQLException {
+        // Ids as stored (e.g. lower case UUIDs) to the ids asked for
+        Map<String, String> requestedIds = new LinkedHashMap<>();
+        for (String id : ids) {
+            Object idParam = idParam(id);
+            if (idParam != null) {
+                requestedIds.putIfAbsent(idParam.toString(), id);
+            }
+        }
+        Map<String, Book> books = new HashMap<>();
+        if (requestedIds.isEmpty()) {
+            return books;
+        }
+
+        List<Object> idParams = new ArrayList<>(requestedIds.size());
+        for (String id : requestedIds.keySet()) {
+            idParams.add(idParam(id));
+        }
+
+        QueryTimer timer = QueryTimer.start("findAllById",
+                findAllByIdSql(paddedSize(Math.min(idParams.size(), FIND_ALL_BY_ID_CHUNK_SIZE))));
+        try (Connection conn = DataSource.getConnection()) {
+            timer.borrowed();
+
+            for (int from = 0; from < idParams.size(); from += FIND_ALL_BY_ID_CHUNK_SIZE) {
+                List<Object> chunk = idParams.subList(from, Math.min(from + FIND_ALL_BY_ID_CHUNK_SIZE, idParams.size()));
+                int size = paddedSize(chunk.size());
+
+                try (NamedParameterStatement nps = new NamedParameterStatement(conn, findAllByIdSql(size))) {
+                    for (int i = 0; i < size; i++) {
+                        nps.setObject("id" + i, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+
+                    try (ResultSet rs = nps.executeQuery()) {
+                        timer.executed();
+
+                        while (rs.next()) {
+                            timer.fetched();
+                            Book book = toBook(rs);
+                            books.put(requestedIds.getOrDefault(book.getId(), book.getId()), book);
+                            timer.mapped();
+                        }
+                        timer.fetched();
+                    }
+                }
+            }
+            timer.succeeded();
+        } finally {
+            timer.finish();
+        }
+
+        return books;
+    }
+
+    @Override
+    public List<String> findAllIds() throws SQLException {
+        List<String> ids = new ArrayList<>();
+
+        String sql = "SELECT id FROM books";
+
+        QueryTimer timer = QueryTimer.start("findAllIds", sql);
+        try (Connection conn = DataSource.getConnection();
+             NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
+
+            try (ResultSet rs = nps.executeQuery()) {
+                timer.executed();
+
+                while (rs.next()) {
+                    timer.fetched();
+                    ids.add(rs.getString("id"));
+                    timer.mapped();
+                }
+                timer.fetched();
+            }
+            timer.succeeded();
+        } finally {
+            timer.finish();
+        }
+
+        return ids;
+    }
+
     @Override
     public Book update(Book entity) throws SQLException {
 
@@ -105,11 +241,19 @@ public class BookRepository implements Repository<Book> {
                 "description=:description, isbn=:isbn, pages=:pages, " +
                 "publisher=:publisher, published=:published WHERE id=:id";
 
+        QueryTimer timer = QueryTimer.start("update", sql);
         try (Connection conn = DataSource.getConnection();
              NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
+
+            Object idParam = idParam(entity.getId());
+            if (idParam == null) {
+                timer.succeeded();
+                throw BookNotFoundException.forId(entity.getId());
+            }
 
             Map<String, Object> params = new HashMap<>();
-            params.put("id", entity.getId());
+            params.put("id", idParam);
             params.put("title", entity.getTitle());
             params.put("author", entity.getAuthor());
             params.put("description", entity.getDescription());
@@ -118,9 +262,106 @@ public class BookRepository implements Repository<Book> {
             params.put("publisher", entity.getPublisher());
             params.put("published", entity.getPublished() != null ? Timestamp.from(entity.getPublished()) : null);
             nps.setAll(params);
+            timer.params(params);
+
+            int rows = executeUpdate(conn, nps, idParam);
+            timer.rows(rows);
+            timer.executed();
+            timer.succeeded();
+            if (rows == 0) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            return entity;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Sets only the columns of the given properties, so that a small edit neither sends nor rewrites the others
+     * (e.g. a long description).
+     *
+     * @throws BookNotFoundException if the book does not exist
+     */
+    @Override
+    public Book update(Book entity, Set<String> properties) throws SQLException {
+        return updateColumns(entity, properties, null);
+    }
+
+    /**
+     * Like {@link #update(Book, Set)}, with the columns as read in {@code expected} added to the {@code WHERE}
+     * clause, so that other instances writing to the same database cannot slip a change in between.
+     *
+     * @throws BookModifiedException if the row no longer has the values of {@code expected}
+     */
+    @Override
+    public Book update(Book entity, Set<String> properties, Book expected) throws SQLException {
+        return updateColumns(entity, properties, expected);
+    }
+
+    private Book updateColumns(Book entity, Set<String> properties, Book expected) throws SQLException {
+        if (!UPDATABLE_PROPERTIES.containsAll(properties)) {
+            throw new IllegalArgumentException("Cannot update " + properties + ", only " + UPDATABLE_PROPERTIES);
+        }
+        if (properties.isEmpty()) {
+            return entity;
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        StringJoiner columns = new StringJoiner(", ");
+        // In a fixed order, so that the same properties always give the same statement
+        for (String property : UPDATABLE_PROPERTIES) {
+            if (properties.contains(property)) {
+                columns.add(property + "=:" + property);
+                params.put(property, columnValue(entity, property));
+            }
+        }
+        StringBuilder sql = new StringBuilder("UPDATE books SET ").append(columns).append(" WHERE id=:id");
+        if (expected != null) {
+            for (String property : UPDATABLE_PROPERTIES) {
+                Object value = columnValue(expected, property);
+                if (value == null) {
+                    sql.append(" AND ").append(property).append(" IS NULL");
+                } else {
+                    // The column is a DATE, a book not read from it back may still carry the time of day
+                    String param = "published".equals(property) ? "CAST(:expected_published AS DATE)"
+                            : ":expected_" + property;
+                    sql.append(" AND ").append(property).append('=').append(param);
+                    params.put("expected_" + property, value);
+                }
+            }
+        }
+
+        QueryTimer timer = QueryTimer.start(expected != null ? "updateColumnsIfUnchanged" : "updateColumns",
+                sql.toString());
+        try (Connection conn = DataSource.getConnection();
+             NamedParameterStatement nps = new NamedParameterStatement(conn, sql.toString())) {
+            timer.borrowed();
+
+            Object idParam = idParam(entity.getId());
+            if (idParam == null) {
+                timer.succeeded();
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            params.put("id", idParam);
+            nps.setAll(params);
+            timer.params(params);
 
-            nps.executeUpdate();
+            int rows = executeUpdate(conn, nps, idParam);
+            timer.rows(rows);
+            timer.executed();
+            timer.succeeded();
+            if (rows == 0) {
+                if (expected != null) {
+                    // Throws if it was deleted instead
+                    findOne(entity.getId());
+                    throw BookModifiedException.forId(entity.getId());
+                }
+                throw BookNotFoundException.forId(entity.getId());
+            }
             return entity;
+        } finally {
+            timer.finish();
         }
     }
 
@@ -128,11 +369,23 @@ public class BookRepository implements Repository<Book> {
     public void delete(String id) throws SQLException {
         String sql = "DELETE FROM books WHERE id=:id";
 
+        QueryTimer timer = QueryTimer.start("delete", sql);
         try (Connection conn = DataSource.getConnection();
              NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
 
-            nps.setString("id", id);
-            nps.executeUpdate();
+            Object idParam = idParam(id);
+            if (idParam == null) {
+                timer.succeeded();
+                return;
+            }
+            nps.setObject("id", idParam);
+            timer.params(Collections.singletonMap("id", idParam));
+            timer.rows(executeUpdate(conn, nps, idParam));
+            timer.executed();
+            timer.succeeded();
+        } finally {
+            timer.finish();
         }
     }
 
@@ -140,10 +393,189 @@ public class BookRepository implements Repository<Book> {
     public void deleteAll() throws SQLException {
         String sql = "DELETE FROM books";
 
+        QueryTimer timer = QueryTimer.start("deleteAll", sql);
         try (Connection conn = DataSource.getConnection();
              NamedParameterStatement nps = new NamedParameterStatement(conn, sql)) {
+            timer.borrowed();
 
-            nps.executeUpdate();
+            timer.rows(executeUpdate(conn, nps, null));
+            timer.executed();
+            timer.succeeded();
+        } finally {
+            timer.finish();
         }
     }
-}
\ No newline at end of file
+
+    String newId() {
+        return idGenerator.nextId().toString();
+    }
+
+    /**
+     * Applies the changes collected by {@link WriteBehindRepository} in one transaction: optionally deletes all
+     * books first, then inserts or replaces {@code upserts} and deletes {@code deletes}.
+     */
+    void writeBatch(boolean deleteAllFirst, Collection<Book> upserts, Collection<String> deletes) throws SQLException {
+        String upsertSql = "MERGE INTO books (id, title, author, description, isbn, pages, publisher, published) " +
+                "KEY(id) VALUES(:id, :title, :author, :description, :isbn, :pages, :publisher, :published)";
+        String deleteSql = "DELETE FROM books WHERE id=:id";
+
+        QueryTimer timer = QueryTimer.start("writeBatch", upsertSql);
+        try (Connection conn = DataSource.getConnection()) {
+            timer.borrowed();
+            conn.setAutoCommit(false);
+            try {
+                if (deleteAllFirst) {
+                    try (NamedParameterStatement nps = new NamedParameterStatement(conn, "DELETE FROM books")) {
+                        timer.rows(nps.executeUpdate());
+                    }
+                }
+                if (!upserts.isEmpty()) {
+                    try (NamedParameterStatement nps = new NamedParameterStatement(conn, upsertSql)) {
+                        for (Book book : upserts) {
+                            Map<String, Object> params = new HashMap<>();
+                            params.put("id", idParam(book.getId()));
+                            params.put("title", book.getTitle());
+                            params.put("author", book.getAuthor());
+                            params.put("description", book.getDescription());
+                            params.put("isbn", book.getIsbn());
+                            params.put("pages", book.getPages());
+                            params.put("publisher", book.getPublisher());
+                            params.put("published", book.getPublished() != null ? Timestamp.from(book.getPublished()) : null);
+                            nps.setAll(params);
+                            nps.addBatch();
+                        }
+                        timer.rows(nps.executeBatch().length);
+                    }
+                }
+                if (!deletes.isEmpty()) {
+                    try (NamedParameterStatement nps = new NamedParameterStatement(conn, deleteSql)) {
+                        for (String id : deletes) {
+                            Object idParam = idParam(id);
+                            if (idParam != null) {
+                                nps.setObject("id", idParam);
+                                nps.addBatch();
+                            }
+                        }
+                        timer.rows(nps.executeBatch().length);
+                    }
+                }
+                if (changeLog != null) {
+                    List<Object> changedIds = new ArrayList<>();
+                    if (deleteAllFirst) {
+                        changedIds.add(null);
+                    }
+                    for (Book book : upserts) {
+                        changedIds.add(idParam(book.getId()));
+                    }
+                    for (String id : deletes) {
+                        Object idParam = idParam(id);
+                        if (idParam != null) {
+                            changedIds.add(idParam);
+                        }
+                    }
+                    changeLog.append(conn, changedIds);
+                }
+                timer.executed();
+                conn.commit();
+                timer.succeeded();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Executes a write and, if {@code repository.changeLog.enabled}, appends its change to the
+     * {@link BookChangeLog} in the same transaction. Nothing is appended when no row changed.
+     */
+    private int executeUpdate(Connection conn, NamedParameterStatement nps, Object changedId) throws SQLException {
+        if (changeLog == null) {
+            return nps.executeUpdate();
+        }
+
+        conn.setAutoCommit(false);
+        try {
+            int rows = nps.executeUpdate();
+            if (rows > 0) {
+                changeLog.append(conn, Collections.singletonList(changedId));
+            }
+            conn.commit();
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Converts an id from the API into the value bound to the id column.
+     *
+     * @return {@code null} if the id cannot exist in the configured storage
+     */
+    private static Object idParam(String id) {
+        if (!UUID_STORAGE) {
+            return id;
+        }
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String findAllByIdSql(int size) {
+        StringJoiner params = new StringJoiner(", ", "SELECT * FROM books WHERE id IN (", ")");
+        for (int i = 0; i < size; i++) {
+            params.add(":id" + i);
+        }
+        return params.toString();
+    }
+
+    private static int paddedSize(int size) {
+        return size <= 1 ? 1 : Math.min(FIND_ALL_BY_ID_CHUNK_SIZE, Integer.highestOneBit(size - 1) << 1);
+    }
+
+    private static Object columnValue(Book book, String property) {
+        switch (property) {
+            case "title":
+                return book.getTitle();
+            case "author":
+                return book.getAuthor();
+            case "description":
+                return book.getDescription();
+            case "isbn":
+                return book.getIsbn();
+            case "pages":
+                return book.getPages();
+            case "publisher":
+                return book.getPublisher();
+            case "published":
+                return book.getPublished() != null ? Timestamp.from(book.getPublished()) : null;
+            default:
+                throw new IllegalArgumentException("Unknown book property '" + property + "'");
+        }
+    }
+
+    private Book toBook(ResultSet rs) throws SQLException {
+        Book book = new Book();
+        book.setId(rs.getString("id"));
+        book.setTitle(rs.getString("title"));
+        book.setAuthor(rs.getString("author"));
+        book.setDescription(rs.getString("description"));
+        book.setIsbn(rs.getString("isbn"));
+        book.setPages(rs.getInt("pages"));
+        book.setPublisher(rs.getString("publisher"));
+        book.setPublished(rs.getTimestamp("published") != null ? rs.getTimestamp("published").toInstant() : null);
+        return book;
+    }
+}
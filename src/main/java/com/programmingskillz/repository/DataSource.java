@@ -1,15 +1,24 @@
 package com.programmingskillz.repository;
 
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.util.ApplicationProperties;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 /**
  * @author Durim Kryeziu
@@ -32,10 +41,54 @@ public class DataSource {
             LOGGER.error("IOException:", e);
         }
 
+        // -Dhikari.jdbcUrl=... overrides jdbcUrl from hikari.properties, e.g. to benchmark against an in-memory database
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("hikari.")) {
+                prop.setProperty(name.substring("hikari.".length()), System.getProperty(name));
+            }
+        }
+
         HikariConfig config = new HikariConfig(prop);
+        config.setMetricsTrackerFactory(MetricsRegistry.pool());
         hikariDataSource = new HikariDataSource(config);
     }
 
+    /**
+     * Runs {@code db/setup.sql}, or {@code db/setup-uuid.sql} when {@code repository.idStorage=uuid}. The scripts
+     * only create what is missing, so this is safe on every start.
+     */
+    public static void applySchema() throws SQLException {
+        String script = "uuid".equals(ApplicationProperties.getString("repository.idStorage", "char"))
+                ? "db/setup-uuid.sql" : "db/setup.sql";
+        LOGGER.info("Applying schema '{}'...", script);
+
+        try (Connection conn = getConnection();
+             Statement statement = conn.createStatement()) {
+            for (String sql : readStatements(script)) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Opens {@code minimumIdle} connections at once instead of waiting for the pool to fill them in the
+     * background, so the first requests do not pay for connection setup.
+     */
+    public static void prefill() throws SQLException {
+        int size = hikariDataSource.getMinimumIdle();
+        List<Connection> connections = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                connections.add(getConnection());
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        LOGGER.info("Connection pool prefilled with {} connections.", connections.size());
+    }
+
     static synchronized Connection getConnection() throws SQLException {
         return hikariDataSource.getConnection();
     }
@@ -45,4 +98,27 @@ public class DataSource {
             hikariDataSource.close();
         }
     }
-}
\ No newline at end of file
+
+    private static List<String> readStatements(String script) throws SQLException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        InputStream inputStream = loader.getResourceAsStream(script);
+        if (inputStream == null) {
+            throw new SQLException("Schema script '" + script + "' not found on the classpath");
+        }
+
+        String content;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            content = reader.lines().collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new SQLException("Could not read schema script '" + script + "'", e);
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String sql : content.split(";")) {
+            if (!sql.trim().isEmpty()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
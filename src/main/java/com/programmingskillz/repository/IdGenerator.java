@@ -0,0 +1,34 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.util.ApplicationProperties;
+
+import java.util.UUID;
+
+/**
+ * Generates the ids of new entities.
+ * <p>
+ * {@code repository.idGenerator} selects the implementation: {@code timeOrdered} (default), {@code random}
+ * or the fully qualified name of a class with a public no-arg constructor.
+ *
+ * @author Durim Kryeziu
+ */
+public interface IdGenerator {
+
+    UUID nextId();
+
+    static IdGenerator fromProperties() {
+        String name = ApplicationProperties.getString("repository.idGenerator", "timeOrdered");
+        switch (name) {
+            case "timeOrdered":
+                return new TimeOrderedIdGenerator();
+            case "random":
+                return UUID::randomUUID;
+            default:
+                try {
+                    return (IdGenerator) Class.forName(name).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("Cannot create id generator '" + name + "'", e);
+                }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.BookNotFoundException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the books in memory only ({@code repository.backend=memory}), for read replicas loaded from the
+ * database at startup and for tests that do not need H2.
+ * <p>
+ * Lookups by id read the {@link ConcurrentHashMap} without locking. Writes update the map under the write lock
+ * of a {@link StampedLock}, so {@link #findAll()} copies a consistent snapshot: optimistically, falling back to
+ * the read lock only if a write happened meanwhile.
+ * <p>
+ * The stored books are never handed out, reads return copies, so that a change has to go through
+ * {@link #update(Book)} to be stored.
+ *
+ * @author Durim Kryeziu
+ */
+public class InMemoryBookRepository implements Repository<Book> {
+
+    private final IdGenerator idGenerator;
+    private final Map<String, Book> books = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    public InMemoryBookRepository() {
+        this(IdGenerator.fromProperties());
+    }
+
+    public InMemoryBookRepository(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Copies all books of another repository, e.g. the database.
+     */
+    public void load(Repository<Book> source) throws SQLException {
+        List<Book> sourceBooks = source.findAll();
+        long stamp = lock.writeLock();
+        try {
+            for (Book book : sourceBooks) {
+                put(new Book(book));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Book save(Book entity) throws SQLException {
+        entity.setId(idGenerator.nextId().toString());
+        Book copy = new Book(entity);
+
+        long stamp = lock.writeLock();
+        try {
+            put(copy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return entity;
+    }
+
+    @Override
+    public Book findOne(String id) throws SQLException {
+        Book book = id != null ? books.get(id) : null;
+        if (book == null) {
+            throw BookNotFoundException.forId(id);
+        }
+        return new Book(book);
+    }
+
+    @Override
+    public List<Book> findAll() throws SQLException {
+        return copiesOf(snapshot(() -> new ArrayList<>(books.values())));
+    }
+
+    @Override
+    public List<String> findAllIds() throws SQLException {
+        return snapshot(() -> new ArrayList<>(books.keySet()));
+    }
+
+    @Override
+    public Book update(Book entity) throws SQLException {
+        Book copy = new Book(entity);
+
+        long stamp = lock.writeLock();
+        try {
+            if (entity.getId() == null || !books.containsKey(entity.getId())) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            put(copy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return entity;
+    }
+
+    @Override
+    public Book update(Book entity, Set<String> properties, Book expected) throws SQLException {
+        Book copy = new Book(entity);
+
+        long stamp = lock.writeLock();
+        try {
+            Book stored = entity.getId() != null ? books.get(entity.getId()) : null;
+            if (stored == null) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            if (!stored.equals(expected)) {
+                throw BookModifiedException.forId(entity.getId());
+            }
+            put(copy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return entity;
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        if (id == null) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            books.remove(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void deleteAll() throws SQLException {
+        long stamp = lock.writeLock();
+        try {
+            books.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void put(Book book) {
+        books.put(book.getId(), book);
+    }
+
+    private <R> R snapshot(Supplier<R> copy) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            R result = copy.get();
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return copy.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static List<Book> copiesOf(List<Book> books) {
+        List<Book> copies = new ArrayList<>(books.size());
+        for (Book book : books) {
+            copies.add(new Book(book));
+        }
+        return copies;
+    }
+}
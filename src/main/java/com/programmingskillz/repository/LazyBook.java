@@ -0,0 +1,225 @@
+package com.programmingskillz.repository;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import com.programmingskillz.domain.Book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * A book read from the {@link MappedBookRepository} file. Getters decode their field from the record on
+ * every call, the first setter copies all fields into the book and detaches it from the file.
+ * <p>
+ * Serialized to JSON by copying the UTF-8 bytes of the string fields from the record to the generator, without
+ * decoding them into strings.
+ *
+ * @author Durim Kryeziu
+ */
+@JacksonXmlRootElement(localName = "book")
+@JsonSerialize(using = LazyBook.Serializer.class)
+public final class LazyBook extends Book {
+
+    private final ByteBuffer region;
+    private final int record;
+    private String id;
+    private boolean detached;
+
+    LazyBook(ByteBuffer segment, int record) {
+        this.region = segment.duplicate();
+        this.record = record;
+    }
+
+    @Override
+    public String getId() {
+        if (detached) {
+            return super.getId();
+        }
+        if (id == null) {
+            id = BookCodec.id(region, record).toString();
+        }
+        return id;
+    }
+
+    @Override
+    public String getTitle() {
+        return detached ? super.getTitle() : BookCodec.string(region, record, BookCodec.TITLE);
+    }
+
+    @Override
+    public String getAuthor() {
+        return detached ? super.getAuthor() : BookCodec.string(region, record, BookCodec.AUTHOR);
+    }
+
+    @Override
+    public String getDescription() {
+        return detached ? super.getDescription() : BookCodec.string(region, record, BookCodec.DESCRIPTION);
+    }
+
+    @Override
+    public String getIsbn() {
+        return detached ? super.getIsbn() : BookCodec.string(region, record, BookCodec.ISBN);
+    }
+
+    @Override
+    public Integer getPages() {
+        return detached ? super.getPages() : BookCodec.pages(region, record);
+    }
+
+    @Override
+    public String getPublisher() {
+        return detached ? super.getPublisher() : BookCodec.string(region, record, BookCodec.PUBLISHER);
+    }
+
+    @Override
+    public Instant getPublished() {
+        return detached ? super.getPublished() : BookCodec.published(region, record);
+    }
+
+    @Override
+    public void setId(String id) {
+        detach();
+        super.setId(id);
+    }
+
+    @Override
+    public void setTitle(String title) {
+        detach();
+        super.setTitle(title);
+    }
+
+    @Override
+    public void setAuthor(String author) {
+        detach();
+        super.setAuthor(author);
+    }
+
+    @Override
+    public void setDescription(String description) {
+        detach();
+        super.setDescription(description);
+    }
+
+    @Override
+    public void setIsbn(String isbn) {
+        detach();
+        super.setIsbn(isbn);
+    }
+
+    @Override
+    public void setPages(Integer pages) {
+        detach();
+        super.setPages(pages);
+    }
+
+    @Override
+    public void setPublisher(String publisher) {
+        detach();
+        super.setPublisher(publisher);
+    }
+
+    @Override
+    public void setPublished(Instant published) {
+        detach();
+        super.setPublished(published);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return new Book(this).equals(new Book((LazyBook) o));
+    }
+
+    @Override
+    public int hashCode() {
+        return new Book(this).hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return new Book(this).toString();
+    }
+
+    private void detach() {
+        if (detached) {
+            return;
+        }
+        Book copy = new Book(this);
+        detached = true;
+        super.setId(copy.getId());
+        super.setTitle(copy.getTitle());
+        super.setAuthor(copy.getAuthor());
+        super.setDescription(copy.getDescription());
+        super.setIsbn(copy.getIsbn());
+        super.setPages(copy.getPages());
+        super.setPublisher(copy.getPublisher());
+        super.setPublished(copy.getPublished());
+    }
+
+    /**
+     * Writes the same JSON as the bean serializer of {@link Book}, copying the string fields as UTF-8 bytes when
+     * the generator writes bytes. XML and detached books go through the bean serializer.
+     */
+    public static final class Serializer extends StdSerializer<LazyBook> {
+
+        private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+        public Serializer() {
+            super(LazyBook.class);
+        }
+
+        @Override
+        public void serialize(LazyBook book, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (book.detached || gen instanceof ToXmlGenerator) {
+                provider.findValueSerializer(Book.class).serialize(new Book(book), gen, provider);
+                return;
+            }
+
+            gen.writeStartObject();
+            gen.writeStringField("id", book.getId());
+            writeString(gen, "title", book, BookCodec.TITLE);
+            writeString(gen, "author", book, BookCodec.AUTHOR);
+            writeString(gen, "description", book, BookCodec.DESCRIPTION);
+            writeString(gen, "isbn", book, BookCodec.ISBN);
+            Integer pages = book.getPages();
+            if (pages != null) {
+                gen.writeNumberField("pages", pages);
+            } else {
+                gen.writeNullField("pages");
+            }
+            writeString(gen, "publisher", book, BookCodec.PUBLISHER);
+            provider.defaultSerializeField("published", book.getPublished(), gen);
+            gen.writeEndObject();
+        }
+
+        private static void writeString(JsonGenerator gen, String name, LazyBook book, int field) throws IOException {
+            int position = BookCodec.stringPosition(book.region, book.record, field);
+            int length = book.region.getInt(position);
+            gen.writeFieldName(name);
+            if (length < 0) {
+                gen.writeNull();
+                return;
+            }
+            if (!(gen instanceof UTF8JsonGenerator)) {
+                gen.writeString(BookCodec.string(book.region, book.record, field));
+                return;
+            }
+
+            byte[] scratch = SCRATCH.get();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+                SCRATCH.set(scratch);
+            }
+            BookCodec.copy(book.region, position + 4, scratch, length);
+            gen.writeUTF8String(scratch, 0, length);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.programmingskillz.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * One append-only file of the {@link LogStructuredBookRepository}.
+ * <p>
+ * A record is
+ * <pre>
+ * int    CRC32 of everything after it
+ * int    length of everything after it
+ * byte   PUT, DELETE or CLEAR
+ * long   id, most significant bits
+ * long   id, least significant bits
+ * the book in the {@link BookCodec} layout (PUT only)
+ * </pre>
+ * A sealed segment gets a hints file listing type, id, position and size of every record, followed by the
+ * CRC32 of the list, so startup can rebuild the index without reading the books.
+ *
+ * @author Durim Kryeziu
+ */
+final class LogSegment implements Closeable {
+
+    interface Visitor {
+        void visit(byte type, long msb, long lsb, long position, int size) throws IOException;
+    }
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte CLEAR = 3;
+
+    static final int HEADER = 25;
+    private static final int HINT = 29;
+
+    final long id;
+    private Path path;
+    private final FileChannel channel;
+    private volatile long size;
+    private final AtomicLong deadBytes = new AtomicLong();
+
+    private LogSegment(long id, Path path) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = channel.size();
+    }
+
+    static LogSegment open(Path directory, long id) throws IOException {
+        return new LogSegment(id, dataPath(directory, id));
+    }
+
+    /**
+     * Opens a segment written under a temporary name, see {@link #replace(Path)}.
+     */
+    static LogSegment openTemporary(Path directory, long id) throws IOException {
+        Path path = directory.resolve(name(id) + ".compact");
+        Files.deleteIfExists(path);
+        return new LogSegment(id, path);
+    }
+
+    static Path dataPath(Path directory, long id) {
+        return directory.resolve(name(id) + ".data");
+    }
+
+    static Path hintPath(Path directory, long id) {
+        return directory.resolve(name(id) + ".hint");
+    }
+
+    private static String name(long id) {
+        return String.format("%010d", id);
+    }
+
+    static byte[] record(byte type, UUID id, byte[] book) {
+        int length = HEADER + (book != null ? book.length : 0);
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(0);
+        record.putInt(length - 8);
+        record.put(type);
+        record.putLong(id != null ? id.getMostSignificantBits() : 0L);
+        record.putLong(id != null ? id.getLeastSignificantBits() : 0L);
+        if (book != null) {
+            record.put(book);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.array();
+    }
+
+    long size() {
+        return size;
+    }
+
+    long deadBytes() {
+        return deadBytes.get();
+    }
+
+    void addDeadBytes(long bytes) {
+        deadBytes.addAndGet(bytes);
+    }
+
+    Path hintPath() {
+        return hintPath(path.getParent(), id);
+    }
+
+    /**
+     * Only called by one thread at a time. A failed append is cut off again, so that it cannot hide the records
+     * written after it from the next startup.
+     *
+     * @return the position of the record
+     */
+    long append(byte[] record, boolean sync) throws IOException {
+        long position = size;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            channel.truncate(position);
+            throw e;
+        }
+        size = position + record.length;
+        return position;
+    }
+
+    /**
+     * @return the record, with its CRC verified
+     */
+    ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Record at " + position + " of " + path + " is cut off");
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length - 4);
+        if ((int) crc.getValue() != buffer.getInt(0)) {
+            throw new IOException("Record at " + position + " of " + path + " is corrupt");
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads all records, verifying their CRCs.
+     *
+     * @return the length of the valid records, anything after that was torn by a crash or is corrupt
+     */
+    long scan(Visitor visitor) throws IOException {
+        long position = 0;
+        CRC32 crc = new CRC32();
+        byte[] body = new byte[HEADER - 8];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 65536))) {
+            while (true) {
+                int expected;
+                int length;
+                try {
+                    expected = in.readInt();
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return position;
+                }
+                if (length < HEADER - 8 || position + 8 + length > size) {
+                    return position;
+                }
+                if (body.length < length) {
+                    body = new byte[length];
+                }
+                in.readFully(body, 0, length);
+
+                crc.reset();
+                crc.update(length >>> 24);
+                crc.update(length >>> 16);
+                crc.update(length >>> 8);
+                crc.update(length);
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != expected) {
+                    return position;
+                }
+
+                ByteBuffer header = ByteBuffer.wrap(body, 0, HEADER - 8);
+                visitor.visit(header.get(), header.getLong(), header.getLong(), position, length + 8);
+                position += length + 8;
+            }
+        } catch (EOFException e) {
+            return position;
+        }
+    }
+
+    /**
+     * @return {@code false} if there is no hints file or it is not intact
+     */
+    boolean readHints(Visitor visitor) throws IOException {
+        Path hints = hintPath();
+        if (!Files.exists(hints)) {
+            return false;
+        }
+
+        byte[] bytes = Files.readAllBytes(hints);
+        int entries = bytes.length - 8;
+        if (entries < 0 || entries % HINT != 0) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, entries);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getLong(entries) != crc.getValue()) {
+            return false;
+        }
+
+        while (buffer.position() < entries) {
+            visitor.visit(buffer.get(), buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt());
+        }
+        return true;
+    }
+
+    /**
+     * Writes the hints of a sealed segment to a temporary file and moves it in place.
+     */
+    void writeHints() throws IOException {
+        Path hints = hintPath();
+        Path temporary = hints.resolveSibling(hints.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temporary), crc), 65536))) {
+            scan((type, msb, lsb, position, length) -> {
+                out.writeByte(type);
+                out.writeLong(msb);
+                out.writeLong(lsb);
+                out.writeLong(position);
+                out.writeInt(length);
+            });
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temporary, hints, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    boolean hasHints() {
+        return Files.exists(hintPath());
+    }
+
+    void truncate(long length) throws IOException {
+        channel.truncate(length);
+        size = length;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Moves this segment over {@code target}, the open channel keeps working.
+     */
+    void replace(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        path = target;
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(hintPath());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,508 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Appends every change to a log of {@link LogSegment}s ({@code repository.backend=log}), for bursts of inserts
+ * and updates that H2 would spread over random pages.
+ * <p>
+ * The location of the latest version of every book is kept in memory. The active segment is sealed once it
+ * reaches {@code segmentMegabytes}. In the background, sealed segments get a hints file and are merged into
+ * one once superseded versions and deletes make up {@code compactionThreshold} of them, or once there are more
+ * than {@code maxSealedSegments}. At startup the index is rebuilt from the hints files, segments without one
+ * are scanned and a record torn by a crash is cut off the active segment. A sealed segment that is corrupt
+ * fails the startup rather than losing the records after the damage.
+ * <p>
+ * This instance must be the only user of the directory.
+ *
+ * @author Durim Kryeziu
+ */
+public class LogStructuredBookRepository implements Repository<Book>, Closeable, MetricsCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredBookRepository.class);
+
+    private final IdGenerator idGenerator;
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean sync;
+    private final double compactionThreshold;
+    private final int maxSealedSegments;
+
+    private final Map<UUID, Location> index = new ConcurrentHashMap<>();
+    private final List<LogSegment> sealed = new CopyOnWriteArrayList<>();
+    private volatile LogSegment active;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Held for reading while a segment is read through a location that may be out of date, compaction closes the
+    // segments it replaced under the write lock
+    private final StampedLock segmentsLock = new StampedLock();
+    private final ScheduledExecutorService compactor;
+
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    public LogStructuredBookRepository() throws SQLException {
+        this(Paths.get(ApplicationProperties.getString("repository.log.directory",
+                Paths.get(System.getProperty("user.home"), "h2_data", "library-log").toString())),
+                IdGenerator.fromProperties());
+    }
+
+    public LogStructuredBookRepository(Path directory, IdGenerator idGenerator) throws SQLException {
+        this.idGenerator = idGenerator;
+        this.directory = directory;
+        this.segmentSize = ApplicationProperties.getLong("repository.log.segmentMegabytes", 64) << 20;
+        this.sync = ApplicationProperties.getBoolean("repository.log.sync", false);
+        this.compactionThreshold = ApplicationProperties.getDouble("repository.log.compactionThreshold", 0.5);
+        this.maxSealedSegments = ApplicationProperties.getInt("repository.log.maxSealedSegments", 16);
+
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new SQLException("Could not open book log '" + directory + "'", e);
+        }
+        LOGGER.info("Loaded {} books from {} log segments.", index.size(), sealed.size() + 1);
+
+        long interval = ApplicationProperties.getLong("repository.log.compactionIntervalSeconds", 30);
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.compactor.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.SECONDS);
+
+        MetricsRegistry.register(this);
+    }
+
+    @Override
+    public Book save(Book entity) throws SQLException {
+        UUID id = idGenerator.nextId();
+        byte[] record = LogSegment.record(LogSegment.PUT, id, BookCodec.encode(id, entity));
+
+        writeLock.lock();
+        try {
+            put(id, append(record));
+        } finally {
+            writeLock.unlock();
+        }
+        entity.setId(id.toString());
+        return entity;
+    }
+
+    @Override
+    public Book findOne(String id) throws SQLException {
+        UUID uuid = parse(id);
+        long stamp = segmentsLock.readLock();
+        try {
+            Location location = uuid != null ? index.get(uuid) : null;
+            if (location == null) {
+                throw BookNotFoundException.forId(id);
+            }
+            return read(location);
+        } finally {
+            segmentsLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Book> findAll() throws SQLException {
+        long stamp = segmentsLock.readLock();
+        try {
+            List<Book> books = new ArrayList<>(index.size());
+            for (Location location : index.values()) {
+                books.add(read(location));
+            }
+            return books;
+        } finally {
+            segmentsLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<String> findAllIds() throws SQLException {
+        List<String> ids = new ArrayList<>(index.size());
+        for (UUID id : index.keySet()) {
+            ids.add(id.toString());
+        }
+        return ids;
+    }
+
+    @Override
+    public Book update(Book entity) throws SQLException {
+        UUID id = parse(entity.getId());
+        if (id == null) {
+            throw BookNotFoundException.forId(entity.getId());
+        }
+        byte[] record = LogSegment.record(LogSegment.PUT, id, BookCodec.encode(id, entity));
+
+        writeLock.lock();
+        try {
+            if (!index.containsKey(id)) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            put(id, append(record));
+        } finally {
+            writeLock.unlock();
+        }
+        return entity;
+    }
+
+    @Override
+    public Book update(Book entity, Set<String> properties, Book expected) throws SQLException {
+        UUID id = parse(entity.getId());
+        if (id == null) {
+            throw BookNotFoundException.forId(entity.getId());
+        }
+        byte[] record = LogSegment.record(LogSegment.PUT, id, BookCodec.encode(id, entity));
+
+        writeLock.lock();
+        try {
+            Location location = index.get(id);
+            if (location == null) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            // Up to date under the write lock, and compaction only closes segments no location points to anymore
+            if (!read(location).equals(expected)) {
+                throw BookModifiedException.forId(entity.getId());
+            }
+            put(id, append(record));
+        } finally {
+            writeLock.unlock();
+        }
+        return entity;
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        UUID uuid = parse(id);
+        if (uuid == null) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            if (index.containsKey(uuid)) {
+                Location tombstone = append(LogSegment.record(LogSegment.DELETE, uuid, null));
+                kill(tombstone);
+                kill(index.remove(uuid));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll() throws SQLException {
+        writeLock.lock();
+        try {
+            kill(append(LogSegment.record(LogSegment.CLEAR, null, null)));
+            index.values().forEach(this::kill);
+            index.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a running compaction and forces the active segment to disk.
+     */
+    @Override
+    public void close() throws IOException {
+        MetricsRegistry.unregister(this);
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        writeLock.lock();
+        try {
+            active.force();
+            for (LogSegment segment : sealed) {
+                segment.close();
+            }
+            active.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        long bytes = active.size();
+        long dead = active.deadBytes();
+        for (LogSegment segment : sealed) {
+            bytes += segment.size();
+            dead += segment.deadBytes();
+        }
+
+        writer.family("book_log_segments", "gauge", "Segment files of the book log.");
+        writer.sample("book_log_segments", sealed.size() + 1);
+        writer.family("book_log_bytes", "gauge", "Size of the book log.");
+        writer.sample("book_log_bytes", bytes);
+        writer.family("book_log_dead_bytes", "gauge", "Superseded versions and deletes waiting for compaction.");
+        writer.sample("book_log_dead_bytes", dead);
+        writer.family("book_log_compactions_total", "counter", "Compactions of the sealed segments.");
+        writer.sample("book_log_compactions_total", compactions.sum());
+        writer.family("book_log_reclaimed_bytes_total", "counter", "Bytes freed by compactions.");
+        writer.sample("book_log_reclaimed_bytes_total", reclaimedBytes.sum());
+    }
+
+    /**
+     * Writes the missing hints files and compacts the sealed segments if they are due.
+     */
+    void maintain() {
+        try {
+            for (LogSegment segment : sealed) {
+                if (!segment.hasHints()) {
+                    segment.writeHints();
+                }
+            }
+
+            long bytes = 0;
+            long dead = 0;
+            for (LogSegment segment : sealed) {
+                bytes += segment.size();
+                dead += segment.deadBytes();
+            }
+            if (bytes > 0 && (dead >= bytes * compactionThreshold || sealed.size() > maxSealedSegments)) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Maintenance of the book log failed: {}", e.toString());
+        }
+    }
+
+    /**
+     * Copies the latest versions held by the sealed segments into one segment, which takes the place of the
+     * newest of them. Deletes are dropped, the segment starts with a clear instead, so that older sources
+     * left behind by a crash before they were deleted stay cancelled. Books written while copying keep their
+     * new location.
+     * <p>
+     * Writers only wait for the locations to be swapped in memory. Readers that looked up a location in the old
+     * segments before the swap are waited for afterwards, before those segments are closed.
+     */
+    void compact() throws IOException {
+        List<LogSegment> sources = new ArrayList<>(sealed);
+        if (sources.isEmpty()) {
+            return;
+        }
+        Set<LogSegment> sourceSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        sourceSet.addAll(sources);
+        LogSegment newest = sources.get(sources.size() - 1);
+        long before = 0;
+        for (LogSegment segment : sources) {
+            before += segment.size();
+        }
+
+        LogSegment output = LogSegment.openTemporary(directory, newest.id);
+        Map<UUID, Location[]> moved = new HashMap<>();
+        try {
+            if (sources.size() > 1) {
+                // Until the older sources are deleted, a crash would replay their puts without the deletes dropped here
+                output.append(LogSegment.record(LogSegment.CLEAR, null, null), false);
+            }
+            for (Map.Entry<UUID, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                if (sourceSet.contains(location.segment)) {
+                    ByteBuffer record = location.segment.read(location.position, location.size);
+                    long position = output.append(record.array(), false);
+                    moved.put(entry.getKey(), new Location[]{location, new Location(output, position, location.size)});
+                }
+            }
+            output.force();
+        } catch (IOException e) {
+            output.delete();
+            throw e;
+        }
+
+        writeLock.lock();
+        try {
+            Files.deleteIfExists(newest.hintPath());
+            output.replace(LogSegment.dataPath(directory, newest.id));
+            for (Map.Entry<UUID, Location[]> entry : moved.entrySet()) {
+                Location[] locations = entry.getValue();
+                if (!index.replace(entry.getKey(), locations[0], locations[1])) {
+                    output.addDeadBytes(locations[1].size);
+                }
+            }
+
+            sealed.removeAll(sources);
+            sealed.add(0, output);
+        } finally {
+            writeLock.unlock();
+        }
+
+        long stamp = segmentsLock.writeLock();
+        try {
+            for (LogSegment segment : sources) {
+                if (segment == newest) {
+                    segment.close();
+                } else {
+                    segment.delete();
+                }
+            }
+        } finally {
+            segmentsLock.unlockWrite(stamp);
+        }
+        output.writeHints();
+
+        compactions.increment();
+        reclaimedBytes.add(before - output.size());
+        LOGGER.info("Compacted {} log segments from {} to {} bytes.", sources.size(), before, output.size());
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".compact") || name.endsWith(".tmp")) {
+                    // Left behind by a compaction that did not finish
+                    Files.delete(file);
+                } else if (name.endsWith(".data")) {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - ".data".length())));
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        for (int i = 0; i < ids.size(); i++) {
+            LogSegment segment = LogSegment.open(directory, ids.get(i));
+            boolean last = i == ids.size() - 1;
+            LogSegment.Visitor replay = (type, msb, lsb, position, size) ->
+                    replay(type, new UUID(msb, lsb), new Location(segment, position, size));
+            if (last || !segment.readHints(replay)) {
+                long valid = segment.scan(replay);
+                if (valid < segment.size() && !last) {
+                    // Only the active segment can be torn by a crash, anything else is damage worth a look
+                    segment.close();
+                    for (LogSegment opened : sealed) {
+                        opened.close();
+                    }
+                    throw new IOException("Sealed segment " + LogSegment.dataPath(directory, segment.id)
+                            + " is corrupt after " + valid + " of " + segment.size() + " bytes");
+                }
+                if (valid < segment.size()) {
+                    LOGGER.warn("Cutting off {} bytes of {} after the last intact record.",
+                            segment.size() - valid, LogSegment.dataPath(directory, segment.id));
+                    segment.truncate(valid);
+                }
+            }
+            if (last) {
+                active = segment;
+            } else {
+                sealed.add(segment);
+            }
+        }
+        if (active == null) {
+            active = LogSegment.open(directory, 1);
+        }
+    }
+
+    private void replay(byte type, UUID id, Location location) {
+        switch (type) {
+            case LogSegment.PUT:
+                kill(index.put(id, location));
+                break;
+            case LogSegment.DELETE:
+                kill(location);
+                kill(index.remove(id));
+                break;
+            case LogSegment.CLEAR:
+                kill(location);
+                index.values().forEach(this::kill);
+                index.clear();
+                break;
+            default:
+                throw new IllegalStateException("Unknown record type " + type);
+        }
+    }
+
+    private Location append(byte[] record) throws SQLException {
+        try {
+            if (active.size() > 0 && active.size() + record.length > segmentSize) {
+                active.force();
+                LogSegment next = LogSegment.open(directory, active.id + 1);
+                sealed.add(active);
+                active = next;
+            }
+            return new Location(active, active.append(record, sync), record.length);
+        } catch (IOException e) {
+            throw new SQLException("Could not append to book log", e);
+        }
+    }
+
+    private void put(UUID id, Location location) {
+        kill(index.put(id, location));
+    }
+
+    private void kill(Location location) {
+        if (location != null) {
+            location.segment.addDeadBytes(location.size);
+        }
+    }
+
+    private static Book read(Location location) throws SQLException {
+        try {
+            return BookCodec.decode(location.segment.read(location.position, location.size), LogSegment.HEADER);
+        } catch (IOException e) {
+            throw new SQLException("Could not read book", e);
+        }
+    }
+
+    private static UUID parse(String id) {
+        try {
+            return id != null ? UUID.fromString(id) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Location {
+
+        final LogSegment segment;
+        final long position;
+        final int size;
+
+        Location(LogSegment segment, long position, int size) {
+            this.segment = segment;
+            this.position = position;
+            this.size = size;
+        }
+    }
+}
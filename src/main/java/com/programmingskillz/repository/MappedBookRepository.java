@@ -0,0 +1,335 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the books in a memory-mapped file ({@code repository.backend=mapped}), so a catalog larger than the
+ * heap is served from the page cache.
+ * <p>
+ * The file is a sequence of segments of {@code segmentMegabytes}, each mapped separately and filled with
+ * records in the {@link BookCodec} layout; a record never spans two segments. Updates append a new version
+ * and flag the old one as deleted, the space of old versions is not reused. The ids of the live records are
+ * kept in an {@link OffHeapIdIndex}, rebuilt by scanning the file at startup. Reads return {@link LazyBook}
+ * views that decode fields from the file on demand.
+ * <p>
+ * Written records survive a crash of the JVM, {@link #close()} forces them to disk.
+ *
+ * @author Durim Kryeziu
+ */
+public class MappedBookRepository implements Repository<Book>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedBookRepository.class);
+
+    private static final int MAGIC = 0x424f4f4b;
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+
+    private final IdGenerator idGenerator;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final OffHeapIdIndex index;
+    private final StampedLock lock = new StampedLock();
+
+    private long writeAddress;
+
+    public MappedBookRepository() throws SQLException {
+        this(Paths.get(ApplicationProperties.getString("repository.mapped.file",
+                Paths.get(System.getProperty("user.home"), "h2_data", "library.books").toString())),
+                IdGenerator.fromProperties());
+    }
+
+    public MappedBookRepository(Path file, IdGenerator idGenerator) throws SQLException {
+        this.idGenerator = idGenerator;
+        this.index = new OffHeapIdIndex(ApplicationProperties.getInt("repository.mapped.indexCapacity", 65536));
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.segmentSize = open(ApplicationProperties.getInt("repository.mapped.segmentMegabytes", 64) << 20);
+        } catch (IOException e) {
+            throw new SQLException("Could not open book file '" + file + "'", e);
+        }
+        LOGGER.info("Mapped {} books in {} segments of {}.", index.size(), segments.size(), file);
+    }
+
+    @Override
+    public Book save(Book entity) throws SQLException {
+        UUID id = idGenerator.nextId();
+        byte[] record = BookCodec.encode(id, entity);
+
+        long stamp = lock.writeLock();
+        try {
+            index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), append(record));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        entity.setId(id.toString());
+        return entity;
+    }
+
+    @Override
+    public Book findOne(String id) throws SQLException {
+        UUID uuid = parse(id);
+        long address = uuid != null ? snapshot(() -> index.get(uuid.getMostSignificantBits(),
+                uuid.getLeastSignificantBits())) : -1L;
+        if (address < 0) {
+            throw BookNotFoundException.forId(id);
+        }
+        return view(address);
+    }
+
+    @Override
+    public List<Book> findAll() throws SQLException {
+        List<Long> addresses = snapshot(() -> {
+            List<Long> result = new ArrayList<>(index.size());
+            index.forEach((msb, lsb, address) -> result.add(address));
+            return result;
+        });
+
+        List<Book> books = new ArrayList<>(addresses.size());
+        for (long address : addresses) {
+            books.add(view(address));
+        }
+        return books;
+    }
+
+    @Override
+    public List<String> findAllIds() throws SQLException {
+        return snapshot(() -> {
+            List<String> ids = new ArrayList<>(index.size());
+            index.forEach((msb, lsb, address) -> ids.add(new UUID(msb, lsb).toString()));
+            return ids;
+        });
+    }
+
+    @Override
+    public Book update(Book entity) throws SQLException {
+        UUID id = parse(entity.getId());
+        if (id == null) {
+            throw BookNotFoundException.forId(entity.getId());
+        }
+        byte[] record = BookCodec.encode(id, entity);
+
+        long stamp = lock.writeLock();
+        try {
+            if (index.get(id.getMostSignificantBits(), id.getLeastSignificantBits()) < 0) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            markDeleted(index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), append(record)));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return entity;
+    }
+
+    @Override
+    public Book update(Book entity, Set<String> properties, Book expected) throws SQLException {
+        UUID id = parse(entity.getId());
+        if (id == null) {
+            throw BookNotFoundException.forId(entity.getId());
+        }
+        byte[] record = BookCodec.encode(id, entity);
+
+        long stamp = lock.writeLock();
+        try {
+            long address = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (address < 0) {
+                throw BookNotFoundException.forId(entity.getId());
+            }
+            if (!new Book(view(address)).equals(expected)) {
+                throw BookModifiedException.forId(entity.getId());
+            }
+            markDeleted(index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), append(record)));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return entity;
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        UUID uuid = parse(id);
+        if (uuid == null) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            markDeleted(index.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void deleteAll() throws SQLException {
+        long stamp = lock.writeLock();
+        try {
+            index.forEach((msb, lsb, address) -> markDeleted(address));
+            index.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forces the segments to disk. The mappings themselves are released once they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            channel.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Maps the existing segments, or writes the header of a new file, and indexes the live records.
+     *
+     * @return the segment size, as recorded in the header of an existing file
+     */
+    private int open(int configuredSegmentSize) throws IOException {
+        int size = configuredSegmentSize;
+        long fileSize = channel.size();
+        if (fileSize >= HEADER) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a book file");
+            }
+            size = header.getInt(8);
+        }
+
+        int segmentCount = (int) Math.max(1, (fileSize + size - 1) / size);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) i * size, size));
+        }
+        if (fileSize < HEADER) {
+            MappedByteBuffer first = segments.get(0);
+            first.putInt(0, MAGIC);
+            first.putInt(4, VERSION);
+            first.putInt(8, size);
+        }
+
+        long address = HEADER;
+        for (int i = 0; i < segmentCount; i++) {
+            ByteBuffer segment = segments.get(i);
+            int offset = i == 0 ? HEADER : 0;
+            int length;
+            while (offset <= size - BookCodec.MIN_LENGTH
+                    && (length = BookCodec.length(segment, offset)) >= BookCodec.MIN_LENGTH
+                    && offset + length <= size) {
+                if (!BookCodec.isDeleted(segment, offset)) {
+                    UUID id = BookCodec.id(segment, offset);
+                    markDeleted(index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                            (long) i * size + offset));
+                }
+                offset += length;
+            }
+            address = (long) i * size + offset;
+        }
+        writeAddress = address;
+        return size;
+    }
+
+    /**
+     * Copies the record into the file and then writes its length, which makes it part of the file.
+     *
+     * @return the address of the record
+     */
+    private long append(byte[] record) throws SQLException {
+        if (record.length > segmentSize - HEADER) {
+            throw new SQLException("Book of " + record.length + " bytes does not fit in a segment");
+        }
+
+        int segment = (int) (writeAddress / segmentSize);
+        int offset = (int) (writeAddress % segmentSize);
+        if (offset + record.length > segmentSize) {
+            segment++;
+            offset = 0;
+        }
+        if (segment == segments.size()) {
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * segmentSize, segmentSize));
+            } catch (IOException e) {
+                throw new SQLException("Could not grow book file", e);
+            }
+        }
+
+        ByteBuffer target = segments.get(segment).duplicate();
+        target.position(offset + BookCodec.FLAGS);
+        target.put(record, BookCodec.FLAGS, record.length - BookCodec.FLAGS);
+        target.putInt(offset + BookCodec.LENGTH, record.length);
+
+        long address = (long) segment * segmentSize + offset;
+        writeAddress = address + record.length;
+        return address;
+    }
+
+    private void markDeleted(long address) {
+        if (address >= 0) {
+            BookCodec.markDeleted(segments.get((int) (address / segmentSize)), (int) (address % segmentSize));
+        }
+    }
+
+    private LazyBook view(long address) {
+        return new LazyBook(segments.get((int) (address / segmentSize)), (int) (address % segmentSize));
+    }
+
+    private <R> R snapshot(Supplier<R> read) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            R result = read.get();
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static UUID parse(String id) {
+        try {
+            return id != null ? UUID.fromString(id) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
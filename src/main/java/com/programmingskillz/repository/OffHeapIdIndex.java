@@ -0,0 +1,165 @@
+package com.programmingskillz.repository;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Maps UUIDs to record addresses in an open-addressing hash table with linear probing, kept in a direct
+ * buffer so that a large catalog costs the heap nothing.
+ * <p>
+ * A slot is three longs: the id's most and least significant bits and the address plus one, where 0 marks a
+ * free slot and -1 a removed one. Not thread-safe: {@link MappedBookRepository} modifies it under its write
+ * lock. Lookups never run out of bounds or loop forever, so they may run optimistically and be validated
+ * afterwards.
+ *
+ * @author Durim Kryeziu
+ */
+final class OffHeapIdIndex {
+
+    interface Visitor {
+        void visit(long msb, long lsb, long address);
+    }
+
+    private static final int SLOT = 24;
+    private static final long FREE = 0L;
+    private static final long REMOVED = -1L;
+
+    private final int initialCapacity;
+    private volatile ByteBuffer slots;
+    private int size;
+    private int used;
+
+    OffHeapIdIndex(int initialCapacity) {
+        this.initialCapacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+        this.slots = ByteBuffer.allocateDirect(this.initialCapacity * SLOT);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the address, or -1
+     */
+    long get(long msb, long lsb) {
+        ByteBuffer table = slots;
+        int capacity = table.capacity() / SLOT;
+        int slot = hash(msb, lsb) & (capacity - 1);
+        for (int probes = 0; probes < capacity; probes++) {
+            int position = slot * SLOT;
+            long value = table.getLong(position + 16);
+            if (value == FREE) {
+                return -1L;
+            }
+            if (value != REMOVED && table.getLong(position) == msb && table.getLong(position + 8) == lsb) {
+                return value - 1;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return -1L;
+    }
+
+    /**
+     * @return the previous address, or -1
+     */
+    long put(long msb, long lsb, long address) {
+        if ((used + 1) * 4L > capacity() * 3L) {
+            rehash(size + 1 > capacity() / 2 ? capacity() * 2 : capacity());
+        }
+
+        int capacity = capacity();
+        int slot = hash(msb, lsb) & (capacity - 1);
+        int reusable = -1;
+        for (int probes = 0; probes < capacity; probes++) {
+            int position = slot * SLOT;
+            long value = slots.getLong(position + 16);
+            if (value == FREE) {
+                break;
+            }
+            if (value == REMOVED) {
+                if (reusable < 0) {
+                    reusable = position;
+                }
+            } else if (slots.getLong(position) == msb && slots.getLong(position + 8) == lsb) {
+                slots.putLong(position + 16, address + 1);
+                return value - 1;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+
+        int position = reusable >= 0 ? reusable : slot * SLOT;
+        if (reusable < 0) {
+            used++;
+        }
+        slots.putLong(position, msb);
+        slots.putLong(position + 8, lsb);
+        slots.putLong(position + 16, address + 1);
+        size++;
+        return -1L;
+    }
+
+    /**
+     * @return the removed address, or -1
+     */
+    long remove(long msb, long lsb) {
+        int capacity = capacity();
+        int slot = hash(msb, lsb) & (capacity - 1);
+        for (int probes = 0; probes < capacity; probes++) {
+            int position = slot * SLOT;
+            long value = slots.getLong(position + 16);
+            if (value == FREE) {
+                return -1L;
+            }
+            if (value != REMOVED && slots.getLong(position) == msb && slots.getLong(position + 8) == lsb) {
+                slots.putLong(position + 16, REMOVED);
+                size--;
+                return value - 1;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return -1L;
+    }
+
+    void forEach(Visitor visitor) {
+        ByteBuffer table = slots;
+        for (int position = 0; position < table.capacity(); position += SLOT) {
+            long value = table.getLong(position + 16);
+            if (value != FREE && value != REMOVED) {
+                visitor.visit(table.getLong(position), table.getLong(position + 8), value - 1);
+            }
+        }
+    }
+
+    void clear() {
+        slots = ByteBuffer.allocateDirect(initialCapacity * SLOT);
+        size = 0;
+        used = 0;
+    }
+
+    private int capacity() {
+        return slots.capacity() / SLOT;
+    }
+
+    /**
+     * Copies the live slots into a new table, readers still probing the old one see it unchanged.
+     */
+    private void rehash(int capacity) {
+        ByteBuffer old = slots;
+        slots = ByteBuffer.allocateDirect(capacity * SLOT);
+        size = 0;
+        used = 0;
+        for (int position = 0; position < old.capacity(); position += SLOT) {
+            long value = old.getLong(position + 16);
+            if (value != FREE && value != REMOVED) {
+                put(old.getLong(position), old.getLong(position + 8), value - 1);
+            }
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
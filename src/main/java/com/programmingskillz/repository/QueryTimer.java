@@ -0,0 +1,139 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the time of a single repository operation into connection borrow, statement execution,
+ * {@code ResultSet} fetching and row mapping, publishes it to {@link MetricsRegistry#queries()}
+ * and logs the operation if it exceeds {@code repository.slowQueryThresholdMillis}.
+ *
+ * @author Durim Kryeziu
+ */
+class QueryTimer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryTimer.class);
+
+    private static final long SLOW_QUERY_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            ApplicationProperties.getLong("repository.slowQueryThresholdMillis", 200));
+
+    private final String operation;
+    private final String sql;
+    private final long startNanos;
+
+    private long lastMarkNanos;
+    private long borrowNanos;
+    private long executeNanos;
+    private long fetchNanos;
+    private long mapNanos;
+    private long rows;
+    private Map<String, ?> params = Collections.emptyMap();
+    private boolean succeeded;
+
+    private QueryTimer(String operation, String sql) {
+        this.operation = operation;
+        this.sql = sql;
+        this.startNanos = System.nanoTime();
+        this.lastMarkNanos = startNanos;
+    }
+
+    static QueryTimer start(String operation, String sql) {
+        return new QueryTimer(operation, sql);
+    }
+
+    void borrowed() {
+        borrowNanos += elapsedSinceLastMark();
+    }
+
+    void executed() {
+        executeNanos += elapsedSinceLastMark();
+    }
+
+    void fetched() {
+        fetchNanos += elapsedSinceLastMark();
+    }
+
+    void mapped() {
+        mapNanos += elapsedSinceLastMark();
+        rows++;
+    }
+
+    void rows(long count) {
+        rows = count;
+    }
+
+    void params(Map<String, ?> params) {
+        this.params = params;
+    }
+
+    void succeeded() {
+        succeeded = true;
+    }
+
+    /**
+     * Records the operation, must be called exactly once, usually from a {@code finally} block.
+     */
+    void finish() {
+        long totalNanos = System.nanoTime() - startNanos;
+        boolean slow = totalNanos >= SLOW_QUERY_THRESHOLD_NANOS;
+
+        MetricsRegistry.queries().operation(operation).record(
+                TimeUnit.NANOSECONDS.toMicros(borrowNanos),
+                TimeUnit.NANOSECONDS.toMicros(executeNanos),
+                TimeUnit.NANOSECONDS.toMicros(fetchNanos),
+                TimeUnit.NANOSECONDS.toMicros(mapNanos),
+                TimeUnit.NANOSECONDS.toMicros(totalNanos),
+                rows, !succeeded, slow);
+
+        if (slow && LOGGER.isWarnEnabled()) {
+            LOGGER.warn("Slow query '{}' took {} ms (borrow {} ms, execute {} ms, fetch {} ms, map {} ms), " +
+                            "{} rows, {}, params {}: {}",
+                    operation,
+                    TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                    TimeUnit.NANOSECONDS.toMillis(borrowNanos),
+                    TimeUnit.NANOSECONDS.toMillis(executeNanos),
+                    TimeUnit.NANOSECONDS.toMillis(fetchNanos),
+                    TimeUnit.NANOSECONDS.toMillis(mapNanos),
+                    rows,
+                    succeeded ? "succeeded" : "failed",
+                    shapeOf(params),
+                    sql);
+        }
+    }
+
+    private long elapsedSinceLastMark() {
+        long now = System.nanoTime();
+        long elapsed = now - lastMarkNanos;
+        lastMarkNanos = now;
+        return elapsed;
+    }
+
+    /**
+     * Describes bound parameters by type and length only, values are never logged.
+     */
+    static String shapeOf(Map<String, ?> params) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, ?> entry : params.entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=');
+
+            Object value = entry.getValue();
+            if (value == null) {
+                sb.append("null");
+            } else if (value instanceof CharSequence) {
+                sb.append("String(").append(((CharSequence) value).length()).append(')');
+            } else {
+                sb.append(value.getClass().getSimpleName());
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.ApplicationProperties;
+
+import java.sql.SQLException;
+
+/**
+ * Creates the book repository selected by {@code repository.backend}: {@code jdbc} (default),
+ * {@code writeBehind}, {@code memory}, {@code mapped} or {@code log}.
+ *
+ * @author Durim Kryeziu
+ */
+public class Repositories {
+
+    public static Repository<Book> books() throws SQLException {
+        String backend = backend();
+        switch (backend) {
+            case "jdbc":
+                return new BookRepository();
+            case "writeBehind":
+                return new WriteBehindRepository(new BookRepository());
+            case "memory":
+                InMemoryBookRepository repository = new InMemoryBookRepository();
+                if (loadMemoryFromDatabase()) {
+                    repository.load(new BookRepository());
+                }
+                return repository;
+            case "mapped":
+                return new MappedBookRepository();
+            case "log":
+                return new LogStructuredBookRepository();
+            default:
+                throw new IllegalArgumentException("Unknown repository.backend '" + backend + "'");
+        }
+    }
+
+    /**
+     * @return {@code false} if the selected backend never touches the database, so there is no need to
+     * connect to it
+     */
+    public static boolean usesDatabase() {
+        switch (backend()) {
+            case "memory":
+                return loadMemoryFromDatabase();
+            case "mapped":
+            case "log":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static String backend() {
+        return ApplicationProperties.getString("repository.backend", "jdbc");
+    }
+
+    private static boolean loadMemoryFromDatabase() {
+        return ApplicationProperties.getBoolean("repository.memory.loadFromDatabase", false);
+    }
+}
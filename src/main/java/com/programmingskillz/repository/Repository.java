@@ -1,7 +1,14 @@
 package com.programmingskillz.repository;
 
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.BookNotFoundException;
+
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Durim Kryeziu
@@ -14,8 +21,46 @@ public interface Repository<T> {
 
     List<T> findAll() throws SQLException;
 
+    /**
+     * @return the entities with the given ids by id, ids that do not exist are left out. The default looks
+     * them up one by one, which is fine for backends that do not go over the network.
+     */
+    default Map<String, T> findAllById(Collection<String> ids) throws SQLException {
+        Map<String, T> found = new HashMap<>();
+        for (String id : ids) {
+            try {
+                found.put(id, findOne(id));
+            } catch (BookNotFoundException e) {
+                // left out
+            }
+        }
+        return found;
+    }
+
+    List<String> findAllIds() throws SQLException;
+
+    /**
+     * @throws BookNotFoundException if there is nothing with the id of {@code entity} to update
+     */
     T update(T entity) throws SQLException;
 
+    /**
+     * Writes only the given {@code properties} of {@code entity}. Backends that store whole entities write
+     * all of them, which is the default.
+     */
+    default T update(T entity, Set<String> properties) throws SQLException {
+        return update(entity);
+    }
+
+    /**
+     * Like {@link #update(Object, Set)}, but only if the stored entity still equals {@code expected}, checked in
+     * the same step as the write.
+     *
+     * @throws BookModifiedException if the stored entity was changed since {@code expected} was read
+     * @throws BookNotFoundException if there is nothing with the id of {@code entity} to update
+     */
+    T update(T entity, Set<String> properties, T expected) throws SQLException;
+
     void delete(String id) throws SQLException;
 
     void deleteAll() throws SQLException;
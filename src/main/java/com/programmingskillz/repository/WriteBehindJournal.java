@@ -0,0 +1,279 @@
+package com.programmingskillz.repository;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.repository.WriteBehindRepository.Change;
+import com.programmingskillz.util.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes accepted by {@link WriteBehindRepository} but possibly not yet written to
+ * the database. Each record is {@code length, crc32, payload}; a torn or corrupt record ends the replay of its
+ * segment, as it can only be the last one written before a crash.
+ * <p>
+ * The journal is split into segments {@code <path>.1}, {@code <path>.2}, ... The repository starts a new segment
+ * once the current one is large and deletes the older ones as soon as all their changes are written, so the journal
+ * stays small even if the queue never runs empty. Changes that can never be written are kept in
+ * {@code <path>.dead} instead.
+ * <p>
+ * Appends are not forced to disk unless {@code sync} is set, so the journal survives a crash of the JVM but
+ * not of the operating system.
+ *
+ * @author Durim Kryeziu
+ */
+class WriteBehindJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindJournal.class);
+
+    private static final ObjectWriter BOOK_WRITER = Mappers.json().writerFor(Book.class)
+            .without(SerializationFeature.INDENT_OUTPUT);
+    private static final ObjectReader BOOK_READER = Mappers.json().readerFor(Book.class);
+
+    // Anything longer is a corrupt length, a book is a few kilobytes at most
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final boolean sync;
+    // Segments by number, the last one is appended to
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel channel;
+    private long segment;
+    private FileChannel deadLetters;
+
+    interface BatchWriter {
+
+        void write(List<Change> batch) throws SQLException;
+    }
+
+    WriteBehindJournal(Path path, boolean sync) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.sync = sync;
+        Files.createDirectories(this.path.getParent());
+
+        if (Files.isRegularFile(this.path)) {
+            // A journal of a single file, replayed before the numbered segments
+            segments.put(0L, this.path);
+        }
+        String prefix = this.path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.path.getParent(), prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+        openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+    }
+
+    /**
+     * Reads the changes of all segments, oldest first, and hands them to {@code writer} in batches, so a long
+     * journal is never held in memory at once.
+     *
+     * @return the number of changes read
+     */
+    synchronized long replay(int batchSize, BatchWriter writer) throws IOException, SQLException {
+        long count = 0;
+        long bytes = 0;
+        List<Change> batch = new ArrayList<>(batchSize);
+        for (Path file : segments.values()) {
+            bytes += Files.size(file);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                Change change;
+                while ((change = read(in, file)) != null) {
+                    batch.add(change);
+                    count++;
+                    if (batch.size() == batchSize) {
+                        writer.write(batch);
+                        batch.clear();
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writer.write(batch);
+        }
+
+        if (bytes > 0) {
+            LOGGER.info("Read {} changes from write-behind journal '{}' ({} bytes).", count, path, bytes);
+        }
+        return count;
+    }
+
+    /**
+     * @return the segment the change was appended to
+     */
+    synchronized long append(Change change) throws IOException {
+        write(channel, change);
+        if (sync) {
+            channel.force(false);
+        }
+        return segment;
+    }
+
+    synchronized long segmentSize() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Continues in a new segment, the current one is kept until {@link #deleteBefore(long)} gets past it.
+     */
+    synchronized void rotate() throws IOException {
+        channel.close();
+        openSegment(segment + 1);
+    }
+
+    /**
+     * Deletes the segments older than {@code oldestNeeded}, all their changes have been written.
+     */
+    synchronized void deleteBefore(long oldestNeeded) throws IOException {
+        while (segments.firstKey() < Math.min(oldestNeeded, segment)) {
+            Files.deleteIfExists(segments.pollFirstEntry().getValue());
+        }
+    }
+
+    /**
+     * Drops all changes, every one of them has been written.
+     */
+    synchronized void truncate() throws IOException {
+        deleteBefore(segment);
+        if (channel.size() > 0) {
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+    /**
+     * Keeps a change that failed in a way retrying cannot fix, for an operator to look at.
+     */
+    synchronized void deadLetter(Change change) throws IOException {
+        if (deadLetters == null) {
+            deadLetters = FileChannel.open(deadLetterPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        write(deadLetters, change);
+        deadLetters.force(false);
+    }
+
+    Path deadLetterPath() {
+        return path.resolveSibling(path.getFileName() + ".dead");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        if (deadLetters != null) {
+            deadLetters.close();
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        Path file = path.resolveSibling(path.getFileName() + "." + number);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        segment = number;
+        segments.put(number, file);
+    }
+
+    private static void write(FileChannel channel, Change change) throws IOException {
+        byte[] payload = encode(change);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) crc(payload));
+        record.put(payload);
+        record.flip();
+
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * @return the next change, {@code null} at the end of the segment or at a torn or corrupt record
+     */
+    private static Change read(DataInputStream in, Path file) throws IOException {
+        int length;
+        long crc;
+        byte[] payload;
+        try {
+            length = in.readInt();
+            crc = in.readInt() & 0xFFFFFFFFL;
+            if (length < 1 || length > MAX_RECORD_BYTES) {
+                LOGGER.warn("Ignoring the rest of write-behind journal segment '{}' after a corrupt record.", file);
+                return null;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        if (crc(payload) != crc) {
+            LOGGER.warn("Ignoring the rest of write-behind journal segment '{}' after a corrupt record.", file);
+            return null;
+        }
+        return decode(payload);
+    }
+
+    private static byte[] encode(Change change) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(change.type.ordinal());
+            switch (change.type) {
+                case UPSERT:
+                    out.write(BOOK_WRITER.writeValueAsBytes(change.book));
+                    break;
+                case DELETE:
+                    out.writeUTF(change.id);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Change decode(byte[] payload) throws IOException {
+        Change.Type type = Change.Type.values()[payload[0]];
+        switch (type) {
+            case UPSERT:
+                Book book = BOOK_READER.readValue(payload, 1, payload.length - 1);
+                return Change.upsert(book);
+            case DELETE:
+                try (DataInputStream in = new DataInputStream(
+                        new ByteArrayInputStream(payload, 1, payload.length - 1))) {
+                    return Change.delete(in.readUTF());
+                }
+            default:
+                return Change.deleteAll();
+        }
+    }
+
+    private static long crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        return crc32.getValue();
+    }
+}
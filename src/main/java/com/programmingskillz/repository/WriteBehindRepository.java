@@ -0,0 +1,514 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Serves reads and writes from memory and writes changes to the database in the background
+ * ({@code repository.backend=writeBehind}).
+ * <p>
+ * Every change is appended to a {@link WriteBehindJournal} and queued before it becomes visible. A single
+ * flusher thread drains the queue, keeps only the last change per book and writes the result in one
+ * transaction. At most {@code queueCapacity} changes can be waiting for the database, further writes block
+ * for up to {@code offerTimeoutMillis} and then fail. Changes still in the journal at startup, because the
+ * previous run crashed or could not reach the database, are written before the books are loaded.
+ * <p>
+ * A batch failing with an error retrying cannot fix, such as a constraint violation, is written change by change
+ * and the changes failing that way are logged and moved to the dead letters of the journal, so one of them cannot
+ * hold up all later writes. They stay visible in memory until the next start.
+ * <p>
+ * This instance must be the only writer of the table.
+ *
+ * @author Durim Kryeziu
+ */
+public class WriteBehindRepository implements Repository<Book>, Closeable, MetricsCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindRepository.class);
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5000;
+
+    private final BookRepository delegate;
+    private final WriteBehindJournal journal;
+    private final Map<String, Book> books = new ConcurrentHashMap<>();
+    private final BlockingQueue<Change> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final long closeTimeoutMillis;
+    private final long journalSegmentBytes;
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private volatile long flushingSince;
+
+    private final LongAdder flushedChanges = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deadLetters = new LongAdder();
+
+    public WriteBehindRepository(BookRepository delegate) throws SQLException {
+        this(delegate, Paths.get(ApplicationProperties.getString("repository.writeBehind.journal",
+                Paths.get(System.getProperty("user.home"), "h2_data", "library.journal").toString())));
+    }
+
+    public WriteBehindRepository(BookRepository delegate, Path journalPath) throws SQLException {
+        this.delegate = delegate;
+        this.capacity = new Semaphore(ApplicationProperties.getInt("repository.writeBehind.queueCapacity", 10000));
+        this.batchSize = ApplicationProperties.getInt("repository.writeBehind.batchSize", 500);
+        this.flushIntervalMillis = ApplicationProperties.getLong("repository.writeBehind.flushIntervalMillis", 100);
+        this.offerTimeoutMillis = ApplicationProperties.getLong("repository.writeBehind.offerTimeoutMillis", 1000);
+        this.closeTimeoutMillis = ApplicationProperties.getLong("repository.writeBehind.closeTimeoutMillis", 30000);
+        this.journalSegmentBytes =
+                ApplicationProperties.getLong("repository.writeBehind.journalSegmentMegabytes", 16) * 1024 * 1024;
+
+        try {
+            this.journal = new WriteBehindJournal(journalPath,
+                    ApplicationProperties.getBoolean("repository.writeBehind.journalSync", false));
+            recover();
+        } catch (IOException e) {
+            throw new SQLException("Could not open write-behind journal '" + journalPath + "'", e);
+        }
+
+        for (Book book : delegate.findAll()) {
+            books.put(book.getId(), book);
+        }
+        LOGGER.info("Loaded {} books for write-behind.", books.size());
+
+        this.flusher = new Thread(this::runFlusher, "book-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+
+        MetricsRegistry.register(this);
+    }
+
+    @Override
+    public Book save(Book entity) throws SQLException {
+        entity.setId(delegate.newId());
+        Book copy = new Book(entity);
+        enqueue(Change.upsert(copy), () -> books.put(copy.getId(), copy));
+        return entity;
+    }
+
+    @Override
+    public Book findOne(String id) throws SQLException {
+        Book book = books.get(id);
+        if (book == null) {
+            throw BookNotFoundException.forId(id);
+        }
+        // Copies, changes must go through update() to reach the journal
+        return new Book(book);
+    }
+
+    @Override
+    public List<Book> findAll() throws SQLException {
+        List<Book> copies = new ArrayList<>(books.size());
+        for (Book book : books.values()) {
+            copies.add(new Book(book));
+        }
+        return copies;
+    }
+
+    @Override
+    public List<String> findAllIds() throws SQLException {
+        return new ArrayList<>(books.keySet());
+    }
+
+    @Override
+    public Book update(Book entity) throws SQLException {
+        Book copy = new Book(entity);
+        if (!enqueueIfPresent(entity.getId(), Change.upsert(copy), () -> books.put(copy.getId(), copy))) {
+            throw BookNotFoundException.forId(entity.getId());
+        }
+        return entity;
+    }
+
+    @Override
+    public Book update(Book entity, Set<String> properties, Book expected) throws SQLException {
+        Book copy = new Book(entity);
+        BooleanSupplier unchanged = () -> {
+            Book stored = entity.getId() != null ? books.get(entity.getId()) : null;
+            if (stored != null && !stored.equals(expected)) {
+                throw BookModifiedException.forId(entity.getId());
+            }
+            return stored != null;
+        };
+        if (!enqueueIf(unchanged, Change.upsert(copy), () -> books.put(copy.getId(), copy))) {
+            throw BookNotFoundException.forId(entity.getId());
+        }
+        return entity;
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        enqueueIfPresent(id, Change.delete(id), () -> books.remove(id));
+    }
+
+    @Override
+    public void deleteAll() throws SQLException {
+        enqueue(Change.deleteAll(), books::clear);
+    }
+
+    /**
+     * Stops accepting writes and waits up to {@code closeTimeoutMillis} for the queued changes to be written.
+     * Whatever is left stays in the journal for the next start.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            running = false;
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            flusher.join(closeTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (flusher.isAlive()) {
+            // Ends the retries, the journal still has every change that was not confirmed as written
+            flusher.interrupt();
+            LOGGER.warn("Write-behind did not finish within {} ms, {} changes will be replayed from the journal "
+                    + "at the next start.", closeTimeoutMillis, queue.size());
+        } else {
+            LOGGER.info("Write-behind flushed, {} changes written in total.", flushedChanges.sum());
+        }
+
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not close write-behind journal:", e);
+        }
+        MetricsRegistry.unregister(this);
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.family("book_write_behind_pending_changes", "gauge",
+                "Changes accepted but not yet written to the database.");
+        writer.sample("book_write_behind_pending_changes", queue.size());
+        writer.family("book_write_behind_lag_seconds", "gauge",
+                "Age of the oldest change not yet written to the database.");
+        writer.sample("book_write_behind_lag_seconds", lagNanos() / 1e9);
+        writer.family("book_write_behind_flushes_total", "counter", "Transactions written by the flusher.");
+        writer.sample("book_write_behind_flushes_total", flushes.sum());
+        writer.family("book_write_behind_flushed_changes_total", "counter", "Changes written to the database.");
+        writer.sample("book_write_behind_flushed_changes_total", flushedChanges.sum());
+        writer.family("book_write_behind_flush_errors_total", "counter", "Failed attempts to write a batch.");
+        writer.sample("book_write_behind_flush_errors_total", flushErrors.sum());
+        writer.family("book_write_behind_rejected_total", "counter", "Writes rejected because the queue was full.");
+        writer.sample("book_write_behind_rejected_total", rejected.sum());
+        writer.family("book_write_behind_dead_letters_total", "counter",
+                "Changes that could not be written to the database and were moved to the dead letters.");
+        writer.sample("book_write_behind_dead_letters_total", deadLetters.sum());
+    }
+
+    /**
+     * @return {@code false} if there is no book with the id, nothing is enqueued then
+     */
+    private boolean enqueueIfPresent(String id, Change change, Runnable apply) throws SQLException {
+        return enqueueIf(() -> id != null && books.containsKey(id), change, apply);
+    }
+
+    private void enqueue(Change change, Runnable apply) throws SQLException {
+        enqueueIf(() -> true, change, apply);
+    }
+
+    /**
+     * Takes a place in the queue before the write lock, so that writers waiting for the database do not hold up
+     * each other: waiting for both together takes at most {@code offerTimeoutMillis}.
+     */
+    private boolean enqueueIf(BooleanSupplier condition, Change change, Runnable apply) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        boolean appended = false;
+        try {
+            if (!capacity.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new SQLTransientException("Write-behind queue is full, the database is not keeping up");
+            }
+            try {
+                if (!writeLock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    rejected.increment();
+                    throw new SQLTransientException("Timed out waiting to write to the write-behind queue");
+                }
+                try {
+                    if (!condition.getAsBoolean()) {
+                        return false;
+                    }
+                    append(change, apply);
+                    appended = true;
+                    return true;
+                } finally {
+                    writeLock.unlock();
+                }
+            } finally {
+                if (!appended) {
+                    capacity.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException("Interrupted while waiting for the write-behind queue", e);
+        }
+    }
+
+    /**
+     * Journals, queues and applies a change. Called with the write lock and a place in the queue held, so the
+     * journal, the queue and the books in memory see the changes in the same order.
+     */
+    private void append(Change change, Runnable apply) throws SQLException {
+        if (!running) {
+            throw new SQLTransientException("Write-behind repository is closed");
+        }
+
+        try {
+            change.segment = journal.append(change);
+        } catch (IOException e) {
+            throw new SQLException("Could not write to the write-behind journal", e);
+        }
+
+        queue.add(change);
+        apply.run();
+    }
+
+    private void runFlusher() {
+        List<Change> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Change first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                flushingSince = first.createdNanos;
+                flushWithRetry(batch);
+                capacity.release(batch.size());
+                flushedChanges.add(batch.size());
+                long flushedSegment = batch.get(batch.size() - 1).segment;
+                batch.clear();
+                flushingSince = 0;
+
+                checkpoint(flushedSegment);
+            } catch (InterruptedException e) {
+                // close() gave up waiting, leave the rest to the journal
+                return;
+            }
+        }
+    }
+
+    private void flushWithRetry(List<Change> batch) throws InterruptedException {
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                flushOrDeadLetter(batch);
+                return;
+            } catch (SQLException | RuntimeException e) {
+                flushErrors.increment();
+                LOGGER.error("Could not write {} changes, retrying in {} ms: {}", batch.size(), backoffMillis, e.toString());
+                Thread.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Writes the changes in one transaction or, if that fails with an error retrying cannot fix, one by one,
+     * moving the ones failing that way to the dead letters.
+     *
+     * @throws SQLException if writing failed with an error that may go away, such as a lost connection
+     */
+    private void flushOrDeadLetter(List<Change> changes) throws SQLException {
+        try {
+            flush(changes);
+            flushes.increment();
+            return;
+        } catch (SQLException | RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            if (changes.size() == 1) {
+                deadLetter(changes.get(0), e);
+                return;
+            }
+            flushErrors.increment();
+            LOGGER.warn("Could not write {} changes, writing them one by one: {}", changes.size(), e.toString());
+        }
+
+        for (Change change : changes) {
+            flushOrDeadLetter(Collections.singletonList(change));
+        }
+    }
+
+    private void deadLetter(Change change, Exception cause) {
+        flushErrors.increment();
+        deadLetters.increment();
+        LOGGER.error("Giving up on the {} of book '{}', it stays in memory until the next start but not in the "
+                + "database. Kept in '{}': {}", change.type, change.id, journal.deadLetterPath(), cause.toString());
+        try {
+            journal.deadLetter(change);
+        } catch (IOException e) {
+            LOGGER.error("Could not write to the write-behind dead letters:", e);
+        }
+    }
+
+    /**
+     * @return {@code false} for errors writing the same changes again would fail with as well
+     */
+    private static boolean isTransient(Exception e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        if (e instanceof SQLNonTransientException || !(e instanceof SQLException)) {
+            return false;
+        }
+        // Drivers not using the subclasses: data exceptions, integrity constraint violations and syntax errors
+        String state = ((SQLException) e).getSQLState();
+        return state == null || !(state.startsWith("22") || state.startsWith("23") || state.startsWith("42"));
+    }
+
+    /**
+     * Writes the last change of each book in one transaction.
+     */
+    private void flush(List<Change> changes) throws SQLException {
+        boolean deleteAll = false;
+        Map<String, Book> upserts = new LinkedHashMap<>();
+        Set<String> deletes = new LinkedHashSet<>();
+
+        for (Change change : changes) {
+            switch (change.type) {
+                case UPSERT:
+                    deletes.remove(change.id);
+                    upserts.put(change.id, change.book);
+                    break;
+                case DELETE:
+                    upserts.remove(change.id);
+                    deletes.add(change.id);
+                    break;
+                case DELETE_ALL:
+                    deleteAll = true;
+                    upserts.clear();
+                    deletes.clear();
+                    break;
+                default:
+                    throw new IllegalStateException(change.type.name());
+            }
+        }
+
+        delegate.writeBatch(deleteAll, upserts.values(), deletes);
+    }
+
+    /**
+     * Drops the journal segments whose changes are all written, now that the changes up to segment
+     * {@code flushedSegment} are. The queue is in journal order, so every older segment is done.
+     */
+    private void checkpoint(long flushedSegment) {
+        writeLock.lock();
+        try {
+            if (queue.isEmpty()) {
+                journal.truncate();
+            } else {
+                if (journal.segmentSize() >= journalSegmentBytes) {
+                    journal.rotate();
+                }
+                journal.deleteBefore(flushedSegment);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not drop the written changes from the write-behind journal:", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void recover() throws IOException, SQLException {
+        long changes = journal.replay(batchSize, this::flushOrDeadLetter);
+        if (changes > 0) {
+            LOGGER.warn("Recovered {} changes that were not written before the last shutdown.", changes);
+        }
+        journal.truncate();
+    }
+
+    private long lagNanos() {
+        long oldest = flushingSince;
+        if (oldest == 0) {
+            Change head = queue.peek();
+            if (head == null) {
+                return 0;
+            }
+            oldest = head.createdNanos;
+        }
+        return Math.max(0, System.nanoTime() - oldest);
+    }
+
+    static final class Change {
+
+        enum Type {
+            UPSERT, DELETE, DELETE_ALL
+        }
+
+        final Type type;
+        final String id;
+        final Book book;
+        final long createdNanos = System.nanoTime();
+        // Journal segment the change was appended to, set before it is queued
+        long segment;
+
+        private Change(Type type, String id, Book book) {
+            this.type = type;
+            this.id = id;
+            this.book = book;
+        }
+
+        static Change upsert(Book book) {
+            return new Change(Type.UPSERT, book.getId(), book);
+        }
+
+        static Change delete(String id) {
+            return new Change(Type.DELETE, id, null);
+        }
+
+        static Change deleteAll() {
+            return new Change(Type.DELETE_ALL, null, null);
+        }
+    }
+}
@@ -1,24 +1,35 @@
 package com.programmingskillz.resource;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.programmingskillz.constraint.ValidBookToUpdate;
 import com.programmingskillz.domain.Book;
+import com.programmingskillz.domain.BookLookup;
+import com.programmingskillz.domain.BookStats;
 import com.programmingskillz.exceptions.ErrorResponse;
 import com.programmingskillz.providers.Compress;
+import com.programmingskillz.service.BookChange;
+import com.programmingskillz.service.BookChangeFeed;
+import com.programmingskillz.service.BookPatch;
 import com.programmingskillz.service.BookService;
-import com.programmingskillz.service.BookServiceImpl;
+import com.programmingskillz.service.CatalogSnapshot;
+import com.programmingskillz.util.ApplicationProperties;
 import io.swagger.annotations.*;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.net.URI;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.*;
 
 import static com.programmingskillz.util.CustomMediaType.APPLICATION_JSON;
+import static com.programmingskillz.util.CustomMediaType.APPLICATION_MERGE_PATCH_JSON;
 import static com.programmingskillz.util.CustomMediaType.APPLICATION_XML;
 
 /**
@@ -30,13 +41,20 @@ public class BookResource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BookResource.class);
 
-    private BookService bookService = new BookServiceImpl();
+    private static final int LOOKUP_MAX_IDS = ApplicationProperties.getInt("books.lookup.maxIds", 1000);
+
+    @Inject
+    private BookService bookService;
+
+    @Inject
+    private BookChangeFeed changeFeed;
 
     @GET
     @Compress
     @Produces({APPLICATION_JSON, APPLICATION_XML})
     @ApiOperation(
             value = "Find all books",
+            notes = "With ids, looks up only the books with those ids instead and answers a BookLookup.",
             response = Book.class,
             responseContainer = "List"
     )
@@ -47,6 +65,11 @@ public class BookResource {
                     response = Book.class,
                     responseContainer = "List"
             ),
+            @ApiResponse(
+                    code = 400,
+                    message = "Too many ids",
+                    response = ErrorResponse.class
+            ),
             @ApiResponse(
                     code = 401,
                     message = "'Authorization' header is missing or wrong username/password",
@@ -68,7 +91,22 @@ public class BookResource {
                     response = ErrorResponse.class
             )
     })
-    public Response getBooks() throws SQLException {
+    public Response getBooks(
+            @ApiParam(
+                    value = "Comma separated ids of the books to look up",
+                    example = "767a463c-4cc3-48c1-b93e-25c0d216032b,1f0c6b4e-8a2d-4a55-9a2b-6c1f3e2d7b90"
+            )
+            @QueryParam("ids") String ids) throws SQLException {
+
+        if (ids != null) {
+            return Response.ok(lookUp(Arrays.asList(ids.split(",")))).build();
+        }
+
+        CatalogSnapshot snapshot = bookService.snapshot();
+        if (snapshot != null) {
+            LOGGER.debug("Getting all books of catalog version {}", snapshot.version());
+            return Response.ok(snapshot).build();
+        }
 
         LOGGER.debug("Getting all books...");
         List<Book> allBooks = bookService.getAll();
@@ -89,7 +127,16 @@ public class BookResource {
             @ApiResponse(
                     code = 200,
                     message = "OK",
-                    response = Book.class
+                    response = Book.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "ETag",
+                            description = "Version of the book, for If-None-Match and for If-Match on PATCH",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 304,
+                    message = "Book matches If-None-Match"
             ),
             @ApiResponse(
                     code = 401,
@@ -113,6 +160,7 @@ public class BookResource {
             )
     })
     public Response getBook(
+            @Context Request request,
             @ApiParam(
                     value = "Id of the Book you want to retrieve",
                     required = true,
@@ -123,7 +171,177 @@ public class BookResource {
         LOGGER.debug("Getting book with id '{}'", id);
         Book book = bookService.get(id);
 
-        return Response.ok(book).build();
+        EntityTag entityTag = entityTag(book);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(book).tag(entityTag).build();
+    }
+
+    @GET
+    @Compress
+    @Path("stats")
+    @Produces({APPLICATION_JSON, APPLICATION_XML})
+    @ApiOperation(
+            value = "Catalog statistics",
+            notes = "Counts of books by author, publisher, year published and pages, kept up to date by the writes.",
+            response = BookStats.class
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    code = 200,
+                    message = "OK",
+                    response = BookStats.class
+            ),
+            @ApiResponse(
+                    code = 401,
+                    message = "'Authorization' header is missing or wrong username/password",
+                    response = ErrorResponse.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "WWW-Authenticate",
+                            description = "Defines the authentication method that should be used to gain access to a resource.",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 500,
+                    message = "Internal Server Error",
+                    response = ErrorResponse.class
+            )
+    })
+    public BookStats getStats() throws SQLException {
+
+        LOGGER.debug("Getting catalog statistics");
+        return bookService.stats();
+    }
+
+    @POST
+    @Path("stats/recompute")
+    @Produces({APPLICATION_JSON, APPLICATION_XML})
+    @ApiOperation(
+            value = "Recompute catalog statistics",
+            notes = "Counts all books again, for books changed without going through this application.",
+            response = BookStats.class
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    code = 200,
+                    message = "Recomputed statistics",
+                    response = BookStats.class
+            ),
+            @ApiResponse(
+                    code = 401,
+                    message = "'Authorization' header is missing or wrong username/password",
+                    response = ErrorResponse.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "WWW-Authenticate",
+                            description = "Defines the authentication method that should be used to gain access to a resource.",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 500,
+                    message = "Internal Server Error",
+                    response = ErrorResponse.class
+            )
+    })
+    public BookStats recomputeStats() throws SQLException {
+
+        LOGGER.debug("Recomputing catalog statistics");
+        return bookService.recomputeStats();
+    }
+
+    @GET
+    @Path("changes/stream")
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    @ApiOperation(
+            value = "Stream book changes",
+            notes = "Server-Sent Events named created, updated, deleted and cleared, with the change as JSON data. "
+                    + "Reconnecting with Last-Event-ID resumes after that event. A resync event means changes were "
+                    + "missed: reload all books and subscribe again.",
+            response = BookChange.class
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    code = 200,
+                    message = "Stream of changes",
+                    response = BookChange.class
+            ),
+            @ApiResponse(
+                    code = 401,
+                    message = "'Authorization' header is missing or wrong username/password",
+                    response = ErrorResponse.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "WWW-Authenticate",
+                            description = "Defines the authentication method that should be used to gain access to a resource.",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 503,
+                    message = "Too many open streams",
+                    response = ErrorResponse.class
+            )
+    })
+    public EventOutput streamChanges(
+            @ApiParam("Id of the last event received before reconnecting")
+            @HeaderParam(SseFeature.LAST_EVENT_ID_HEADER) String lastEventId) {
+
+        LOGGER.debug("Subscribing to book changes after '{}'", lastEventId);
+        EventOutput eventOutput = new EventOutput();
+        if (!changeFeed.subscribe(eventOutput, lastEventId)) {
+            throw new ServiceUnavailableException(30L);
+        }
+
+        return eventOutput;
+    }
+
+    @POST
+    @Compress
+    @Path("lookup")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({APPLICATION_JSON, APPLICATION_XML})
+    @ApiOperation(
+            value = "Find books by ids",
+            notes = "Same as GET /books?ids= for lists of ids too long for a URL.",
+            response = BookLookup.class
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    code = 200,
+                    message = "Books found, in the order of the ids, and the ids not found",
+                    response = BookLookup.class
+            ),
+            @ApiResponse(
+                    code = 400,
+                    message = "Bad request or too many ids",
+                    response = ErrorResponse.class
+            ),
+            @ApiResponse(
+                    code = 401,
+                    message = "'Authorization' header is missing or wrong username/password",
+                    response = ErrorResponse.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "WWW-Authenticate",
+                            description = "Defines the authentication method that should be used to gain access to a resource.",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 500,
+                    message = "Internal Server Error",
+                    response = ErrorResponse.class
+            )
+    })
+    public BookLookup lookUpBooks(@NotNull(message = "{requestBody.does.not.exist}")
+                                  @ApiParam(
+                                          value = "Ids of the books to look up",
+                                          required = true
+                                  )
+                                  List<String> ids) throws SQLException {
+
+        return lookUp(ids);
     }
 
     @POST
@@ -209,6 +427,11 @@ public class BookResource {
                             response = String.class
                     )
             ),
+            @ApiResponse(
+                    code = 404,
+                    message = "Book with such id not found.",
+                    response = ErrorResponse.class
+            ),
             @ApiResponse(
                     code = 500,
                     message = "Internal Server Error",
@@ -229,6 +452,91 @@ public class BookResource {
         return Response.ok(updatedBook).build();
     }
 
+    @PATCH
+    @Compress
+    @Path("{id}")
+    @Consumes(APPLICATION_MERGE_PATCH_JSON)
+    @Produces({APPLICATION_JSON, APPLICATION_XML})
+    @ApiOperation(
+            value = "Update some properties of a book",
+            notes = "JSON Merge Patch: every member replaces the property of the same name, null removes it. "
+                    + "Only the changed properties are validated and written.",
+            response = Book.class
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    code = 200,
+                    message = "Book updated successfully",
+                    response = Book.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "ETag",
+                            description = "Version of the updated book",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 400,
+                    message = "Bad request"
+            ),
+            @ApiResponse(
+                    code = 401,
+                    message = "'Authorization' header is missing or wrong username/password",
+                    response = ErrorResponse.class,
+                    responseHeaders = @ResponseHeader(
+                            name = "WWW-Authenticate",
+                            description = "Defines the authentication method that should be used to gain access to a resource.",
+                            response = String.class
+                    )
+            ),
+            @ApiResponse(
+                    code = 404,
+                    message = "Book with such id not found.",
+                    response = ErrorResponse.class
+            ),
+            @ApiResponse(
+                    code = 412,
+                    message = "Book does not match If-Match"
+            ),
+            @ApiResponse(
+                    code = 500,
+                    message = "Internal Server Error",
+                    response = ErrorResponse.class
+            )
+    })
+    public Response patchBook(@Context Request request,
+                              @ApiParam(
+                                      value = "Id of the Book you want to update",
+                                      required = true,
+                                      example = "767a463c-4cc3-48c1-b93e-25c0d216032b"
+                              )
+                              @PathParam("id") String id,
+                              @ApiParam("Entity tag the book must still have, as returned by a GET")
+                              @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+                              @ApiParam(
+                                      value = "Properties you want to change",
+                                      required = true
+                              )
+                              @NotNull(message = "{requestBody.does.not.exist}") JsonNode patch) throws SQLException {
+
+        BookPatch bookPatch;
+        try {
+            bookPatch = BookPatch.of(patch);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+
+        LOGGER.debug("Patching book with id '{}'", id);
+        Book book = bookService.get(id);
+        Response.ResponseBuilder preconditionFailed = request.evaluatePreconditions(entityTag(book));
+        if (preconditionFailed != null) {
+            return preconditionFailed.build();
+        }
+        // The tag matched the book as read here, the write fails with a 412 if somebody changed it since
+        Book patchedBook = bookService.patch(book, bookPatch, ifMatch != null);
+
+        return Response.ok(patchedBook).tag(entityTag(patchedBook)).build();
+    }
+
     @DELETE
     @Path("{id}")
     @ApiOperation(
@@ -287,4 +595,45 @@ public class BookResource {
 
         return Response.noContent().build();
     }
-}
\ No newline at end of file
+
+    private BookLookup lookUp(List<String> requestedIds) throws SQLException {
+        List<String> ids = new ArrayList<>(requestedIds.size());
+        for (String id : requestedIds) {
+            if (id != null && !id.trim().isEmpty()) {
+                ids.add(id.trim());
+            }
+        }
+        if (ids.size() > LOOKUP_MAX_IDS) {
+            throw new BadRequestException("At most " + LOOKUP_MAX_IDS + " ids can be looked up at once");
+        }
+
+        LOGGER.debug("Looking up {} books", ids.size());
+        Map<String, Book> found = bookService.getAllById(ids);
+
+        BookLookup lookup = new BookLookup();
+        lookup.getBooks().addAll(found.values());
+        Set<String> missing = new LinkedHashSet<>(ids);
+        missing.removeAll(found.keySet());
+        lookup.getMissing().addAll(missing);
+        return lookup;
+    }
+
+    /**
+     * Strong entity tag of all properties of the book (64 bit FNV-1a), books carry no version of their own.
+     */
+    private static EntityTag entityTag(Book book) {
+        long hash = 0xcbf29ce484222325L;
+        for (Object property : new Object[]{book.getId(), book.getTitle(), book.getAuthor(), book.getDescription(),
+                book.getIsbn(), book.getPages(), book.getPublisher(), book.getPublished()}) {
+            // Separates the properties and tells null from "null", neither is a char value
+            hash = (hash ^ (property != null ? 0x10000 : 0x10001)) * 0x100000001b3L;
+            if (property != null) {
+                String value = property.toString();
+                for (int i = 0; i < value.length(); i++) {
+                    hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+                }
+            }
+        }
+        return new EntityTag(Long.toHexString(hash));
+    }
+}
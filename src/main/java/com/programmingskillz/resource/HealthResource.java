@@ -0,0 +1,43 @@
+package com.programmingskillz.resource;
+
+import com.programmingskillz.util.Readiness;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Probes for load balancers and orchestrators, they do not require authentication.
+ *
+ * @author Durim Kryeziu
+ */
+@Path("health")
+@Api("health")
+@Produces(MediaType.TEXT_PLAIN)
+public class HealthResource {
+
+    @GET
+    @Path("live")
+    @ApiOperation(value = "Whether the application is running", response = String.class)
+    public String live() {
+        return "UP";
+    }
+
+    @GET
+    @Path("ready")
+    @ApiOperation(value = "Whether the application has finished starting up and accepts traffic", response = String.class)
+    @ApiResponses({@ApiResponse(code = 503, message = "Still starting up or shutting down")})
+    public Response ready() {
+        String reason = Readiness.getReason();
+        if (reason == null) {
+            return Response.ok("READY").build();
+        }
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(reason).build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.programmingskillz.resource;
+
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.metrics.PrometheusWriter;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * @author Durim Kryeziu
+ */
+@Path("metrics")
+@Api("metrics")
+public class MetricsResource {
+
+    @GET
+    @Produces(PrometheusWriter.CONTENT_TYPE)
+    @ApiOperation(
+            value = "Request, connection pool and JVM metrics in Prometheus text format",
+            response = String.class
+    )
+    public String getMetrics() {
+        return MetricsRegistry.scrape();
+    }
+}
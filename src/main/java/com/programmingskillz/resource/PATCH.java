@@ -0,0 +1,18 @@
+package com.programmingskillz.resource;
+
+import javax.ws.rs.HttpMethod;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * HTTP {@code PATCH}, which JAX-RS 2.0 has no annotation for.
+ *
+ * @author Durim Kryeziu
+ */
+@HttpMethod("PATCH")
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface PATCH {
+}
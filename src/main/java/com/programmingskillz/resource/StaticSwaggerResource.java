@@ -0,0 +1,64 @@
+package com.programmingskillz.resource;
+
+import org.glassfish.jersey.process.Inflector;
+import org.glassfish.jersey.server.model.Resource;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Serves the Swagger spec generated at build time from memory, with an {@code ETag} so clients can revalidate
+ * their cached copy. {@code GET /swagger.json} arrives here as {@code /swagger} once the URI based content
+ * negotiation has removed the extension.
+ * <p>
+ * Built programmatically rather than annotated with {@code @Path}, so package scanning in development mode
+ * does not pick it up next to Swagger's own listing resource.
+ *
+ * @author Durim Kryeziu
+ */
+public class StaticSwaggerResource implements Inflector<ContainerRequestContext, Response> {
+
+    private final byte[] spec;
+    private final EntityTag entityTag;
+    private final CacheControl cacheControl;
+
+    private StaticSwaggerResource(byte[] spec) {
+        this.spec = spec;
+        this.entityTag = new EntityTag(digest(spec));
+        this.cacheControl = new CacheControl();
+        this.cacheControl.setMaxAge(3600);
+    }
+
+    public static Resource resource(byte[] spec) {
+        Resource.Builder builder = Resource.builder("swagger");
+        builder.addMethod(HttpMethod.GET)
+                .produces(MediaType.APPLICATION_JSON_TYPE)
+                .handledBy(new StaticSwaggerResource(spec));
+        return builder.build();
+    }
+
+    @Override
+    public Response apply(ContainerRequestContext requestContext) {
+        Response.ResponseBuilder builder = requestContext.getRequest().evaluatePreconditions(entityTag);
+        if (builder == null) {
+            builder = Response.ok(spec, MediaType.APPLICATION_JSON_TYPE);
+        }
+        return builder.tag(entityTag).cacheControl(cacheControl).build();
+    }
+
+    private static String digest(byte[] spec) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(spec);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.util.ApplicationProperties;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Books by id read by this instance, evicted when {@link BookChangeLogPoller} sees another instance change them.
+ * <p>
+ * Every eviction advances the generation. A reader takes the generation before it queries the book and
+ * {@link #put(Book, long) puts} only if no eviction happened meanwhile, so a book read just before a change
+ * cannot be cached after its eviction. Once {@code maxEntries} are cached an arbitrary entry makes room.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookCache implements MetricsCollector {
+
+    private final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
+    private final int maxEntries = ApplicationProperties.getInt("books.cache.maxEntries", 10000);
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @return a copy of the cached book, {@code null} if it is not cached
+     */
+    public Book get(String id) {
+        Book book = books.get(id);
+        if (book == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Book(book);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a copy of {@code book} unless anything was evicted since {@code readGeneration}.
+     */
+    public void put(Book book, long readGeneration) {
+        if (generation.get() != readGeneration) {
+            return;
+        }
+        if (books.size() >= maxEntries) {
+            Iterator<String> ids = books.keySet().iterator();
+            if (ids.hasNext()) {
+                books.remove(ids.next());
+            }
+        }
+
+        Book copy = new Book(book);
+        books.put(book.getId(), copy);
+        // An eviction between the check above and the put must win
+        if (generation.get() != readGeneration) {
+            books.remove(book.getId(), copy);
+        }
+    }
+
+    public void evict(String id) {
+        generation.incrementAndGet();
+        if (books.remove(id) != null) {
+            evictions.increment();
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        evictions.add(books.size());
+        books.clear();
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.family("book_cache_entries", "gauge", "Books cached by this instance.");
+        writer.sample("book_cache_entries", books.size());
+        writer.family("book_cache_hits_total", "counter", "Book lookups answered from the cache.");
+        writer.sample("book_cache_hits_total", hits.sum());
+        writer.family("book_cache_misses_total", "counter", "Book lookups that queried the repository.");
+        writer.sample("book_cache_misses_total", misses.sum());
+        writer.family("book_cache_evictions_total", "counter", "Cached books evicted because they were changed.");
+        writer.sample("book_cache_evictions_total", evictions.sum());
+    }
+}
@@ -0,0 +1,66 @@
+package com.programmingskillz.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.programmingskillz.domain.Book;
+
+import java.time.Instant;
+
+/**
+ * A write done through the {@link BookService}: the book as written for {@code CREATED} and {@code UPDATED},
+ * only its id for {@code DELETED} and neither for {@code CLEARED}.
+ *
+ * @author Durim Kryeziu
+ */
+@JsonPropertyOrder({"type", "bookId", "book", "time"})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, CLEARED
+    }
+
+    private final Type type;
+    private final String bookId;
+    private final Book book;
+    private final Instant time;
+
+    private BookChange(Type type, String bookId, Book book) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+        this.time = Instant.now();
+    }
+
+    public static BookChange created(Book book) {
+        return new BookChange(Type.CREATED, book.getId(), book);
+    }
+
+    public static BookChange updated(Book book) {
+        return new BookChange(Type.UPDATED, book.getId(), book);
+    }
+
+    public static BookChange deleted(String bookId) {
+        return new BookChange(Type.DELETED, bookId, null);
+    }
+
+    public static BookChange cleared() {
+        return new BookChange(Type.CLEARED, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,421 @@
+package com.programmingskillz.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.Mappers;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams {@link BookChange}s to the Server-Sent Events subscribers of {@code GET /books/changes/stream}.
+ * <p>
+ * A write serializes its change once, stores it in a ring of the last {@code bufferSize} changes and wakes the
+ * fan-out, it never waits for a subscriber. Each subscriber is drained from its own position in the ring by
+ * one of {@code senderThreads}, so a slow subscriber only holds up itself. A subscriber that falls behind by
+ * more than the ring holds, or resumes with a {@code Last-Event-ID} the ring no longer holds, gets a
+ * {@code resync} event and is disconnected: it has to reload {@code GET /books} and subscribe again.
+ * <p>
+ * Writes block while the client does not read. A subscriber whose write has been pending for longer than
+ * {@code writeTimeoutMillis} is dropped and its stream closed, and the senders get a thread in place of the one
+ * stuck in the write until that write returns, so stalled clients cannot starve the others. At most
+ * {@code maxStandInThreads} are added, beyond that a stalled client is only dropped and its sender is missed
+ * until the write fails, as it will once the connection is gone.
+ * <p>
+ * Event ids are {@code <epoch>-<sequence>} with an epoch per process, so ids from before a restart are
+ * answered with {@code resync} too.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookChangeFeed implements BookChangeListener, MetricsCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookChangeFeed.class);
+
+    private static final ObjectWriter WRITER = Mappers.json().writer().without(SerializationFeature.INDENT_OUTPUT);
+    private static final OutboundEvent HEARTBEAT = new OutboundEvent.Builder().comment("heartbeat").build();
+    private static final Event OVERFLOW = new Event(-1L, null);
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicReferenceArray<Event> ring;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fanOutPending = new AtomicBoolean();
+    private final int maxSubscribers;
+    private final long writeTimeoutNanos;
+    private final int maxStandIns;
+
+    private final ScheduledExecutorService dispatcher;
+    private final ThreadPoolExecutor senders;
+    // Guarded by senders
+    private int standIns;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+
+    public BookChangeFeed() {
+        this.ring = new AtomicReferenceArray<>(ApplicationProperties.getInt("changes.stream.bufferSize", 1024));
+        this.maxSubscribers = ApplicationProperties.getInt("changes.stream.maxSubscribers", 1000);
+
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-changes-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger senderCount = new AtomicInteger();
+        int senderThreads = ApplicationProperties.getInt("changes.stream.senderThreads", 4);
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "book-changes-sender-" + senderCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        long heartbeatSeconds = ApplicationProperties.getLong("changes.stream.heartbeatSeconds", 15);
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        long writeTimeoutMillis = ApplicationProperties.getLong("changes.stream.writeTimeoutMillis", 10000);
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        this.maxStandIns = ApplicationProperties.getInt("changes.stream.maxStandInThreads", 16);
+        long checkMillis = Math.max(1, writeTimeoutMillis / 2);
+        dispatcher.scheduleWithFixedDelay(this::dropStalled, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.register(this);
+    }
+
+    @Override
+    public void onChange(BookChange change) {
+        String data;
+        try {
+            data = WRITER.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Could not serialize book change: {}", e.toString());
+            return;
+        }
+
+        long next = sequence.incrementAndGet();
+        Event event = new Event(next, new OutboundEvent.Builder()
+                .id(epoch + "-" + next)
+                .name(change.getType().name().toLowerCase(Locale.ROOT))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(String.class, data)
+                .build());
+        // Keeps the newer event should a writer wrap around the ring before an older one stored its event
+        ring.accumulateAndGet(slot(next), event,
+                (previous, current) -> previous != null && previous.sequence > current.sequence ? previous : current);
+        published.increment();
+
+        if (fanOutPending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::fanOut);
+            } catch (RejectedExecutionException e) {
+                fanOutPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if there are already {@code maxSubscribers}
+     */
+    public boolean subscribe(EventOutput output, String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            return false;
+        }
+
+        long current = sequence.get();
+        long cursor = current;
+        if (lastEventId != null) {
+            long resumeAfter = parseSequence(lastEventId);
+            if (resumeAfter < 0 || resumeAfter > current || resumeAfter < current - ring.length()) {
+                resync(output, "Last-Event-ID " + lastEventId + " is no longer available");
+                return true;
+            }
+            cursor = resumeAfter;
+        }
+
+        Subscriber subscriber = new Subscriber(output, cursor);
+        // Sends the response headers right away, clients wait for them before they read any change
+        subscriber.heartbeatDue = true;
+        subscribers.add(subscriber);
+        subscriber.schedule();
+        return true;
+    }
+
+    @PreDestroy
+    public void close() {
+        MetricsRegistry.unregister(this);
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.family("book_change_subscribers", "gauge", "Open book change streams.");
+        writer.sample("book_change_subscribers", subscribers.size());
+        writer.family("book_change_events_total", "counter", "Book changes published to the streams.");
+        writer.sample("book_change_events_total", published.sum());
+        writer.family("book_change_resyncs_total", "counter",
+                "Streams closed with a resync event because they fell behind or resumed too late.");
+        writer.sample("book_change_resyncs_total", resyncs.sum());
+        writer.family("book_change_stalled_total", "counter",
+                "Streams dropped because a write to them did not complete within the write timeout.");
+        writer.sample("book_change_stalled_total", stalled.sum());
+    }
+
+    private void fanOut() {
+        fanOutPending.set(false);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.schedule();
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.dropIfStalled(now);
+        }
+    }
+
+    /**
+     * Adds a thread that stands in for a sender stuck in a write.
+     *
+     * @return {@code false} if there are already {@code maxStandInThreads}
+     */
+    private boolean addStandIn() {
+        synchronized (senders) {
+            if (standIns >= maxStandIns) {
+                LOGGER.warn("{} threads already stand in for senders stuck in a write, not adding another.",
+                        standIns);
+                return false;
+            }
+            standIns++;
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + 1);
+            senders.setCorePoolSize(senders.getCorePoolSize() + 1);
+            return true;
+        }
+    }
+
+    private void removeStandIn() {
+        synchronized (senders) {
+            standIns--;
+            senders.setCorePoolSize(senders.getCorePoolSize() - 1);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() - 1);
+        }
+    }
+
+    /**
+     * @return the event, {@code null} if it has not been stored yet or {@link #OVERFLOW} if it was overwritten
+     */
+    private Event read(long eventSequence) {
+        Event event = ring.get(slot(eventSequence));
+        if (event == null || event.sequence < eventSequence) {
+            return null;
+        }
+        return event.sequence == eventSequence ? event : OVERFLOW;
+    }
+
+    private int slot(long eventSequence) {
+        return (int) (eventSequence % ring.length());
+    }
+
+    private long parseSequence(String lastEventId) {
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private void resync(EventOutput output, String reason) {
+        resyncs.increment();
+        try {
+            output.write(new OutboundEvent.Builder()
+                    .name("resync")
+                    .mediaType(MediaType.TEXT_PLAIN_TYPE)
+                    .data(String.class, reason)
+                    .build());
+        } catch (IOException e) {
+            LOGGER.debug("Could not send resync event: {}", e.toString());
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(EventOutput output) {
+        try {
+            output.close();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not close book change stream: {}", e.toString());
+        }
+    }
+
+    private static final class Event {
+
+        final long sequence;
+        final OutboundEvent outbound;
+
+        Event(long sequence, OutboundEvent outbound) {
+            this.sequence = sequence;
+            this.outbound = outbound;
+        }
+    }
+
+    /**
+     * Drained by at most one sender at a time, which owns {@code cursor} while {@code draining} is set.
+     * The write state is guarded by the subscriber itself, so the sender and the dispatcher agree on whether a
+     * thread was added for a stalled write.
+     */
+    private final class Subscriber {
+
+        private final EventOutput output;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private long cursor;
+        private volatile boolean heartbeatDue;
+
+        private boolean writing;
+        private long writeStarted;
+        private boolean dropped;
+        private boolean replaced;
+
+        Subscriber(EventOutput output, long cursor) {
+            this.output = output;
+            this.cursor = cursor;
+        }
+
+        void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    if (output.isClosed()) {
+                        close();
+                        return;
+                    }
+                    if (heartbeatDue) {
+                        heartbeatDue = false;
+                        send(HEARTBEAT);
+                    }
+
+                    Event event = read(cursor + 1);
+                    if (event == OVERFLOW) {
+                        subscribers.remove(this);
+                        resync(output, "Fell behind by more than " + ring.length() + " changes");
+                        return;
+                    }
+                    if (event != null) {
+                        send(event.outbound);
+                        cursor = event.sequence;
+                        continue;
+                    }
+
+                    long next = cursor + 1;
+                    draining.set(false);
+                    // A change or heartbeat may have arrived after the last look, unless another sender took over
+                    if ((read(next) == null && !heartbeatDue) || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Book change stream closed: {}", e.toString());
+                close();
+            } finally {
+                boolean release;
+                synchronized (this) {
+                    release = replaced;
+                    replaced = false;
+                }
+                if (release) {
+                    removeStandIn();
+                }
+            }
+        }
+
+        private void send(OutboundEvent event) throws IOException {
+            synchronized (this) {
+                writing = true;
+                writeStarted = System.nanoTime();
+            }
+            try {
+                output.write(event);
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                }
+            }
+        }
+
+        /**
+         * Closing does not interrupt the pending write, it only makes the sender stop once the write returns.
+         */
+        void dropIfStalled(long now) {
+            synchronized (this) {
+                if (!writing || dropped || now - writeStarted < writeTimeoutNanos) {
+                    return;
+                }
+                dropped = true;
+            }
+            stalled.increment();
+            LOGGER.debug("Dropping book change stream, a write has been pending for more than {} ms.",
+                    TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos));
+            subscribers.remove(this);
+            closeQuietly(output);
+
+            synchronized (this) {
+                // Unless the write returned meanwhile, in which case the sender is free again
+                if (writing) {
+                    replaced = addStandIn();
+                }
+            }
+        }
+
+        void close() {
+            subscribers.remove(this);
+            closeQuietly(output);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.programmingskillz.service;
+
+/**
+ * Notified by {@link BookServiceImpl} after every successful write, on the writing thread.
+ *
+ * @author Durim Kryeziu
+ */
+public interface BookChangeListener {
+
+    void onChange(BookChange change);
+}
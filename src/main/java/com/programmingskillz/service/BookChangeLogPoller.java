@@ -0,0 +1,193 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.repository.BookChangeLog;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Tails the {@link BookChangeLog} every {@code books.cache.pollIntervalMillis} from the highest version seen so
+ * far, handing every changed id (this instance's own changes included) to {@code changed} and every deletion of
+ * all books to {@code cleared}.
+ * <p>
+ * Versions skipped by a poll may belong to transactions that were still running, so they are polled again until
+ * they show up or {@code books.cache.gapTimeoutMillis} pass (a rolled back write never shows up). On the first
+ * poll, or when polling failed for longer than half of {@code repository.changeLog.retentionMinutes} so that
+ * changes may have been purged unseen, tailing restarts from the latest version and {@code reset} runs right
+ * after reading it: whatever it reloads then includes every change up to that version.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookChangeLogPoller implements MetricsCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookChangeLogPoller.class);
+
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final BookChangeLog changeLog;
+    private final Consumer<String> changed;
+    private final Runnable cleared;
+    private final Runnable reset;
+
+    private final long pollIntervalMillis = ApplicationProperties.getLong("books.cache.pollIntervalMillis", 500);
+    private final int batchSize = ApplicationProperties.getInt("books.cache.pollBatchSize", 1000);
+    private final long maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(
+            ApplicationProperties.getLong("books.cache.maxStalenessMillis", 5000));
+    private final long gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+            ApplicationProperties.getLong("books.cache.gapTimeoutMillis", 10000));
+    private final long retentionSeconds = TimeUnit.MINUTES.toSeconds(
+            ApplicationProperties.getLong("repository.changeLog.retentionMinutes", 60));
+
+    private final ScheduledExecutorService scheduler;
+
+    // Only used by the polling thread
+    private long highWaterMark = -1L;
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private long lastPurgeNanos = System.nanoTime();
+    private boolean failing;
+
+    private volatile long lastPollNanos;
+    private volatile boolean polled;
+    private volatile int gapCount;
+    private volatile long latestVersion;
+
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    public BookChangeLogPoller(BookChangeLog changeLog, Consumer<String> changed, Runnable cleared, Runnable reset) {
+        this.changeLog = changeLog;
+        this.changed = changed;
+        this.cleared = cleared;
+        this.reset = reset;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-change-log-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return {@code true} if the last successful poll started less than {@code books.cache.maxStalenessMillis}
+     * ago, so that what was cached before it can be trusted
+     */
+    public boolean isCurrent() {
+        return polled && System.nanoTime() - lastPollNanos <= maxStalenessNanos;
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    synchronized void poll() throws SQLException {
+        long now = System.nanoTime();
+        polls.increment();
+
+        if (!polled || now - lastPollNanos > TimeUnit.SECONDS.toNanos(retentionSeconds) / 2) {
+            highWaterMark = changeLog.latestVersion();
+            gaps.clear();
+            reset();
+        } else {
+            long after = gaps.isEmpty() ? highWaterMark : Math.min(highWaterMark, Collections.min(gaps.keySet()) - 1);
+            List<BookChangeLog.Entry> entries;
+            do {
+                entries = changeLog.since(after, batchSize);
+                for (BookChangeLog.Entry entry : entries) {
+                    after = entry.getVersion();
+                    if (entry.getVersion() > highWaterMark) {
+                        if (entry.getVersion() - highWaterMark - 1 > batchSize) {
+                            // too many to track, e.g. after the sequence skipped ahead
+                            reset();
+                        } else {
+                            for (long missing = highWaterMark + 1; missing < entry.getVersion(); missing++) {
+                                gaps.put(missing, now);
+                            }
+                        }
+                        highWaterMark = entry.getVersion();
+                    } else if (gaps.remove(entry.getVersion()) == null) {
+                        continue;
+                    }
+                    apply(entry);
+                }
+            } while (entries.size() == batchSize);
+            gaps.values().removeIf(firstMissing -> now - firstMissing > gapTimeoutNanos);
+        }
+
+        gapCount = gaps.size();
+        latestVersion = highWaterMark;
+        lastPollNanos = now;
+        polled = true;
+
+        if (now - lastPurgeNanos > PURGE_INTERVAL_NANOS) {
+            lastPurgeNanos = now;
+            int purged = changeLog.purge(retentionSeconds);
+            LOGGER.debug("Purged {} book changes", purged);
+        }
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.family("book_change_log_version", "gauge", "Highest book change log version seen by this instance.");
+        writer.sample("book_change_log_version", latestVersion);
+        writer.family("book_change_log_gaps", "gauge",
+                "Skipped book change log versions still polled for, written by transactions not committed yet.");
+        writer.sample("book_change_log_gaps", gapCount);
+        writer.family("book_change_log_polls_total", "counter", "Polls of the book change log.");
+        writer.sample("book_change_log_polls_total", polls.sum());
+        writer.family("book_change_log_poll_failures_total", "counter", "Polls of the book change log that failed.");
+        writer.sample("book_change_log_poll_failures_total", failures.sum());
+        writer.family("book_change_log_changes_total", "counter", "Book changes read from the change log.");
+        writer.sample("book_change_log_changes_total", changes.sum());
+        writer.family("book_change_log_resets_total", "counter",
+                "Times everything derived from the books was reloaded because changes may have been missed.");
+        writer.sample("book_change_log_resets_total", resets.sum());
+    }
+
+    private void reset() {
+        resets.increment();
+        reset.run();
+    }
+
+    private void apply(BookChangeLog.Entry entry) {
+        changes.increment();
+        if (entry.getBookId() == null) {
+            cleared.run();
+        } else {
+            changed.accept(entry.getBookId());
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+            failing = false;
+        } catch (SQLException | RuntimeException e) {
+            // the cache is bypassed once the last successful poll is older than maxStalenessMillis
+            failures.increment();
+            if (!failing) {
+                LOGGER.error("Failed to poll book change log:", e);
+            } else {
+                LOGGER.debug("Book change log poll failed again: {}", e.toString());
+            }
+            failing = true;
+        }
+    }
+}
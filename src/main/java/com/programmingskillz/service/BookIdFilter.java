@@ -0,0 +1,112 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.repository.Repository;
+import com.programmingskillz.util.ApplicationProperties;
+import com.programmingskillz.util.BloomFilter;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of the ids of all existing books, used to answer lookups of unknown ids without a query.
+ * <p>
+ * Deleted ids stay in the filter (as false positives) until the next {@link #rebuild(Repository) rebuild}.
+ * While a rebuild is running, new ids are added to both the current and the new filter so none is lost
+ * between the snapshot query and the swap.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookIdFilter implements MetricsCollector {
+
+    private static final long EXPECTED_INSERTIONS =
+            ApplicationProperties.getLong("books.idFilter.expectedInsertions", 100000);
+    private static final double FALSE_POSITIVE_PROBABILITY =
+            ApplicationProperties.getDouble("books.idFilter.falsePositiveProbability", 0.01);
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter pending;
+    private volatile boolean ready;
+
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public BookIdFilter() {
+        this.current = BloomFilter.create(EXPECTED_INSERTIONS, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * @return {@code false} only if no book with the given id exists (or the filter is not loaded yet)
+     */
+    public boolean mightExist(String id) {
+        if (!ready || current.mightContain(id)) {
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    /**
+     * Records that a lookup the filter let through did not find a book.
+     */
+    public void falsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Adds the id of a book that is already stored. The pending filter is read before the current one: a
+     * rebuild that has not published its filter yet either finds the id itself or swaps in a filter read here.
+     */
+    public void add(String id) {
+        BloomFilter next = pending;
+        if (next != null) {
+            next.put(id);
+        }
+
+        current.put(id);
+    }
+
+    /**
+     * Replaces the filter with one holding the ids currently stored in the repository.
+     * The new filter is sized for twice the number of ids the current one holds.
+     */
+    public synchronized void rebuild(Repository<?> repository) throws SQLException {
+        BloomFilter next = BloomFilter.create(Math.max(EXPECTED_INSERTIONS, 2 * current.getInsertions()),
+                FALSE_POSITIVE_PROBABILITY);
+        pending = next;
+        try {
+            for (String id : repository.findAllIds()) {
+                next.put(id);
+            }
+
+            current = next;
+            ready = true;
+            rebuilds.incrementAndGet();
+        } finally {
+            pending = null;
+        }
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        BloomFilter filter = current;
+
+        writer.family("book_id_filter_memory_bytes", "gauge", "Memory used by the book id Bloom filter.");
+        writer.sample("book_id_filter_memory_bytes", filter.sizeInBytes());
+        writer.family("book_id_filter_insertions", "gauge", "Ids added to the book id Bloom filter since its last rebuild.");
+        writer.sample("book_id_filter_insertions", filter.getInsertions());
+        writer.family("book_id_filter_expected_false_positive_rate", "gauge",
+                "False positive probability estimated from the fill ratio of the filter.");
+        writer.sample("book_id_filter_expected_false_positive_rate", filter.expectedFpp());
+        writer.family("book_id_filter_negatives_total", "counter", "Lookups answered by the filter without a query.");
+        writer.sample("book_id_filter_negatives_total", negatives.sum());
+        writer.family("book_id_filter_false_positives_total", "counter",
+                "Lookups let through by the filter that found no book.");
+        writer.sample("book_id_filter_false_positives_total", falsePositives.sum());
+        writer.family("book_id_filter_rebuilds_total", "counter", "Rebuilds of the filter.");
+        writer.sample("book_id_filter_rebuilds_total", rebuilds.get());
+    }
+}
@@ -0,0 +1,118 @@
+package com.programmingskillz.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.Mappers;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A JSON Merge Patch (RFC 7396) of a book: every member replaces the property of the same name and {@code null}
+ * removes it. Books have no nested objects, so nothing is merged recursively. The id cannot be patched.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookPatch {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final Map<Property, Object> values;
+
+    private BookPatch(Map<Property, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the patch is not an object, names the id or a property books do not
+     *                                  have, or holds a value of the wrong type
+     */
+    public static BookPatch of(JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("A merge patch of a book must be a JSON object");
+        }
+
+        Map<Property, Object> values = new EnumMap<>(Property.class);
+        Iterator<Map.Entry<String, JsonNode>> members = patch.fields();
+        while (members.hasNext()) {
+            Map.Entry<String, JsonNode> member = members.next();
+            Property property = Property.named(member.getKey());
+            if (property == null) {
+                throw new IllegalArgumentException("Books have no patchable property '" + member.getKey() + "'");
+            }
+            try {
+                values.put(property, member.getValue().isNull()
+                        ? null : Mappers.json().treeToValue(member.getValue(), property.type));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid value of '" + member.getKey() + "': "
+                        + e.getOriginalMessage(), e);
+            }
+        }
+        return new BookPatch(values);
+    }
+
+    /**
+     * Applies the patch to {@code book} and validates the properties it changed, and only those.
+     *
+     * @return the names of the changed properties, empty if the patch matched the book already
+     * @throws ConstraintViolationException if a changed property is not valid anymore
+     */
+    public Set<String> applyTo(Book book) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<Property, Object> entry : values.entrySet()) {
+            Property property = entry.getKey();
+            if (!Objects.equals(property.getter.apply(book), entry.getValue())) {
+                property.setter.accept(book, entry.getValue());
+                changed.add(property.name);
+            }
+        }
+
+        Set<ConstraintViolation<Book>> violations = new LinkedHashSet<>();
+        for (String property : changed) {
+            violations.addAll(VALIDATOR.validateProperty(book, property));
+        }
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return changed;
+    }
+
+    private enum Property {
+        TITLE("title", String.class, Book::getTitle, (book, value) -> book.setTitle((String) value)),
+        AUTHOR("author", String.class, Book::getAuthor, (book, value) -> book.setAuthor((String) value)),
+        DESCRIPTION("description", String.class, Book::getDescription,
+                (book, value) -> book.setDescription((String) value)),
+        ISBN("isbn", String.class, Book::getIsbn, (book, value) -> book.setIsbn((String) value)),
+        PAGES("pages", Integer.class, Book::getPages, (book, value) -> book.setPages((Integer) value)),
+        PUBLISHER("publisher", String.class, Book::getPublisher, (book, value) -> book.setPublisher((String) value)),
+        PUBLISHED("published", Instant.class, Book::getPublished, (book, value) -> book.setPublished((Instant) value));
+
+        final String name;
+        final Class<?> type;
+        final Function<Book, Object> getter;
+        final BiConsumer<Book, Object> setter;
+
+        Property(String name, Class<?> type, Function<Book, Object> getter, BiConsumer<Book, Object> setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        static Property named(String name) {
+            for (Property property : values()) {
+                if (property.name.equals(name)) {
+                    return property;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.programmingskillz.service;
 
 import com.programmingskillz.domain.Book;
+import com.programmingskillz.domain.BookStats;
+import com.programmingskillz.exceptions.BookModifiedException;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Durim Kryeziu
@@ -15,9 +18,40 @@ public interface BookService {
 
     List<Book> getAll() throws SQLException;
 
+    /**
+     * @return the books found by id, in the order of {@code ids}; ids no book has are left out
+     */
+    Map<String, Book> getAllById(List<String> ids) throws SQLException;
+
     Book update(Book entity) throws SQLException;
 
+    /**
+     * Applies {@code patch} to a copy of {@code book}, as returned by {@link #get(String)}, and writes only the
+     * properties it changed. {@code book} itself is left as it is, also when the patch is not valid.
+     * <p>
+     * With {@code ifUnchanged} they are only written if the stored book still equals {@code book}, checked in the
+     * same step as the write, e.g. after {@code book} was compared with an {@code If-Match}.
+     *
+     * @throws BookModifiedException if {@code ifUnchanged} and the book was changed since it was read
+     */
+    Book patch(Book book, BookPatch patch, boolean ifUnchanged) throws SQLException;
+
     void delete(String id) throws SQLException;
 
     void deleteAll() throws SQLException;
+
+    /**
+     * @return the current catalog with its serialized forms, {@code null} unless snapshots are enabled
+     */
+    CatalogSnapshot snapshot() throws SQLException;
+
+    /**
+     * @return the statistics the writes keep up to date, computed from all books on the first call
+     */
+    BookStats stats() throws SQLException;
+
+    /**
+     * Computes the statistics from all books again, e.g. after books were changed bypassing the service.
+     */
+    BookStats recomputeStats() throws SQLException;
 }
\ No newline at end of file
@@ -1,46 +1,683 @@
 package com.programmingskillz.service;
 
 import com.programmingskillz.domain.Book;
+import com.programmingskillz.domain.BookStats;
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.metrics.MetricsCollector;
+import com.programmingskillz.metrics.MetricsRegistry;
+import com.programmingskillz.metrics.PrometheusWriter;
+import com.programmingskillz.repository.BookChangeLog;
 import com.programmingskillz.repository.BookRepository;
+import com.programmingskillz.repository.Repositories;
 import com.programmingskillz.repository.Repository;
+import com.programmingskillz.util.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.Closeable;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 /**
  * @author Durim Kryeziu
  */
 public class BookServiceImpl implements BookService {
 
-    private Repository<Book> repository = new BookRepository();
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookServiceImpl.class);
+
+    private static final boolean ID_FILTER_ENABLED =
+            ApplicationProperties.getBoolean("books.idFilter.enabled", true);
+    private static final long ID_FILTER_REBUILD_MINUTES =
+            ApplicationProperties.getLong("books.idFilter.rebuildIntervalMinutes", 60);
+    private static final long SINGLE_FLIGHT_TIMEOUT_MILLIS =
+            ApplicationProperties.getLong("books.singleFlight.timeoutMillis", 5000);
+
+    private static final String ALL_BOOKS = "";
+    private static final int BOOK_LOCKS = 64;
+
+    private final Repository<Book> repository;
+    private final BookIdFilter idFilter;
+    private final ScheduledExecutorService scheduler;
+    private final BookChangeLogPoller changeLogPoller;
+    private final BookCache cache;
+    private final List<BookChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Concurrent identical reads share one repository call
+    private final SingleFlight<String, Book> bookReads =
+            new SingleFlight<>(Book::new, SINGLE_FLIGHT_TIMEOUT_MILLIS);
+    private final SingleFlight<String, List<Book>> allBooksReads = new SingleFlight<>(
+            books -> books.stream().map(Book::new).collect(Collectors.toList()), SINGLE_FLIGHT_TIMEOUT_MILLIS);
+    private final MetricsCollector singleFlightMetrics = this::collectSingleFlightMetrics;
+
+    // getAll() answers from an immutable catalog that writes replace, loaded on first use
+    private final boolean snapshotEnabled = ApplicationProperties.getBoolean("books.snapshot.enabled", false);
+    private final Object snapshotLock = new Object();
+    private volatile CatalogSnapshot snapshot;
+    private long snapshotVersion;
+    private final MetricsCollector snapshotMetrics = this::collectSnapshotMetrics;
+
+    // Writes of one book reach the repository, the snapshot and the statistics in the same order, see write().
+    // Writes of single books share the catalog lock, deleteAll() and loading the snapshot hold it exclusively.
+    private final ReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    private final Object[] bookLocks = new Object[BOOK_LOCKS];
+    private final AtomicLongArray bookLockWrites = new AtomicLongArray(BOOK_LOCKS);
+
+    // Maintained by the writes, built from all books on first use. While rebuilding writes go to both.
+    private final Object statsRebuildLock = new Object();
+    private final AtomicLong statsClears = new AtomicLong();
+    private volatile CatalogStats stats;
+    private volatile CatalogStats rebuildingStats;
+
+    public BookServiceImpl() throws SQLException {
+        this(Repositories.books());
+    }
+
+    @Inject
+    public BookServiceImpl(BookChangeListener changeListener) throws SQLException {
+        this(Repositories.books());
+        addChangeListener(changeListener);
+    }
+
+    public BookServiceImpl(Repository<Book> repository) {
+        this.repository = repository;
+        for (int i = 0; i < BOOK_LOCKS; i++) {
+            bookLocks[i] = new Object();
+        }
+        MetricsRegistry.register(singleFlightMetrics);
+        if (snapshotEnabled) {
+            MetricsRegistry.register(snapshotMetrics);
+        }
+        // Other instances sharing the database announce their writes in the change log
+        boolean tailChangeLog = BookChangeLog.enabled() && repository instanceof BookRepository;
+
+        if (ID_FILTER_ENABLED) {
+            this.idFilter = new BookIdFilter();
+            if (!tailChangeLog) {
+                // otherwise the first poll of the change log rebuilds it
+                rebuildIdFilter();
+            }
+            MetricsRegistry.register(idFilter);
+
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "book-id-filter-rebuild");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::rebuildIdFilter,
+                    ID_FILTER_REBUILD_MINUTES, ID_FILTER_REBUILD_MINUTES, TimeUnit.MINUTES);
+        } else {
+            this.idFilter = null;
+            this.scheduler = null;
+        }
+
+        boolean cacheEnabled = ApplicationProperties.getBoolean("books.cache.enabled", false);
+        if (tailChangeLog) {
+            this.cache = cacheEnabled ? new BookCache() : null;
+            this.changeLogPoller = new BookChangeLogPoller(new BookChangeLog(),
+                    this::onLoggedChange, this::onLoggedClear, this::reload);
+            changeLogPoller.start();
+            MetricsRegistry.register(changeLogPoller);
+            if (cache != null) {
+                MetricsRegistry.register(cache);
+            }
+        } else {
+            if (cacheEnabled) {
+                LOGGER.warn("books.cache.enabled requires repository.changeLog.enabled and the jdbc backend, " +
+                        "books are not cached");
+            }
+            this.cache = null;
+            this.changeLogPoller = null;
+        }
+    }
+
+    public void addChangeListener(BookChangeListener listener) {
+        changeListeners.add(listener);
+    }
 
     @Override
     public Book add(Book entity) throws SQLException {
-        return repository.save(entity);
+        Book savedBook = save(entity);
+        allBooksReads.forget(ALL_BOOKS);
+        if (idFilter != null) {
+            idFilter.add(savedBook.getId());
+        }
+        publish(BookChange.created(savedBook));
+        return savedBook;
     }
 
     @Override
     public Book get(String id) throws SQLException {
-        return repository.findOne(id);
+        if (idFilter != null && !idFilter.mightExist(id)) {
+            throw BookNotFoundException.forId(id);
+        }
+
+        boolean cached = isCaching();
+        if (cached) {
+            Book book = cache.get(id);
+            if (book != null) {
+                return book;
+            }
+        }
+
+        return bookReads.execute(id, () -> {
+            long generation = cached ? cache.generation() : 0;
+            Book book;
+            try {
+                book = repository.findOne(id);
+            } catch (BookNotFoundException e) {
+                if (idFilter != null) {
+                    idFilter.falsePositive();
+                }
+                throw e;
+            }
+            if (cached) {
+                cache.put(book, generation);
+            }
+            return book;
+        });
     }
 
     @Override
     public List<Book> getAll() throws SQLException {
-        return repository.findAll();
+        if (snapshotEnabled) {
+            return snapshot().books().stream().map(Book::new).collect(Collectors.toList());
+        }
+        return allBooksReads.execute(ALL_BOOKS, repository::findAll);
+    }
+
+    /**
+     * Answers from the cache what it can and looks the rest up with a single {@link Repository#findAllById} call.
+     */
+    @Override
+    public Map<String, Book> getAllById(List<String> ids) throws SQLException {
+        Map<String, Book> found = new HashMap<>();
+        Set<String> lookUp = new LinkedHashSet<>();
+
+        boolean cached = isCaching();
+        long generation = cached ? cache.generation() : 0;
+        for (String id : ids) {
+            if (found.containsKey(id) || (idFilter != null && !idFilter.mightExist(id))) {
+                continue;
+            }
+            Book book = cached ? cache.get(id) : null;
+            if (book != null) {
+                found.put(id, book);
+            } else {
+                lookUp.add(id);
+            }
+        }
+
+        if (!lookUp.isEmpty()) {
+            Map<String, Book> books = repository.findAllById(lookUp);
+            if (idFilter != null) {
+                for (int i = books.size(); i < lookUp.size(); i++) {
+                    idFilter.falsePositive();
+                }
+            }
+            for (Map.Entry<String, Book> entry : books.entrySet()) {
+                found.put(entry.getKey(), entry.getValue());
+                if (cached) {
+                    cache.put(entry.getValue(), generation);
+                }
+            }
+        }
+
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (String id : ids) {
+            Book book = found.get(id);
+            if (book != null) {
+                books.putIfAbsent(id, book);
+            }
+        }
+        return books;
     }
 
     @Override
     public Book update(Book entity) throws SQLException {
-        return repository.update(entity);
+        Book updatedBook = write(entity.getId(), () -> repository.update(entity), this::applyWritten);
+        forgetReads(updatedBook.getId());
+        if (cache != null) {
+            cache.evict(updatedBook.getId());
+        }
+        publish(BookChange.updated(updatedBook));
+        return updatedBook;
+    }
+
+    @Override
+    public Book patch(Book book, BookPatch patch, boolean ifUnchanged) throws SQLException {
+        // The book may be shared, e.g. with concurrent readers of the same id, and a patch failing validation
+        // must not leave anything changed
+        Book patched = new Book(book);
+        Set<String> changed = patch.applyTo(patched);
+        if (changed.isEmpty()) {
+            return book;
+        }
+
+        Book patchedBook;
+        if (ifUnchanged) {
+            Book expected = new Book(book);
+            try {
+                patchedBook = write(patched.getId(), () -> repository.update(patched, changed, expected),
+                        this::applyWritten);
+            } catch (BookModifiedException e) {
+                // Changed by somebody else, maybe bypassing this instance, so what it kept of the book is stale
+                forgetReads(patched.getId());
+                if (cache != null) {
+                    cache.evict(patched.getId());
+                }
+                refresh(patched.getId());
+                throw e;
+            }
+        } else {
+            patchedBook = write(patched.getId(), () -> repository.update(patched, changed), this::applyWritten);
+        }
+        forgetReads(patchedBook.getId());
+        if (cache != null) {
+            cache.evict(patchedBook.getId());
+        }
+        publish(BookChange.updated(patchedBook));
+        return patchedBook;
     }
 
     @Override
     public void delete(String id) throws SQLException {
-        repository.delete(id);
+        if (idFilter != null && !idFilter.mightExist(id)) {
+            return;
+        }
+        write(id, () -> {
+            repository.delete(id);
+            return id;
+        }, this::applyDeleted);
+        forgetReads(id);
+        if (cache != null) {
+            cache.evict(id);
+        }
+        publish(BookChange.deleted(id));
     }
 
     @Override
     public void deleteAll() throws SQLException {
-        repository.deleteAll();
+        catalogLock.writeLock().lock();
+        try {
+            repository.deleteAll();
+            applyToSnapshot(CatalogSnapshot::cleared);
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        bookReads.forgetAll();
+        allBooksReads.forgetAll();
+        clearStats();
+        clearCache();
+        if (idFilter != null) {
+            idFilter.rebuild(repository);
+        }
+        publish(BookChange.cleared());
+    }
+
+    /**
+     * @return the current catalog, {@code null} unless {@code books.snapshot.enabled}
+     */
+    @Override
+    public CatalogSnapshot snapshot() throws SQLException {
+        if (!snapshotEnabled) {
+            return null;
+        }
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        // Writes running meanwhile would find no snapshot to apply to, yet might be missing from the read
+        catalogLock.writeLock().lock();
+        try {
+            synchronized (snapshotLock) {
+                if (snapshot == null) {
+                    publishSnapshot(CatalogSnapshot.of(repository.findAll(), snapshotVersion + 1));
+                    LOGGER.debug("Loaded catalog snapshot of {} books", snapshot.size());
+                }
+                return snapshot;
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public BookStats stats() throws SQLException {
+        CatalogStats current = stats;
+        return current != null ? current.toBookStats() : recomputeStats();
+    }
+
+    /**
+     * Counts all books again while the writes keep updating the counts being replaced as well as the new ones.
+     */
+    @Override
+    public BookStats recomputeStats() throws SQLException {
+        synchronized (statsRebuildLock) {
+            CatalogStats rebuilt;
+            long clears;
+            do {
+                clears = statsClears.get();
+                rebuilt = CatalogStats.rebuilding();
+                rebuildingStats = rebuilt;
+                try {
+                    for (Book book : repository.findAll()) {
+                        rebuilt.recordIfAbsent(book);
+                    }
+                    if (statsClears.get() == clears) {
+                        // Writes recorded into both until rebuildingStats is reset count once, recording is idempotent
+                        stats = rebuilt;
+                    }
+                } finally {
+                    rebuildingStats = null;
+                }
+            } while (statsClears.get() != clears);
+            rebuilt.rebuilt();
+            LOGGER.debug("Recomputed catalog statistics");
+            return rebuilt.toBookStats();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        MetricsRegistry.unregister(singleFlightMetrics);
+        MetricsRegistry.unregister(snapshotMetrics);
+        if (changeLogPoller != null) {
+            changeLogPoller.close();
+            MetricsRegistry.unregister(changeLogPoller);
+            if (cache != null) {
+                MetricsRegistry.unregister(cache);
+            }
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            MetricsRegistry.unregister(idFilter);
+        }
+        if (repository instanceof Closeable) {
+            try {
+                ((Closeable) repository).close();
+            } catch (IOException e) {
+                LOGGER.error("Failed to close repository:", e);
+            }
+        }
+    }
+
+    private void publish(BookChange change) {
+        for (BookChangeListener listener : changeListeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                // the write itself succeeded
+                LOGGER.error("Book change listener failed:", e);
+            }
+        }
+    }
+
+    /**
+     * Saves a new book and applies it to the snapshot and the statistics while holding the lock of its id. The id is
+     * only known once saved, and a write of the book may already have been applied by then: if any write of a book
+     * with the same lock ran meanwhile, the saved book is read again.
+     */
+    private Book save(Book entity) throws SQLException {
+        long[] writesBefore = new long[BOOK_LOCKS];
+        for (int i = 0; i < BOOK_LOCKS; i++) {
+            writesBefore[i] = bookLockWrites.get(i);
+        }
+
+        catalogLock.readLock().lock();
+        try {
+            Book savedBook = repository.save(entity);
+
+            String id = savedBook.getId();
+            int lock = lockIndex(id);
+            synchronized (bookLocks[lock]) {
+                Book current = savedBook;
+                if (bookLockWrites.get(lock) != writesBefore[lock]) {
+                    current = findOrNull(id);
+                }
+                if (current != null) {
+                    applyWritten(current);
+                } else {
+                    applyDeleted(id);
+                }
+            }
+            return savedBook;
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a repository write of one book and applies it to the snapshot and the statistics while holding the lock
+     * of its id, so that they see the writes of a book in the order the repository did. Only applying the change to
+     * the snapshot holds the snapshot lock, writes of different books reach the repository in parallel: their
+     * changes to the snapshot commute.
+     */
+    private <T> T write(String id, SingleFlight.Call<T> write, Consumer<T> apply) throws SQLException {
+        int lock = lockIndex(id);
+        catalogLock.readLock().lock();
+        try {
+            synchronized (bookLocks[lock]) {
+                T result = write.call();
+                apply.accept(result);
+                bookLockWrites.incrementAndGet(lock);
+                return result;
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    private int lockIndex(String id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % BOOK_LOCKS;
+    }
+
+    private Book findOrNull(String id) throws SQLException {
+        try {
+            return repository.findOne(id);
+        } catch (BookNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void applyWritten(Book book) {
+        applyToSnapshot(current -> current.with(book));
+        recordStats(book);
+    }
+
+    private void applyDeleted(String id) {
+        applyToSnapshot(current -> current.without(id));
+        removeStats(id);
+    }
+
+    private void applyToSnapshot(UnaryOperator<CatalogSnapshot> change) {
+        if (snapshotEnabled) {
+            synchronized (snapshotLock) {
+                if (snapshot != null) {
+                    publishSnapshot(change.apply(snapshot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Called with the snapshot lock held. A single volatile write, readers never wait for it.
+     */
+    private void publishSnapshot(CatalogSnapshot next) {
+        snapshot = next;
+        if (next != null) {
+            snapshotVersion = next.version();
+        }
+    }
+
+    /**
+     * Reads a book another instance changed into the snapshot. If that fails the snapshot is dropped, to be
+     * loaded again on the next read.
+     */
+    private void refresh(String id) {
+        if (snapshot == null && stats == null) {
+            return;
+        }
+        try {
+            write(id, () -> findOrNull(id), book -> {
+                if (book == null) {
+                    applyDeleted(id);
+                } else {
+                    applyWritten(book);
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Dropping the catalog snapshot and statistics, failed to read changed book '{}': {}",
+                    id, e.toString());
+            synchronized (snapshotLock) {
+                publishSnapshot(null);
+            }
+            stats = null;
+        }
+    }
+
+    private void recordStats(Book book) {
+        CatalogStats current = stats;
+        if (current != null) {
+            current.record(book);
+        }
+        CatalogStats rebuilding = rebuildingStats;
+        if (rebuilding != null) {
+            rebuilding.record(book);
+        }
+    }
+
+    private void removeStats(String id) {
+        CatalogStats current = stats;
+        if (current != null) {
+            current.remove(id);
+        }
+        CatalogStats rebuilding = rebuildingStats;
+        if (rebuilding != null) {
+            rebuilding.remove(id);
+        }
+    }
+
+    /**
+     * Starts counting from zero, a rebuild running meanwhile reads all books again.
+     */
+    private void clearStats() {
+        statsClears.incrementAndGet();
+        if (stats != null) {
+            stats = new CatalogStats();
+        }
+    }
+
+    private void collectSnapshotMetrics(PrometheusWriter writer) {
+        CatalogSnapshot current = snapshot;
+        writer.family("book_snapshot_version", "gauge", "Version of the catalog snapshot, 0 before it is loaded.");
+        writer.sample("book_snapshot_version", current == null ? 0 : current.version());
+        writer.family("book_snapshot_books", "gauge", "Books in the catalog snapshot.");
+        writer.sample("book_snapshot_books", current == null ? 0 : current.size());
+    }
+
+    /**
+     * Reads that started before a write may have missed it, later reads must not join them.
+     */
+    private void forgetReads(String id) {
+        bookReads.forget(id);
+        allBooksReads.forget(ALL_BOOKS);
+    }
+
+    private void collectSingleFlightMetrics(PrometheusWriter writer) {
+        writer.family("book_reads_total", "counter", "Repository reads of books, not counting the coalesced ones.");
+        writer.sample("book_reads_total", bookReads.calls(), "query", "findOne");
+        writer.sample("book_reads_total", allBooksReads.calls(), "query", "findAll");
+        writer.family("book_reads_coalesced_total", "counter",
+                "Reads of books that waited for the same read of a concurrent request instead.");
+        writer.sample("book_reads_coalesced_total", bookReads.coalesced(), "query", "findOne");
+        writer.sample("book_reads_coalesced_total", allBooksReads.coalesced(), "query", "findAll");
+        writer.family("book_reads_coalesced_timeouts_total", "counter",
+                "Coalesced reads of books that gave up waiting after books.singleFlight.timeoutMillis.");
+        writer.sample("book_reads_coalesced_timeouts_total", bookReads.timeouts(), "query", "findOne");
+        writer.sample("book_reads_coalesced_timeouts_total", allBooksReads.timeouts(), "query", "findAll");
+        writer.family("book_reads_coalesced_waiting", "gauge", "Reads of books waiting for a concurrent read now.");
+        writer.sample("book_reads_coalesced_waiting", bookReads.waiting(), "query", "findOne");
+        writer.sample("book_reads_coalesced_waiting", allBooksReads.waiting(), "query", "findAll");
+    }
+
+    /**
+     * @return {@code true} while {@link #get(String)} uses the cache, which needs a recent poll of the change log
+     */
+    boolean isCaching() {
+        return cache != null && changeLogPoller.isCurrent();
+    }
+
+    /**
+     * Called for every change in the change log, including the ones made by this instance.
+     */
+    private void onLoggedChange(String id) {
+        if (cache != null) {
+            cache.evict(id);
+        }
+        // Books another instance changed are read again, the books this instance changed as well
+        if (snapshotEnabled || stats != null) {
+            refresh(id);
+        }
+        // Lets lookups of books created by other instances through before the next rebuild
+        if (idFilter != null) {
+            idFilter.add(id);
+        }
+    }
+
+    private void onLoggedClear() {
+        clearCache();
+        clearStats();
+        if (snapshotEnabled) {
+            synchronized (snapshotLock) {
+                if (snapshot != null) {
+                    publishSnapshot(snapshot.cleared());
+                }
+            }
+        }
+    }
+
+    private void reload() {
+        clearCache();
+        stats = null;
+        if (snapshotEnabled) {
+            synchronized (snapshotLock) {
+                publishSnapshot(null);
+            }
+        }
+        if (idFilter != null) {
+            rebuildIdFilter();
+        }
+    }
+
+    private void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void rebuildIdFilter() {
+        try {
+            idFilter.rebuild(repository);
+            LOGGER.debug("Rebuilt book id filter");
+        } catch (SQLException | RuntimeException e) {
+            // until a rebuild succeeds the filter lets every lookup through
+            LOGGER.error("Failed to rebuild book id filter:", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+package com.programmingskillz.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.BookXml;
+import com.programmingskillz.util.Mappers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * An immutable version of all books, ordered by id.
+ * <p>
+ * The books are kept in chunks of at most {@code 2 * CHUNK_SIZE}. A change copies the affected chunk and the array
+ * of chunk references and shares all other chunks with the previous version, so a write costs about
+ * {@code CHUNK_SIZE + size / CHUNK_SIZE} reference copies instead of copying the catalog. The JSON and XML forms
+ * are serialized the first time they are asked for and kept with the version, the XML by {@link BookXml} like
+ * {@code GET /books} writes it otherwise.
+ * <p>
+ * The books are owned by the snapshot and must not be modified.
+ *
+ * @author Durim Kryeziu
+ */
+public final class CatalogSnapshot {
+
+    private static final int CHUNK_SIZE = 64;
+
+    private static final TypeReference<List<Book>> BOOK_LIST = new TypeReference<List<Book>>() {
+    };
+
+    private final Book[][] chunks;
+    private final int size;
+    private final long version;
+
+    // Computed at most a few times per version by concurrent first readers, all with the same result
+    private volatile byte[] json;
+    private volatile byte[] xml;
+
+    private CatalogSnapshot(Book[][] chunks, int size, long version) {
+        this.chunks = chunks;
+        this.size = size;
+        this.version = version;
+    }
+
+    public static CatalogSnapshot of(Collection<Book> books, long version) {
+        Map<String, Book> byId = new TreeMap<>();
+        for (Book book : books) {
+            byId.put(book.getId(), new Book(book));
+        }
+
+        Book[] sorted = byId.values().toArray(new Book[0]);
+        Book[][] chunks = new Book[(sorted.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(sorted, i * CHUNK_SIZE, Math.min(sorted.length, (i + 1) * CHUNK_SIZE));
+        }
+        return new CatalogSnapshot(chunks, sorted.length, version);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the books in id order, not to be modified
+     */
+    public List<Book> books() {
+        List<Book> books = new ArrayList<>(size);
+        for (Book[] chunk : chunks) {
+            books.addAll(Arrays.asList(chunk));
+        }
+        return Collections.unmodifiableList(books);
+    }
+
+    /**
+     * @return the next version, with {@code book} added or replacing the book with its id
+     */
+    public CatalogSnapshot with(Book book) {
+        Book copy = new Book(book);
+        if (chunks.length == 0) {
+            return new CatalogSnapshot(new Book[][]{{copy}}, 1, version + 1);
+        }
+
+        int chunkIndex = chunkIndex(book.getId());
+        Book[] chunk = chunks[chunkIndex];
+        int index = indexIn(chunk, book.getId());
+
+        if (index >= 0) {
+            Book[] replaced = chunk.clone();
+            replaced[index] = copy;
+            return replaceChunk(chunkIndex, replaced, size);
+        }
+
+        int insertAt = -index - 1;
+        Book[] grown = new Book[chunk.length + 1];
+        System.arraycopy(chunk, 0, grown, 0, insertAt);
+        grown[insertAt] = copy;
+        System.arraycopy(chunk, insertAt, grown, insertAt + 1, chunk.length - insertAt);
+        if (grown.length <= 2 * CHUNK_SIZE) {
+            return replaceChunk(chunkIndex, grown, size + 1);
+        }
+
+        Book[][] split = new Book[chunks.length + 1][];
+        System.arraycopy(chunks, 0, split, 0, chunkIndex);
+        split[chunkIndex] = Arrays.copyOfRange(grown, 0, grown.length / 2);
+        split[chunkIndex + 1] = Arrays.copyOfRange(grown, grown.length / 2, grown.length);
+        System.arraycopy(chunks, chunkIndex + 1, split, chunkIndex + 2, chunks.length - chunkIndex - 1);
+        return new CatalogSnapshot(split, size + 1, version + 1);
+    }
+
+    /**
+     * @return the next version without the book with the given id, this version if there is none
+     */
+    public CatalogSnapshot without(String id) {
+        if (chunks.length == 0) {
+            return this;
+        }
+        int chunkIndex = chunkIndex(id);
+        Book[] chunk = chunks[chunkIndex];
+        int index = indexIn(chunk, id);
+        if (index < 0) {
+            return this;
+        }
+
+        if (chunk.length > 1) {
+            Book[] shrunk = new Book[chunk.length - 1];
+            System.arraycopy(chunk, 0, shrunk, 0, index);
+            System.arraycopy(chunk, index + 1, shrunk, index, chunk.length - index - 1);
+            return replaceChunk(chunkIndex, shrunk, size - 1);
+        }
+
+        Book[][] removed = new Book[chunks.length - 1][];
+        System.arraycopy(chunks, 0, removed, 0, chunkIndex);
+        System.arraycopy(chunks, chunkIndex + 1, removed, chunkIndex, chunks.length - chunkIndex - 1);
+        return new CatalogSnapshot(removed, size - 1, version + 1);
+    }
+
+    /**
+     * @return the next version, without any books
+     */
+    public CatalogSnapshot cleared() {
+        return new CatalogSnapshot(new Book[0][], 0, version + 1);
+    }
+
+    public byte[] json() {
+        byte[] serialized = json;
+        if (serialized == null) {
+            serialized = serialize(Mappers.json());
+            json = serialized;
+        }
+        return serialized;
+    }
+
+    public byte[] xml() {
+        byte[] serialized = xml;
+        if (serialized == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size * 256);
+            try {
+                BookXml.write(books(), out, Integer.MAX_VALUE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            serialized = out.toByteArray();
+            xml = serialized;
+        }
+        return serialized;
+    }
+
+    private byte[] serialize(ObjectMapper mapper) {
+        try {
+            // The type the JAX-RS provider writes GET /books with
+            return mapper.writerFor(BOOK_LIST).writeValueAsBytes(books());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CatalogSnapshot replaceChunk(int chunkIndex, Book[] chunk, int newSize) {
+        Book[][] replaced = chunks.clone();
+        replaced[chunkIndex] = chunk;
+        return new CatalogSnapshot(replaced, newSize, version + 1);
+    }
+
+    /**
+     * @return the last chunk starting at or before {@code id}, the first chunk if there is none
+     */
+    private int chunkIndex(String id) {
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunks[middle][0].getId().compareTo(id) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of {@code id} in {@code chunk}, {@code -(insertion point) - 1} if it is not there
+     */
+    private static int indexIn(Book[] chunk, String id) {
+        int low = 0;
+        int high = chunk.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = chunk[middle].getId().compareTo(id);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,166 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.domain.BookStats;
+
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of books by author, publisher, publishing year and page range, kept up to date by the writes instead of
+ * being computed from all books. Rendering them costs the number of distinct values, not the number of books.
+ * <p>
+ * What every book contributes is kept by id, so that recording a changed book takes back what its previous
+ * version added and recording or removing a book twice counts it once. While the counts are
+ * {@link #recordIfAbsent(Book) rebuilt} from a read of all books, removals leave a tombstone behind so that the
+ * read, possibly older than the removal, cannot bring the book back.
+ *
+ * @author Durim Kryeziu
+ */
+public class CatalogStats {
+
+    // Upper bounds of the page ranges, the last range has none
+    private static final int[] PAGE_RANGES = {100, 200, 300, 400, 500, 750, 1000};
+
+    private final ConcurrentHashMap<String, Contribution> contributions = new ConcurrentHashMap<>();
+    private final LongAdder books = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> authors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> publishers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, LongAdder> publishedYears = new ConcurrentHashMap<>();
+    private final LongAdder[] pages = new LongAdder[PAGE_RANGES.length + 1];
+
+    private volatile boolean rebuilding;
+
+    public CatalogStats() {
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return empty counts that keep tombstones until {@link #rebuilt()}
+     */
+    public static CatalogStats rebuilding() {
+        CatalogStats stats = new CatalogStats();
+        stats.rebuilding = true;
+        return stats;
+    }
+
+    public void record(Book book) {
+        Contribution contribution = Contribution.of(book);
+        add(contributions.put(book.getId(), contribution), -1);
+        add(contribution, 1);
+    }
+
+    /**
+     * Records a book read while rebuilding, unless a write recorded or removed it meanwhile.
+     */
+    public void recordIfAbsent(Book book) {
+        Contribution contribution = Contribution.of(book);
+        if (contributions.putIfAbsent(book.getId(), contribution) == null) {
+            add(contribution, 1);
+        }
+    }
+
+    public void remove(String id) {
+        Contribution previous = rebuilding
+                ? contributions.put(id, Contribution.REMOVED)
+                : contributions.remove(id);
+        add(previous, -1);
+    }
+
+    /**
+     * Ends rebuilding and drops the tombstones.
+     */
+    public void rebuilt() {
+        rebuilding = false;
+        contributions.values().removeIf(contribution -> contribution == Contribution.REMOVED);
+    }
+
+    public BookStats toBookStats() {
+        BookStats stats = new BookStats();
+        stats.setBooks(books.sum());
+        stats.setAuthors(counts(authors));
+        stats.setPublishers(counts(publishers));
+        stats.setPublishedYears(counts(publishedYears));
+
+        List<BookStats.Count> pageCounts = new ArrayList<>();
+        for (int i = 0; i < pages.length; i++) {
+            long count = pages[i].sum();
+            if (count > 0) {
+                pageCounts.add(new BookStats.Count(pageRange(i), count));
+            }
+        }
+        stats.setPages(pageCounts);
+        return stats;
+    }
+
+    private void add(Contribution contribution, int delta) {
+        if (contribution == null || contribution == Contribution.REMOVED) {
+            return;
+        }
+        books.add(delta);
+        increment(authors, contribution.author, delta);
+        increment(publishers, contribution.publisher, delta);
+        increment(publishedYears, contribution.publishedYear, delta);
+        pages[contribution.pageRange].add(delta);
+    }
+
+    private static <K> void increment(ConcurrentHashMap<K, LongAdder> counts, K key, int delta) {
+        if (key != null) {
+            // Values that drop to zero stay until the next rebuild, rendering skips them
+            counts.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        }
+    }
+
+    private static <K extends Comparable<K>> List<BookStats.Count> counts(Map<K, LongAdder> counts) {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(counts.size());
+        for (Map.Entry<K, LongAdder> entry : counts.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), count));
+            }
+        }
+        entries.sort(Map.Entry.<K, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        List<BookStats.Count> result = new ArrayList<>(entries.size());
+        for (Map.Entry<K, Long> entry : entries) {
+            result.add(new BookStats.Count(entry.getKey().toString(), entry.getValue()));
+        }
+        return result;
+    }
+
+    private static String pageRange(int range) {
+        int from = range == 0 ? 0 : PAGE_RANGES[range - 1];
+        return range == PAGE_RANGES.length ? from + "+" : from + "-" + (PAGE_RANGES[range] - 1);
+    }
+
+    private static final class Contribution {
+
+        static final Contribution REMOVED = new Contribution(null, null, null, 0);
+
+        final String author;
+        final String publisher;
+        final Integer publishedYear;
+        final int pageRange;
+
+        private Contribution(String author, String publisher, Integer publishedYear, int pageRange) {
+            this.author = author;
+            this.publisher = publisher;
+            this.publishedYear = publishedYear;
+            this.pageRange = pageRange;
+        }
+
+        static Contribution of(Book book) {
+            int pages = book.getPages() == null ? 0 : book.getPages();
+            int range = 0;
+            while (range < PAGE_RANGES.length && pages >= PAGE_RANGES[range]) {
+                range++;
+            }
+            Integer year = book.getPublished() == null ? null : book.getPublished().atZone(ZoneOffset.UTC).getYear();
+            return new Contribution(book.getAuthor(), book.getPublisher(), year, range);
+        }
+    }
+}
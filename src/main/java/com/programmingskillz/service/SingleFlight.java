@@ -0,0 +1,121 @@
+package com.programmingskillz.service;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call, callers arriving while it runs wait
+ * up to {@code timeoutMillis} for its result or exception instead of running it again.
+ * <p>
+ * Waiters get copies of the result made by {@code share}, so a caller modifying what it got cannot affect the
+ * others.
+ * {@link #forget(Object)} makes later callers start a new call, e.g. after a write the running one may have missed.
+ *
+ * @author Durim Kryeziu
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> share;
+    private final long timeoutMillis;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public SingleFlight(UnaryOperator<V> share, long timeoutMillis) {
+        this.share = share;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @throws SQLTimeoutException if the call of another caller did not complete within {@code timeoutMillis}
+     */
+    public V execute(K key, Call<V> call) throws SQLException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = flights.putIfAbsent(key, flight);
+        if (running == null) {
+            calls.increment();
+            try {
+                V value = call.call();
+                // Waiters share a snapshot, the caller is free to modify what it got
+                flight.complete(share.apply(value));
+                return value;
+            } catch (Throwable e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, flight);
+            }
+        }
+
+        coalesced.increment();
+        waiting.incrementAndGet();
+        try {
+            return share.apply(running.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new SQLTimeoutException("Timed out after " + timeoutMillis + " ms waiting for a concurrent read");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a concurrent read", e);
+        } catch (ExecutionException e) {
+            // The same exception the caller running the call got
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void forget(K key) {
+        flights.remove(key);
+    }
+
+    public void forgetAll() {
+        flights.clear();
+    }
+
+    /**
+     * @return calls that ran, not counting the coalesced ones
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+
+    @FunctionalInterface
+    public interface Call<V> {
+
+        V call() throws SQLException;
+    }
+}
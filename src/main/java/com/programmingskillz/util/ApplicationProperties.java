@@ -0,0 +1,58 @@
+package com.programmingskillz.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Deploy-time settings read from {@code application.properties}.
+ * <p>
+ * Any key can be overridden with a JVM system property of the same name, e.g.
+ * {@code -Drepository.slowQueryThresholdMillis=50}. Values are looked up on every call, callers on
+ * hot paths should read them once and keep them in a field.
+ *
+ * @author Durim Kryeziu
+ */
+public class ApplicationProperties {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationProperties.class);
+
+    private static final Properties PROPERTIES = load();
+
+    public static String getString(String key, String defaultValue) {
+        return System.getProperty(key, PROPERTIES.getProperty(key, defaultValue)).trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(getString(key, Integer.toString(defaultValue)));
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        return Long.parseLong(getString(key, Long.toString(defaultValue)));
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        return Double.parseDouble(getString(key, Double.toString(defaultValue)));
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, Boolean.toString(defaultValue)));
+    }
+
+    private static Properties load() {
+        Properties prop = new Properties();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        try (InputStream inputStream = loader.getResourceAsStream("application.properties")) {
+            if (inputStream != null) {
+                prop.load(inputStream);
+            }
+        } catch (IOException e) {
+            LOGGER.error("IOException:", e);
+        }
+        return prop;
+    }
+}
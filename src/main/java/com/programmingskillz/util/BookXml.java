@@ -0,0 +1,121 @@
+package com.programmingskillz.util;
+
+import com.programmingskillz.domain.Book;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes books as {@code <books><book>...</book></books>} with a StAX {@link XMLStreamWriter}, one book at a time.
+ * A book is written like the {@link Mappers#xml() XML mapper} writes it: the {@code book} element of its
+ * {@code @JacksonXmlRootElement}, the properties in {@code @JsonPropertyOrder} and empty elements for nulls.
+ *
+ * @author Durim Kryeziu
+ */
+public class BookXml {
+
+    // The Woodstox factory of the XML mapper, escaping like it does
+    private static final XMLOutputFactory OUTPUT_FACTORY = Mappers.xml().getFactory().getXMLOutputFactory();
+
+    private BookXml() {
+    }
+
+    /**
+     * Flushes to {@code out} after every {@code flushEvery} books, so that a long list reaches the client while it
+     * is being written instead of piling up in the writer.
+     */
+    public static void write(Iterable<Book> books, OutputStream out, int flushEvery) throws IOException {
+        try (Writer writer = writer(out)) {
+            int pending = 0;
+            for (Book book : books) {
+                writer.write(book);
+                if (++pending == flushEvery) {
+                    writer.flush();
+                    pending = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a writer that has started the {@code books} element on {@code out} and ends it when closed
+     */
+    public static Writer writer(OutputStream out) throws IOException {
+        try {
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartElement("books");
+            return new Writer(writer);
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write books as XML", e);
+        }
+    }
+
+    /**
+     * Writes books one call at a time, for callers that produce the output in steps.
+     */
+    public static final class Writer implements Closeable {
+
+        private final XMLStreamWriter writer;
+
+        private Writer(XMLStreamWriter writer) {
+            this.writer = writer;
+        }
+
+        public void write(Book book) throws IOException {
+            try {
+                writeBook(writer, book);
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to write books as XML", e);
+            }
+        }
+
+        public void flush() throws IOException {
+            try {
+                writer.flush();
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to write books as XML", e);
+            }
+        }
+
+        /**
+         * Ends the {@code books} element, does not close the stream underneath.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.writeEndElement();
+                writer.close();
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to write books as XML", e);
+            }
+        }
+    }
+
+    private static void writeBook(XMLStreamWriter writer, Book book) throws XMLStreamException {
+        writer.writeStartElement("book");
+        writeElement(writer, "id", book.getId());
+        writeElement(writer, "title", book.getTitle());
+        writeElement(writer, "author", book.getAuthor());
+        writeElement(writer, "description", book.getDescription());
+        writeElement(writer, "isbn", book.getIsbn());
+        writeElement(writer, "pages", book.getPages());
+        writeElement(writer, "publisher", book.getPublisher());
+        writeElement(writer, "published", book.getPublished());
+        writer.writeEndElement();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+        if (value == null) {
+            writer.writeEmptyElement(name);
+            return;
+        }
+        writer.writeStartElement(name);
+        // Instant.toString() is ISO-8601 like the JavaTimeModule writes it
+        writer.writeCharacters(value.toString());
+        writer.writeEndElement();
+    }
+}
@@ -0,0 +1,74 @@
+package com.programmingskillz.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the JAX-RS component list and the Swagger spec generated at build time by
+ * {@code com.programmingskillz.build.ComponentIndexGenerator}.
+ *
+ * @author Durim Kryeziu
+ */
+public class ComponentIndex {
+
+    public static final String COMPONENTS = "META-INF/components.list";
+    public static final String SWAGGER = "META-INF/swagger.json";
+
+    /**
+     * @return the resource and provider classes, or {@code null} if there is no index, e.g. when the classes
+     * were compiled by an IDE instead of Maven
+     */
+    public static Set<Class<?>> components() throws IOException {
+        InputStream inputStream = loader().getResourceAsStream(COMPONENTS);
+        if (inputStream == null) {
+            return null;
+        }
+
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    classes.add(Class.forName(line, false, loader()));
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Stale component index, class '" + line + "' does not exist", e);
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return the Swagger spec as UTF-8 JSON, or {@code null} if it was not generated
+     */
+    public static byte[] swagger() throws IOException {
+        InputStream inputStream = loader().getResourceAsStream(SWAGGER);
+        if (inputStream == null) {
+            return null;
+        }
+
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static ClassLoader loader() {
+        return Thread.currentThread().getContextClassLoader();
+    }
+}
@@ -10,4 +10,6 @@ public class CustomMediaType {
     public static final String APPLICATION_JSON = MediaType.APPLICATION_JSON + ";qs=1";
 
     public static final String APPLICATION_XML = MediaType.APPLICATION_XML + ";qs=0.5";
+
+    public static final String APPLICATION_MERGE_PATCH_JSON = "application/merge-patch+json";
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.programmingskillz.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * The JSON and XML mappers shared by the JAX-RS providers and the startup warm-up, so that the serializers
+ * built while warming up are the ones used to answer requests.
+ *
+ * @author Durim Kryeziu
+ */
+public class Mappers {
+
+    private static final ObjectMapper JSON = createJson();
+    private static final XmlMapper XML = createXml();
+
+    public static ObjectMapper json() {
+        return JSON;
+    }
+
+    public static XmlMapper xml() {
+        return XML;
+    }
+
+    private static ObjectMapper createJson() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.registerModule(new JavaTimeModule());
+        return objectMapper;
+    }
+
+    private static XmlMapper createXml() {
+        XmlMapper xmlMapper = new XmlMapper();
+        xmlMapper.registerModule(new JavaTimeModule());
+        xmlMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return xmlMapper;
+    }
+}
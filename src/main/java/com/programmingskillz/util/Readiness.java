@@ -0,0 +1,44 @@
+package com.programmingskillz.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Whether this instance should receive traffic, reported by {@code GET /health/ready}.
+ * <p>
+ * The application starts out not ready and becomes ready once the schema is applied, the connection pool
+ * is filled and the warm-up has finished. It goes back to not ready when it is being shut down.
+ *
+ * @author Durim Kryeziu
+ */
+public class Readiness {
+
+    private static final String STARTING = "starting";
+
+    private static final AtomicReference<String> REASON = new AtomicReference<>(STARTING);
+
+    public static boolean isReady() {
+        return REASON.get() == null;
+    }
+
+    /**
+     * @return why the application is not ready, or {@code null} if it is
+     */
+    public static String getReason() {
+        return REASON.get();
+    }
+
+    public static void starting() {
+        REASON.set(STARTING);
+    }
+
+    /**
+     * Only takes effect while starting, a warm-up finishing after shutdown began must not report ready.
+     */
+    public static boolean ready() {
+        return REASON.compareAndSet(STARTING, null);
+    }
+
+    public static void notReady(String why) {
+        REASON.set(why);
+    }
+}
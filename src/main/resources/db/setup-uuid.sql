@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS books
+(
+    id UUID PRIMARY KEY,
+    title VARCHAR(500) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    description TEXT,
+    isbn VARCHAR(13) NOT NULL,
+    pages SMALLINT NOT NULL,
+    publisher VARCHAR(255),
+    published DATE
+);
+
+CREATE TABLE IF NOT EXISTS book_changes
+(
+    version BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id UUID,
+    changed TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS book_changes_changed ON book_changes (changed);
@@ -1,4 +1,4 @@
-CREATE TABLE books
+CREATE TABLE IF NOT EXISTS books
 (
     id CHAR(36) PRIMARY KEY,
     title VARCHAR(500) NOT NULL,
@@ -8,4 +8,13 @@ CREATE TABLE books
     pages SMALLINT NOT NULL,
     publisher VARCHAR(255),
     published DATE
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS book_changes
+(
+    version BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id CHAR(36),
+    changed TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS book_changes_changed ON book_changes (changed);
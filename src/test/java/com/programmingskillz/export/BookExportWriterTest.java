@@ -0,0 +1,149 @@
+package com.programmingskillz.export;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.BookXml;
+import com.programmingskillz.util.Mappers;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class BookExportWriterTest {
+
+    @Test
+    public void testChunksAddUpToWhatTheProvidersWrite() throws Exception {
+        List<Book> books = books(25);
+        TypeReference<List<Book>> bookList = new TypeReference<List<Book>>() {
+        };
+
+        assertArrayEquals(Mappers.json().writerFor(bookList).writeValueAsBytes(books),
+                drain(BookExport.json(books, 10)));
+        assertArrayEquals(Mappers.json().writerFor(bookList).writeValueAsBytes(Collections.emptyList()),
+                drain(BookExport.json(Collections.emptyList(), 10)));
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        BookXml.write(books, xml, 1);
+        assertArrayEquals(xml.toByteArray(), drain(BookExport.xml(books, 10)));
+    }
+
+    @Test
+    public void testWritesOnlyWhileTheOutputIsReady() throws Exception {
+        List<Book> books = books(25);
+        AtomicInteger completed = new AtomicInteger();
+        AsyncContext async = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AsyncContext.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("complete")) {
+                        completed.incrementAndGet();
+                    }
+                    return null;
+                });
+        FakeOutputStream out = new FakeOutputStream();
+        AtomicInteger done = new AtomicInteger();
+        BookExportWriter writer = new BookExportWriter(async, out, BookExport.json(books, 10), done::incrementAndGet);
+
+        // The client can take one chunk, then the socket buffer is full
+        out.writesUntilBlocked = 1;
+        writer.onWritePossible();
+        assertEquals(1, out.writes);
+        assertEquals(0, completed.get());
+
+        out.writesUntilBlocked = 10;
+        writer.onWritePossible();
+        assertEquals(3, out.writes);
+        assertEquals(1, completed.get());
+        assertArrayEquals(drain(BookExport.json(books, 10)), out.bytes.toByteArray());
+
+        writer.onComplete(null);
+        assertEquals(1, done.get());
+    }
+
+    @Test
+    public void testCompletesOnceWhenTheWriteAndTheAsyncListenerBothFail() throws Exception {
+        AtomicInteger completed = new AtomicInteger();
+        AsyncContext async = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AsyncContext.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("complete") && completed.incrementAndGet() > 1) {
+                        throw new IllegalStateException("Already completed");
+                    }
+                    return method.getName().equals("getTimeout") ? 0L : null;
+                });
+        FakeOutputStream out = new FakeOutputStream();
+        BookExportWriter writer = new BookExportWriter(async, out, BookExport.json(books(25), 10), () -> {
+        });
+
+        writer.onError(new IOException("Broken pipe"));
+        writer.onTimeout(null);
+        writer.onError(new AsyncEvent(async, new IOException("Broken pipe")));
+        assertEquals(1, completed.get());
+
+        out.writesUntilBlocked = 10;
+        writer.onWritePossible();
+        assertEquals(0, out.writes);
+    }
+
+    private static byte[] drain(BookExport export) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] chunk = export.next(); chunk != null; chunk = export.next()) {
+            out.write(chunk);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setId(String.format("%036d", i));
+            book.setTitle("Title " + i);
+            book.setAuthor("Joshua Bloch");
+            book.setPages(346);
+            book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static final class FakeOutputStream extends ServletOutputStream {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int writesUntilBlocked;
+        int writes;
+
+        @Override
+        public boolean isReady() {
+            return writesUntilBlocked > 0;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b) {
+            bytes.write(b, 0, b.length);
+            writes++;
+            writesUntilBlocked--;
+        }
+    }
+}
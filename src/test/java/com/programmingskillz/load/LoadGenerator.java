@@ -0,0 +1,236 @@
+package com.programmingskillz.load;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.load.Workload.Operation;
+import com.programmingskillz.metrics.Histogram;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: requests are started on a fixed schedule derived from the target rate, whether or
+ * not earlier requests have completed. Latency is measured from the time a request was scheduled to start,
+ * not from when a worker got around to sending it, so time spent queued behind slow requests is counted
+ * instead of hidden (coordinated omission). Requests that have not completed a minute after the run count as
+ * failed, with the latency they had reached by then.
+ *
+ * @author Durim Kryeziu
+ */
+class LoadGenerator {
+
+    private final WebTarget books;
+    private final String authHeaderValue;
+    private final List<String> ids;
+    private final Queue<String> created = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param ids existing books read and updated by the workloads, never deleted
+     */
+    LoadGenerator(WebTarget books, String authHeaderValue, List<String> ids) {
+        this.books = books;
+        this.authHeaderValue = authHeaderValue;
+        this.ids = ids;
+    }
+
+    Result run(Workload workload, double requestsPerSecond, long durationMillis, int threads)
+            throws InterruptedException {
+
+        Result result = new Result();
+        Set<Request> pending = ConcurrentHashMap.newKeySet();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        Random random = new Random();
+
+        try {
+            for (long i = 0; ; i++) {
+                long intendedStart = start + i * intervalNanos;
+                if (intendedStart >= end) {
+                    break;
+                }
+                long delay = intendedStart - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+
+                Request request = new Request(workload.next(random), intendedStart);
+                pending.add(request);
+                workers.execute(() -> {
+                    boolean ok;
+                    try {
+                        ok = execute(request.operation);
+                    } catch (RuntimeException e) {
+                        ok = false;
+                    }
+                    request.complete(result, ok);
+                    pending.remove(request);
+                });
+            }
+        } finally {
+            workers.shutdown();
+        }
+        if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            workers.shutdownNow();
+            for (Request request : pending) {
+                request.complete(result, false);
+            }
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    String create() {
+        Response response = books.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .post(Entity.json(newBook()));
+        response.readEntity(byte[].class);
+        if (response.getStatus() != 201) {
+            throw new IllegalStateException("Could not create book: HTTP " + response.getStatus());
+        }
+        String path = response.getLocation().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private boolean execute(Operation operation) {
+        switch (operation) {
+            case GET_BOOK:
+                return consume(books.path(randomId()).request(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                        .get(), 200);
+            case LIST_BOOKS:
+                return consume(books.request(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                        .get(), 200);
+            case CREATE_BOOK:
+                created.add(create());
+                return true;
+            case UPDATE_BOOK:
+                Book book = newBook();
+                book.setId(randomId());
+                return consume(books.request(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                        .put(Entity.json(book)), 200);
+            case DELETE_BOOK:
+                String id = created.poll();
+                if (id == null) {
+                    // Nothing of our own to delete yet, creating keeps the table size stable over the run
+                    created.add(create());
+                    return true;
+                }
+                return consume(books.path(id).request()
+                        .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                        .delete(), 204);
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private static boolean consume(Response response, int expectedStatus) {
+        try {
+            if (response.hasEntity()) {
+                response.readEntity(byte[].class);
+            }
+            return response.getStatus() == expectedStatus;
+        } finally {
+            response.close();
+        }
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static Book newBook() {
+        Book book = new Book();
+        book.setTitle("Load Test " + ThreadLocalRandom.current().nextInt(1_000_000));
+        book.setAuthor("Load Harness");
+        book.setDescription("Book created by the load harness");
+        book.setIsbn("9780321356680");
+        book.setPages(300);
+        book.setPublisher("Load Harness");
+        book.setPublished(Instant.now());
+        return book;
+    }
+
+    private static final class Request {
+
+        final Operation operation;
+        final long intendedStart;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Request(Operation operation, long intendedStart) {
+            this.operation = operation;
+            this.intendedStart = intendedStart;
+        }
+
+        /**
+         * Records the request once, either when it finishes or when the run gives up waiting for it.
+         */
+        void complete(Result result, boolean ok) {
+            if (completed.compareAndSet(false, true)) {
+                result.record(operation, System.nanoTime() - intendedStart, ok);
+            }
+        }
+    }
+
+    static final class Stats {
+
+        final Histogram latencyMicros = new Histogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    static final class Result {
+
+        final Map<Operation, Stats> operations = new EnumMap<>(Operation.class);
+        final Stats total = new Stats();
+        long elapsedNanos;
+
+        Result() {
+            for (Operation operation : Operation.values()) {
+                operations.put(operation, new Stats());
+            }
+        }
+
+        void record(Operation operation, long latencyNanos, boolean ok) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+            Stats stats = operations.get(operation);
+            stats.latencyMicros.record(micros);
+            total.latencyMicros.record(micros);
+            if (!ok) {
+                stats.errors.increment();
+                total.errors.increment();
+            }
+        }
+
+        double achievedRate() {
+            return total.latencyMicros.getCount() / (elapsedNanos / 1e9);
+        }
+
+        double errorRate() {
+            long count = total.latencyMicros.getCount();
+            return count == 0 ? 0 : (double) total.errors.sum() / count;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.programmingskillz.load;
+
+import com.programmingskillz.SampleApplication;
+import com.programmingskillz.load.LoadGenerator.Result;
+import com.programmingskillz.load.LoadGenerator.Stats;
+import com.programmingskillz.load.Workload.Operation;
+import com.programmingskillz.providers.SampleObjectMapperProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.Test;
+
+import javax.ws.rs.core.Application;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Boots {@link SampleApplication} on Grizzly against a throwaway in-memory H2 database and drives open-loop
+ * workloads at it, failing when a latency percentile or the error rate exceeds its threshold.
+ * <p>
+ * Not part of the regular test run, use {@code mvn -Pload test}. Settings are system properties:
+ * <ul>
+ * <li>{@code load.workloads} comma separated {@link Workload}s, e.g. {@code read-heavy,mixed}</li>
+ * <li>{@code load.rate} target requests per second, {@code load.durationSeconds},
+ * {@code load.warmupSeconds}, {@code load.threads}, {@code load.preload} books created up front</li>
+ * <li>{@code load.maxP50Millis}, {@code load.maxP99Millis}, {@code load.maxP999Millis} and
+ * {@code load.maxErrorRate}, each can be overridden per workload, e.g. {@code load.large-listing.maxP99Millis}.
+ * Latency thresholds are off unless set, the error rate defaults to zero.</li>
+ * </ul>
+ *
+ * @author Durim Kryeziu
+ */
+public class LoadHarness extends JerseyTest {
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final String authHeaderValue = "Basic " + Base64.getEncoder()
+            .encodeToString("durimkryeziu:password".getBytes(StandardCharsets.UTF_8));
+
+    @Override
+    protected Application configure() {
+        System.setProperty("hikari.jdbcUrl", "jdbc:h2:mem:load-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        return new SampleApplication();
+    }
+
+    @Override
+    protected void configureClient(ClientConfig config) {
+        config.register(SampleObjectMapperProvider.class);
+        config.register(JacksonFeature.class);
+    }
+
+    @Test
+    public void run() throws Exception {
+        awaitReady();
+
+        int threads = Integer.getInteger("load.threads", 32);
+        LoadGenerator generator = new LoadGenerator(target("books"), authHeaderValue, preload(threads));
+
+        List<String> violations = new ArrayList<>();
+        for (String name : System.getProperty("load.workloads", "mixed").split(",")) {
+            Workload workload = Workload.of(name);
+            double rate = doubleProperty(workload, "rate", 200);
+
+            generator.run(workload, rate, 1000L * Integer.getInteger("load.warmupSeconds", 10), threads);
+            Result result = generator.run(workload, rate,
+                    1000L * Integer.getInteger("load.durationSeconds", 30), threads);
+
+            print(workload, rate, result);
+            violations.addAll(check(workload, result));
+        }
+
+        if (!violations.isEmpty()) {
+            fail("Load thresholds exceeded:\n  " + String.join("\n  ", violations));
+        }
+    }
+
+    private void awaitReady() throws InterruptedException {
+        for (int i = 0; i < 600; i++) {
+            if (target("health/ready").request().get().getStatus() == 200) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Application did not become ready within 60 seconds");
+    }
+
+    private List<String> preload(int threads) throws Exception {
+        int count = Integer.getInteger("load.preload", 1000);
+        LoadGenerator loader = new LoadGenerator(target("books"), authHeaderValue, Collections.emptyList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(loader::create));
+            }
+            List<String> ids = new ArrayList<>(count);
+            for (Future<String> future : futures) {
+                ids.add(future.get());
+            }
+            assertFalse("load.preload must be positive", ids.isEmpty());
+            return ids;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void print(Workload workload, double rate, Result result) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%nWorkload %s: target %.0f req/s, achieved %.1f req/s, error rate %.4f%n",
+                workload.propertyName(), rate, result.achievedRate(), result.errorRate()));
+        report.append(String.format("%-12s %9s %7s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<Operation, Stats> entry : result.operations.entrySet()) {
+            appendRow(report, entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+        appendRow(report, "total", result.total);
+        System.out.print(report);
+    }
+
+    private static void appendRow(StringBuilder report, String name, Stats stats) {
+        long count = stats.latencyMicros.getCount();
+        if (count == 0) {
+            return;
+        }
+        long[] values = stats.latencyMicros.valuesAtQuantiles(QUANTILES);
+        report.append(String.format("%-12s %9d %7d %10.2f %10.2f %10.2f %10.2f%n",
+                name, count, stats.errors.sum(),
+                values[0] / 1000.0, values[1] / 1000.0, values[2] / 1000.0, stats.latencyMicros.getMax() / 1000.0));
+    }
+
+    private static List<String> check(Workload workload, Result result) {
+        List<String> violations = new ArrayList<>();
+        long[] values = result.total.latencyMicros.valuesAtQuantiles(QUANTILES);
+        String[] names = {"maxP50Millis", "maxP99Millis", "maxP999Millis"};
+
+        for (int i = 0; i < names.length; i++) {
+            double limit = doubleProperty(workload, names[i], 0);
+            double actual = values[i] / 1000.0;
+            if (limit > 0 && actual > limit) {
+                violations.add(String.format("%s: %s %.2f ms > %.2f ms", workload.propertyName(), names[i], actual, limit));
+            }
+        }
+
+        double maxErrorRate = doubleProperty(workload, "maxErrorRate", 0);
+        if (result.errorRate() > maxErrorRate) {
+            violations.add(String.format("%s: error rate %.4f > %.4f", workload.propertyName(), result.errorRate(), maxErrorRate));
+        }
+        return violations;
+    }
+
+    private static double doubleProperty(Workload workload, String name, double defaultValue) {
+        String value = System.getProperty("load." + workload.propertyName() + "." + name,
+                System.getProperty("load." + name));
+        return value == null || value.trim().isEmpty() ? defaultValue : Double.parseDouble(value.trim());
+    }
+}
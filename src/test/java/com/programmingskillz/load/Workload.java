@@ -0,0 +1,50 @@
+package com.programmingskillz.load;
+
+import java.util.Random;
+
+/**
+ * Request mixes driven by {@link LoadHarness}, selected with {@code -Dload.workloads}.
+ *
+ * @author Durim Kryeziu
+ */
+enum Workload {
+
+    READ_HEAVY(90, 0, 8, 2, 0),
+    WRITE_HEAVY(20, 0, 50, 20, 10),
+    MIXED(60, 5, 20, 10, 5),
+    LARGE_LISTING(0, 95, 5, 0, 0);
+
+    enum Operation {
+        GET_BOOK, LIST_BOOKS, CREATE_BOOK, UPDATE_BOOK, DELETE_BOOK
+    }
+
+    private final int[] cumulativeWeights;
+
+    Workload(int getBook, int listBooks, int createBook, int updateBook, int deleteBook) {
+        int[] weights = {getBook, listBooks, createBook, updateBook, deleteBook};
+        cumulativeWeights = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    Operation next(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return Operation.values()[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    String propertyName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    static Workload of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
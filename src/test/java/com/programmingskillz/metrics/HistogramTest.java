@@ -0,0 +1,62 @@
+package com.programmingskillz.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class HistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.valueAtQuantile(0.99));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.getCount());
+        assertEquals(1275, histogram.getSum());
+        assertEquals(25, histogram.valueAtQuantile(0.5));
+        assertEquals(50, histogram.valueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testQuantilesWithinRelativeError() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        long[] values = histogram.valuesAtQuantiles(0.5, 0.99, 0.999);
+
+        assertWithinPercent(50000, values[0], 3.2);
+        assertWithinPercent(99000, values[1], 3.2);
+        assertWithinPercent(99900, values[2], 3.2);
+        assertEquals(100000, histogram.getMax());
+    }
+
+    @Test
+    public void testBucketBoundariesAreContiguous() {
+        for (int index = 1; index < Histogram.indexOf(1L << 39); index++) {
+            long lowest = Histogram.highestEquivalentValue(index - 1) + 1;
+            assertEquals(index, Histogram.indexOf(lowest));
+            assertEquals(index, Histogram.indexOf(Histogram.highestEquivalentValue(index)));
+        }
+    }
+
+    private static void assertWithinPercent(long expected, long actual, double percent) {
+        assertTrue("expected " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * percent / 100);
+    }
+}
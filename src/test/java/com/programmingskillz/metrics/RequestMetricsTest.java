@@ -0,0 +1,28 @@
+package com.programmingskillz.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class RequestMetricsTest {
+
+    @Test
+    public void testAllocationsArePublishedPerPhase() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.allocationRecorded(null, 1000, 20, 30);
+        metrics.allocationRecorded(null, 1000, 20, 30);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        metrics.collect(writer);
+        String scrape = writer.toString();
+
+        assertTrue(scrape.contains("# TYPE http_server_request_allocated_bytes summary"));
+        assertTrue(scrape.contains(
+                "http_server_request_allocated_bytes_count{method=\"\",path=\"unmatched\",phase=\"resource\"} 2"));
+        assertTrue(scrape.contains(
+                "http_server_request_allocated_bytes_sum{method=\"\",path=\"unmatched\",phase=\"total\"} 2100"));
+    }
+}
@@ -0,0 +1,27 @@
+package com.programmingskillz.metrics;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class ThreadAllocationTest {
+
+    private static byte[] retained;
+
+    @Test
+    public void testCountsWhatTheThreadAllocates() {
+        Assume.assumeTrue("The JVM does not count allocated bytes per thread", ThreadAllocation.isSupported());
+
+        long before = ThreadAllocation.allocatedBytes();
+        retained = new byte[1 << 20];
+        long allocated = ThreadAllocation.bytesBetween(before, ThreadAllocation.allocatedBytes());
+
+        assertTrue(allocated + " bytes", allocated >= retained.length && allocated < 2 * retained.length);
+        assertEquals(0, ThreadAllocation.bytesBetween(before, before));
+    }
+}
@@ -0,0 +1,90 @@
+package com.programmingskillz.providers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.Mappers;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class ParallelJsonGzipTest {
+
+    private static final TypeReference<List<Book>> BOOK_LIST = new TypeReference<List<Book>>() {
+    };
+
+    @Test
+    public void testOutputIsTheSerializedListAsOneGzipStream() throws Exception {
+        ParallelJsonGzip parallelJsonGzip = new ParallelJsonGzip(Mappers.json(), 100, 4);
+
+        for (int size : new int[]{0, 1, 100, 101, 1234}) {
+            List<Book> books = books(size);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            parallelJsonGzip.write(books, BOOK_LIST.getType(), out);
+
+            byte[] expected = Mappers.json().writerFor(BOOK_LIST).writeValueAsBytes(books);
+            assertArrayEquals("size " + size, expected, gunzip(out.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testCrc32Combine() {
+        Random random = new Random(7);
+        byte[] first = new byte[1000];
+        byte[] second = new byte[70000];
+        random.nextBytes(first);
+        random.nextBytes(second);
+
+        CRC32 whole = new CRC32();
+        whole.update(first);
+        whole.update(second);
+
+        assertEquals(whole.getValue(), ParallelJsonGzip.crc32Combine(crc(first), crc(second), second.length));
+        assertEquals(crc(first), ParallelJsonGzip.crc32Combine(crc(first), 0, 0));
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setId(String.format("%08d-0000-0000-0000-000000000000", i));
+            book.setTitle("Effective Java #" + i);
+            book.setAuthor("Joshua Bloch");
+            book.setPages(346);
+            book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+            books.add(book);
+        }
+        return books;
+    }
+}
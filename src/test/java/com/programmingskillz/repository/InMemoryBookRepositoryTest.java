@@ -0,0 +1,71 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class InMemoryBookRepositoryTest {
+
+    private final InMemoryBookRepository repository = new InMemoryBookRepository();
+
+    @Test
+    public void testCrud() throws Exception {
+        Book book = repository.save(book("Effective Java", "Joshua Bloch", "Addison-Wesley"));
+
+        assertEquals(36, book.getId().length());
+        assertEquals("Effective Java", repository.findOne(book.getId()).getTitle());
+
+        book.setTitle("Effective Java (2nd Edition)");
+        repository.update(book);
+        assertEquals("Effective Java (2nd Edition)", repository.findOne(book.getId()).getTitle());
+
+        repository.delete(book.getId());
+        assertTrue(repository.findAll().isEmpty());
+    }
+
+    @Test(expected = BookNotFoundException.class)
+    public void testFindUnknownBook() throws Exception {
+        repository.findOne("767a463c-4cc3-48c1-b93e-25c0d216032b");
+    }
+
+    @Test
+    public void testReadsReturnCopies() throws Exception {
+        Book first = repository.save(book("Effective Java", "Joshua Bloch", "Addison-Wesley"));
+        repository.save(book("Clean Code", "Robert C. Martin", "Prentice Hall"));
+
+        // Changing a book that was read or saved does not reach the repository
+        first.setPublisher("Changed without an update");
+        repository.findOne(first.getId()).setPublisher("Changed without an update");
+        repository.findAll().get(0).setAuthor("Changed without an update");
+        assertEquals("Addison-Wesley", repository.findOne(first.getId()).getPublisher());
+        for (Book book : repository.findAll()) {
+            assertNotEquals("Changed without an update", book.getAuthor());
+        }
+
+        Book updated = repository.findOne(first.getId());
+        updated.setPublisher("Pearson");
+        repository.update(updated);
+        assertEquals("Pearson", repository.findOne(first.getId()).getPublisher());
+
+        repository.deleteAll();
+        assertTrue(repository.findAll().isEmpty());
+        assertTrue(repository.findAllIds().isEmpty());
+    }
+
+    private static Book book(String title, String author, String publisher) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setPublisher(publisher);
+        book.setIsbn("9780321356680");
+        book.setPages(300);
+        return book;
+    }
+}
@@ -0,0 +1,231 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class LogStructuredBookRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private LogStructuredBookRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("repository.log.segmentMegabytes", "1");
+        System.setProperty("repository.log.compactionIntervalSeconds", "3600");
+        directory = folder.getRoot().toPath();
+        repository = open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repository.close();
+        System.clearProperty("repository.log.segmentMegabytes");
+        System.clearProperty("repository.log.compactionIntervalSeconds");
+    }
+
+    @Test
+    public void testChangesSurviveReopening() throws Exception {
+        Book kept = repository.save(book("Kept"));
+        Book deleted = repository.save(book("Deleted"));
+        kept.setTitle("Kept and updated");
+        repository.update(kept);
+        repository.delete(deleted.getId());
+
+        assertEquals("Kept and updated", repository.findOne(kept.getId()).getTitle());
+        assertEquals(1, repository.findAll().size());
+
+        repository.close();
+        repository = open();
+
+        List<Book> books = repository.findAll();
+        assertEquals(1, books.size());
+        assertEquals(kept.getId(), books.get(0).getId());
+        assertEquals("Kept and updated", books.get(0).getTitle());
+        assertEquals(Instant.parse("2008-05-28T00:00:00Z"), books.get(0).getPublished());
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws Exception {
+        Book first = repository.save(book("First"));
+        repository.close();
+        Files.write(LogSegment.dataPath(directory, 1), new byte[]{1, 2, 3, 4, 0, 0, 0, 99, 1},
+                StandardOpenOption.APPEND);
+
+        repository = open();
+        Book second = repository.save(book("Second"));
+        repository.close();
+        repository = open();
+
+        assertEquals("First", repository.findOne(first.getId()).getTitle());
+        assertEquals("Second", repository.findOne(second.getId()).getTitle());
+    }
+
+    @Test
+    public void testCorruptSealedSegmentFailsTheStartup() throws Exception {
+        Book book = book("Book");
+        book.setDescription(String.join("", Collections.nCopies(50, "Long enough")));
+        while (segments().size() < 2) {
+            repository.save(book);
+        }
+        repository.close();
+
+        // Sealed without hints, as maintenance has not run yet
+        Path sealed = LogSegment.dataPath(directory, 1);
+        try (FileChannel channel = FileChannel.open(sealed, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1}), Files.size(sealed) / 2);
+        }
+        long size = Files.size(sealed);
+
+        try {
+            repository = open();
+            fail("The books after the damage would be lost");
+        } catch (SQLException expected) {
+            // nothing cut off
+        }
+        assertEquals(size, Files.size(sealed));
+
+        Files.write(sealed, new byte[0]);
+        repository = open();
+    }
+
+    @Test
+    public void testCompactionDropsSupersededVersions() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            books.add(repository.save(book("Book " + i)));
+        }
+        for (int round = 1; round <= 3; round++) {
+            for (Book book : books) {
+                book.setTitle(book.getTitle() + " " + round);
+                repository.update(book);
+            }
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            repository.delete(books.get(i).getId());
+        }
+        long before = logSize();
+
+        repository.maintain();
+
+        assertTrue(logSize() < before / 2);
+        assertEquals(2000, repository.findAllIds().size());
+
+        repository.close();
+        repository = open();
+
+        assertEquals(2000, repository.findAll().size());
+        for (int i = 1; i < 3000; i += 3) {
+            assertEquals("Book " + i + " 1 2 3", repository.findOne(books.get(i).getId()).getTitle());
+        }
+    }
+
+    @Test
+    public void testCrashBeforeOlderSegmentsAreDeletedKeepsDeletesDeleted() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Book book = book("Book " + i);
+            book.setDescription(String.join("", Collections.nCopies(50, "Long enough")));
+            books.add(repository.save(book));
+        }
+        int segmentsBeforeDeletes = segments().size();
+        for (int i = 0; i < 3000; i += 3) {
+            repository.delete(books.get(i).getId());
+        }
+        // Seals the segment with the deletes, so that it is the newest one compacted and the puts are older
+        for (int round = 1; segments().size() == segmentsBeforeDeletes; round++) {
+            for (int i = 1; i < 3000; i += 3) {
+                Book book = books.get(i);
+                book.setTitle("Book " + i + " " + round);
+                repository.update(book);
+            }
+        }
+
+        Path copies = folder.newFolder("before-compaction").toPath();
+        List<Path> segments = segments();
+        for (Path segment : segments) {
+            Files.copy(segment, copies.resolve(segment.getFileName()));
+        }
+        repository.maintain();
+        repository.close();
+
+        // As if the process died after the merged segment was moved in place, before the older ones were deleted
+        for (Path segment : segments) {
+            if (!Files.exists(segment)) {
+                Files.copy(copies.resolve(segment.getFileName()), segment);
+            }
+        }
+        repository = open();
+
+        List<String> ids = repository.findAllIds();
+        assertEquals(2000, ids.size());
+        for (int i = 0; i < 3000; i++) {
+            Book book = books.get(i);
+            if (i % 3 == 0) {
+                assertFalse(ids.contains(book.getId()));
+            } else {
+                assertEquals(book.getTitle(), repository.findOne(book.getId()).getTitle());
+            }
+        }
+    }
+
+    private LogStructuredBookRepository open() throws Exception {
+        return new LogStructuredBookRepository(directory, new TimeOrderedIdGenerator());
+    }
+
+    private List<Path> segments() throws Exception {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.data")) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        return segments;
+    }
+
+    private long logSize() throws Exception {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.data")) {
+            for (Path file : files) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private static Book book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Joshua Bloch");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        return book;
+    }
+}
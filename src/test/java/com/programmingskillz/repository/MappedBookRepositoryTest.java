@@ -0,0 +1,162 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.util.Mappers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class MappedBookRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private MappedBookRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.getRoot().toPath().resolve("library.books");
+        repository = new MappedBookRepository(file, new TimeOrderedIdGenerator());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repository.close();
+    }
+
+    @Test
+    public void testCrud() throws Exception {
+        Book book = repository.save(book("Effective Java"));
+
+        Book found = repository.findOne(book.getId());
+        assertEquals(book.getId(), found.getId());
+        assertEquals("Effective Java", found.getTitle());
+        assertEquals(Integer.valueOf(346), found.getPages());
+        assertEquals(Instant.parse("2008-05-28T00:00:00Z"), found.getPublished());
+        assertNull(found.getPublisher());
+
+        found.setTitle("Effective Java (2nd Edition)");
+        repository.update(found);
+        assertEquals("Effective Java (2nd Edition)", repository.findOne(book.getId()).getTitle());
+        assertEquals(1, repository.findAll().size());
+
+        repository.delete(book.getId());
+        assertTrue(repository.findAllIds().isEmpty());
+    }
+
+    @Test
+    public void testPublishedKeepsItsNanoseconds() throws Exception {
+        Book book = book("Effective Java");
+        book.setPublished(Instant.parse("2008-05-28T10:15:30.123456789Z"));
+        book = repository.save(book);
+        assertEquals(book.getPublished(), repository.findOne(book.getId()).getPublished());
+
+        // As written before the nanoseconds: milliseconds, and the fields after them 4 bytes earlier
+        UUID id = UUID.randomUUID();
+        byte[] title = "Old".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer old = ByteBuffer.allocate(BookCodec.MIN_LENGTH + title.length);
+        old.putInt(old.capacity());
+        old.put((byte) 0);
+        old.putLong(id.getMostSignificantBits());
+        old.putLong(id.getLeastSignificantBits());
+        old.putLong(Instant.parse("2008-05-28T10:15:30.123Z").toEpochMilli());
+        old.putShort((short) 346);
+        old.putInt(title.length);
+        old.put(title);
+        for (int i = 0; i < 4; i++) {
+            old.putInt(-1);
+        }
+
+        Book decoded = BookCodec.decode(old, 0);
+        assertEquals(id.toString(), decoded.getId());
+        assertEquals("Old", decoded.getTitle());
+        assertNull(decoded.getAuthor());
+        assertEquals(Integer.valueOf(346), decoded.getPages());
+        assertEquals(Instant.parse("2008-05-28T10:15:30.123Z"), decoded.getPublished());
+    }
+
+    @Test(expected = BookNotFoundException.class)
+    public void testFindUnknownBook() throws Exception {
+        repository.findOne("not-a-uuid");
+    }
+
+    @Test
+    public void testBooksSurviveReopening() throws Exception {
+        Book kept = repository.save(book("Kept"));
+        Book deleted = repository.save(book("Deleted"));
+        kept.setTitle("Kept and updated");
+        repository.update(kept);
+        repository.delete(deleted.getId());
+        repository.close();
+
+        repository = new MappedBookRepository(file, new TimeOrderedIdGenerator());
+
+        List<Book> books = repository.findAll();
+        assertEquals(1, books.size());
+        assertEquals("Kept and updated", books.get(0).getTitle());
+        assertEquals(kept.getId(), books.get(0).getId());
+    }
+
+    @Test
+    public void testIndexGrowsAndSpillsIntoNewSegments() throws Exception {
+        System.setProperty("repository.mapped.segmentMegabytes", "1");
+        try {
+            repository.close();
+            repository = new MappedBookRepository(folder.getRoot().toPath().resolve("small.books"),
+                    new TimeOrderedIdGenerator());
+        } finally {
+            System.clearProperty("repository.mapped.segmentMegabytes");
+        }
+
+        Book last = null;
+        for (int i = 0; i < 20000; i++) {
+            last = repository.save(book("Book " + i));
+        }
+
+        assertEquals(20000, repository.findAllIds().size());
+        assertEquals("Book 19999", repository.findOne(last.getId()).getTitle());
+    }
+
+    @Test
+    public void testSerializesLikeBook() throws Exception {
+        Book book = book("Čapek — \"R.U.R.\"");
+        book.setPublisher("Aventinum");
+        repository.save(book);
+        Book found = repository.findOne(book.getId());
+
+        assertEquals(new String(Mappers.json().writeValueAsBytes(book), StandardCharsets.UTF_8),
+                new String(Mappers.json().writeValueAsBytes(found), StandardCharsets.UTF_8));
+        assertEquals(Mappers.json().writeValueAsString(Arrays.asList(book, book)),
+                Mappers.json().writeValueAsString(Arrays.asList(found, found)));
+        assertEquals(Mappers.xml().writeValueAsString(book), Mappers.xml().writeValueAsString(found));
+    }
+
+    private static Book book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Joshua Bloch");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        return book;
+    }
+}
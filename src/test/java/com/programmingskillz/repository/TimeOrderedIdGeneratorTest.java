@@ -0,0 +1,40 @@
+package com.programmingskillz.repository;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class TimeOrderedIdGeneratorTest {
+
+    private final IdGenerator generator = new TimeOrderedIdGenerator();
+
+    @Test
+    public void testVersionAndVariant() {
+        UUID id = generator.nextId();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(id, UUID.fromString(id.toString()));
+    }
+
+    @Test
+    public void testIdsAreUniqueAndOrderedByTime() throws InterruptedException {
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(ids.add(generator.nextId()));
+        }
+
+        String earlier = generator.nextId().toString();
+        Thread.sleep(2);
+        String later = generator.nextId().toString();
+        assertTrue(earlier.compareTo(later) < 0);
+    }
+}
@@ -0,0 +1,220 @@
+package com.programmingskillz.repository;
+
+import com.programmingskillz.domain.Book;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class WriteBehindRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BookRepository bookRepository;
+    private Path journalPath;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("hikari.jdbcUrl", "jdbc:h2:mem:write-behind;DB_CLOSE_DELAY=-1");
+        DataSource.init();
+        DataSource.applySchema();
+
+        bookRepository = new BookRepository();
+        bookRepository.deleteAll();
+        journalPath = folder.getRoot().toPath().resolve("library.journal");
+    }
+
+    @After
+    public void tearDown() {
+        DataSource.close();
+        System.clearProperty("hikari.jdbcUrl");
+    }
+
+    @Test
+    public void testChangesAreWrittenOnClose() throws Exception {
+        WriteBehindRepository repository = new WriteBehindRepository(bookRepository, journalPath);
+
+        Book kept = repository.save(book("Kept"));
+        Book deleted = repository.save(book("Deleted"));
+        kept.setTitle("Kept and updated");
+        repository.update(kept);
+        repository.delete(deleted.getId());
+
+        repository.findOne(kept.getId()).setTitle("Changed without an update");
+        repository.findAll().get(0).setTitle("Changed without an update");
+        assertEquals("Kept and updated", repository.findOne(kept.getId()).getTitle());
+        assertEquals(1, repository.findAll().size());
+
+        repository.close();
+
+        List<Book> books = bookRepository.findAll();
+        assertEquals(1, books.size());
+        assertEquals("Kept and updated", books.get(0).getTitle());
+        assertEquals(0, journalBytes());
+    }
+
+    @Test
+    public void testUnwrittenChangesAreRecovered() throws Exception {
+        Book kept = book("Kept");
+        kept.setId(UUID.randomUUID().toString());
+        Book deleted = book("Deleted");
+        deleted.setId(UUID.randomUUID().toString());
+
+        WriteBehindJournal journal = new WriteBehindJournal(journalPath, false);
+        journal.append(WriteBehindRepository.Change.upsert(kept));
+        journal.append(WriteBehindRepository.Change.upsert(deleted));
+        journal.append(WriteBehindRepository.Change.delete(deleted.getId()));
+        journal.close();
+        // A record torn by the crash
+        Files.write(journalPath.resolveSibling("library.journal.1"), new byte[]{0, 0, 1, 0, 42},
+                StandardOpenOption.APPEND);
+
+        WriteBehindRepository repository = new WriteBehindRepository(bookRepository, journalPath);
+
+        assertEquals(1, repository.findAll().size());
+        assertEquals("Kept", repository.findOne(kept.getId()).getTitle());
+        assertEquals(1, bookRepository.findAll().size());
+        assertEquals(0, journalBytes());
+
+        repository.close();
+    }
+
+    @Test
+    public void testWrittenSegmentsAreDropped() throws Exception {
+        Book first = book("First");
+        first.setId(UUID.randomUUID().toString());
+        Book second = book("Second");
+        second.setId(UUID.randomUUID().toString());
+
+        WriteBehindJournal journal = new WriteBehindJournal(journalPath, false);
+        long written = journal.append(WriteBehindRepository.Change.upsert(first));
+        journal.rotate();
+        long pending = journal.append(WriteBehindRepository.Change.upsert(second));
+        journal.deleteBefore(pending);
+        journal.close();
+
+        assertTrue(written < pending);
+        assertFalse(Files.exists(journalPath.resolveSibling("library.journal." + written)));
+        List<String> replayed = new ArrayList<>();
+        new WriteBehindJournal(journalPath, false).replay(10,
+                batch -> batch.forEach(change -> replayed.add(change.book.getTitle())));
+        assertEquals(Collections.singletonList("Second"), replayed);
+    }
+
+    @Test
+    public void testChangesThatCannotBeWrittenDoNotHoldUpTheOthers() throws Exception {
+        WriteBehindRepository repository = new WriteBehindRepository(bookRepository, journalPath);
+
+        repository.save(book("Before"));
+        Book invalid = book("Without author");
+        invalid.setAuthor(null);
+        repository.save(invalid);
+        repository.save(book("After"));
+        repository.close();
+
+        assertEquals(2, bookRepository.findAll().size());
+        assertTrue(Files.size(journalPath.resolveSibling("library.journal.dead")) > 0);
+        assertEquals(0, journalBytes());
+    }
+
+    @Test
+    public void testWritersToAFullQueueDoNotWaitForEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BookRepository stalledDatabase = new BookRepository() {
+            @Override
+            void writeBatch(boolean deleteAllFirst, Collection<Book> upserts, Collection<String> deletes)
+                    throws SQLException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeBatch(deleteAllFirst, upserts, deletes);
+            }
+        };
+        System.setProperty("repository.writeBehind.queueCapacity", "1");
+        System.setProperty("repository.writeBehind.offerTimeoutMillis", "300");
+        WriteBehindRepository repository;
+        try {
+            repository = new WriteBehindRepository(stalledDatabase, journalPath);
+        } finally {
+            System.clearProperty("repository.writeBehind.queueCapacity");
+            System.clearProperty("repository.writeBehind.offerTimeoutMillis");
+        }
+
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            // Takes the only place in the queue until the flusher gets through
+            repository.save(book("Queued"));
+
+            List<Future<Long>> waits = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                waits.add(writers.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        repository.save(book("Rejected"));
+                    } catch (SQLTransientException expected) {
+                        // the queue stays full
+                    }
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }));
+            }
+            for (Future<Long> wait : waits) {
+                long millis = wait.get();
+                assertTrue("Waited " + millis + " ms", millis < 600);
+            }
+        } finally {
+            writers.shutdown();
+            release.countDown();
+            repository.close();
+        }
+        assertEquals(1, bookRepository.findAll().size());
+    }
+
+    private long journalBytes() throws Exception {
+        long bytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(journalPath.getParent(), "library.journal.[0-9]*")) {
+            for (Path file : files) {
+                bytes += Files.size(file);
+            }
+        }
+        return bytes;
+    }
+
+    private static Book book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Joshua Bloch");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        return book;
+    }
+}
@@ -2,10 +2,18 @@ package com.programmingskillz.resource;
 
 import com.programmingskillz.SampleApplication;
 import com.programmingskillz.domain.Book;
+import com.programmingskillz.domain.BookLookup;
+import com.programmingskillz.domain.BookStats;
+import com.programmingskillz.exceptions.BookModifiedException;
 import com.programmingskillz.providers.SampleObjectMapperProvider;
+import com.programmingskillz.repository.BookRepository;
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.glassfish.jersey.logging.LoggingFeature;
+import org.glassfish.jersey.media.sse.EventInput;
+import org.glassfish.jersey.media.sse.InboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.test.JerseyTest;
 import org.glassfish.jersey.test.TestProperties;
@@ -17,9 +25,12 @@ import org.junit.runners.MethodSorters;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.*;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 
+import static com.programmingskillz.util.CustomMediaType.APPLICATION_MERGE_PATCH_JSON;
 import static org.junit.Assert.*;
 
 /**
@@ -42,6 +53,7 @@ public class BookResourceTest extends JerseyTest {
         config.register(SampleObjectMapperProvider.class);
         config.register(JacksonFeature.class);
         config.register(GZipEncoder.class);
+        config.register(SseFeature.class);
         config.property(LoggingFeature.LOGGING_FEATURE_LOGGER_LEVEL_CLIENT, "INFO");
         config.property(LoggingFeature.LOGGING_FEATURE_VERBOSITY_CLIENT, LoggingFeature.Verbosity.HEADERS_ONLY);
     }
@@ -210,6 +222,23 @@ public class BookResourceTest extends JerseyTest {
         assertEquals(404, notFoundResponse.getStatus());
     }
 
+    @Test
+    public void test6GetUnknownBook() throws Exception {
+        Response response = target("books")
+                .path("00000000-0000-0000-0000-000000000000")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get();
+
+        assertEquals(404, response.getStatus());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaderString("Content-Type"));
+
+        String entity = response.readEntity(String.class);
+
+        assertEquals("{\"status\":\"Not Found\",\"code\":404," +
+                "\"message\":\"Book with id '00000000-0000-0000-0000-000000000000' not found.\"}", entity);
+    }
+
     @Test
     public void test7DeleteAllBooks() throws Exception {
         Response response = target("books")
@@ -267,6 +296,155 @@ public class BookResourceTest extends JerseyTest {
         assertTrue(entity.contains("Id cannot be null when you want to update the Book"));
     }
 
+    @Test
+    public void testPatchBook() throws Exception {
+        Response response = target("books").path(bookId)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get();
+        String entityTag = response.getHeaderString(HttpHeaders.ETAG);
+        assertNotNull(entityTag);
+        response.close();
+
+        assertEquals(412, patch("{\"pages\": 300}", "\"0\"").getStatus());
+        assertEquals(400, patch("{\"title\": null}", null).getStatus());
+        assertEquals(400, patch("{\"id\": \"" + bookId + "\"}", null).getStatus());
+        assertEquals(400, patch("{\"pages\": \"many\"}", null).getStatus());
+
+        response = patch("{\"pages\": 300, \"description\": \"Patched\"}", entityTag);
+        assertEquals(200, response.getStatus());
+        assertNotEquals(entityTag, response.getHeaderString(HttpHeaders.ETAG));
+
+        Book book = response.readEntity(Book.class);
+        assertEquals(300, book.getPages().intValue());
+        assertEquals("Patched", book.getDescription());
+        assertEquals("How to Win Friends & Influence People", book.getTitle());
+        assertEquals("067142517X", book.getIsbn());
+
+        assertEquals(404, patch("{\"pages\": 300}", null, "00000000-0000-0000-0000-000000000000").getStatus());
+    }
+
+    @Test
+    public void testPatchBookChangedSinceItWasRead() throws Exception {
+        Response response = target("books").path(bookId)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get();
+        String entityTag = response.getHeaderString(HttpHeaders.ETAG);
+        response.close();
+
+        // Written by another instance, bypassing the service of this one
+        BookRepository repository = new BookRepository();
+        Book read = repository.findOne(bookId);
+        Book changed = repository.findOne(bookId);
+        changed.setTitle("How to Stop Worrying and Start Living");
+        repository.update(changed, Collections.singleton("title"), read);
+
+        try {
+            repository.update(changed, Collections.singleton("pages"), read);
+            fail("The title is not the one read anymore");
+        } catch (BookModifiedException expected) {
+            // nothing written
+        }
+
+        assertEquals(412, patch("{\"pages\": 300}", entityTag).getStatus());
+        Book book = repository.findOne(bookId);
+        assertEquals("How to Stop Worrying and Start Living", book.getTitle());
+        assertEquals(299, book.getPages().intValue());
+    }
+
+    @Test
+    public void testLookUpBooksById() throws Exception {
+        String unknownId = "00000000-0000-0000-0000-000000000000";
+        Response created = target("books")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .post(Entity.json(target("books").path(bookId)
+                        .request(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                        .get(Book.class)));
+        String otherId = created.readEntity(Book.class).getId();
+
+        Response response = target("books")
+                .queryParam("ids", otherId + "," + unknownId + ", " + bookId + "," + otherId)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get();
+        assertEquals(200, response.getStatus());
+
+        BookLookup lookup = response.readEntity(BookLookup.class);
+        assertEquals(2, lookup.getBooks().size());
+        assertEquals(otherId, lookup.getBooks().get(0).getId());
+        assertEquals(bookId, lookup.getBooks().get(1).getId());
+        assertEquals(Collections.singletonList(unknownId), lookup.getMissing());
+
+        response = target("books").path("lookup")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .post(Entity.json(Arrays.asList(unknownId, bookId)));
+        assertEquals(200, response.getStatus());
+
+        lookup = response.readEntity(BookLookup.class);
+        assertEquals(1, lookup.getBooks().size());
+        assertEquals(bookId, lookup.getBooks().get(0).getId());
+        assertEquals(Collections.singletonList(unknownId), lookup.getMissing());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        BookStats before = target("books").path("stats")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get(BookStats.class);
+
+        Book book = new Book();
+        book.setTitle("Java Concurrency in Practice");
+        book.setAuthor("Stats Test Author");
+        book.setIsbn("9780321349606");
+        book.setPages(403);
+        String id = target("books")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .post(Entity.json(book), Book.class).getId();
+
+        BookStats after = target("books").path("stats")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get(BookStats.class);
+        assertEquals(before.getBooks() + 1, after.getBooks());
+        assertTrue(after.getAuthors().stream()
+                .anyMatch(count -> count.getValue().equals("Stats Test Author") && count.getCount() == 1));
+
+        target("books").path(id)
+                .request()
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .delete()
+                .close();
+
+        // Updating a book that is gone writes nothing, and neither counts nor lists it again
+        book.setId(id);
+        Response updated = target("books")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .put(Entity.json(book));
+        assertEquals(404, updated.getStatus());
+        BookStats afterUpdate = target("books").path("stats")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get(BookStats.class);
+        assertEquals(before.getBooks(), afterUpdate.getBooks());
+        assertTrue(target("books").request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get(String.class).indexOf(id) < 0);
+
+        BookStats recomputed = target("books").path("stats/recompute")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .post(null, BookStats.class);
+        assertEquals(before.getBooks(), recomputed.getBooks());
+        assertTrue(recomputed.getAuthors().stream().noneMatch(count -> count.getValue().equals("Stats Test Author")));
+    }
+
     @Test
     public void testUriBasedContentNegotiation() throws Exception {
         Response jsonResponse = target("books")
@@ -284,6 +462,9 @@ public class BookResourceTest extends JerseyTest {
                 .get();
 
         assertEquals(MediaType.APPLICATION_XML, xmlResponse.getHeaderString("Content-Type"));
+        String xml = xmlResponse.readEntity(String.class);
+        assertTrue(xml.startsWith("<books><book><id>"));
+        assertTrue(xml.contains("<id>" + bookId + "</id>"));
     }
 
     @Test
@@ -297,6 +478,125 @@ public class BookResourceTest extends JerseyTest {
         assertEquals("Jersey Framework", response.getHeaderString("X-Powered-By"));
     }
 
+    @Test
+    public void testMetricsEndpoint() throws Exception {
+        target("books")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get();
+
+        Response response = target("metrics")
+                .request()
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .get();
+
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getHeaderString("Content-Type").startsWith(MediaType.TEXT_PLAIN));
+
+        String metrics = response.readEntity(String.class);
+
+        assertTrue(metrics.contains("http_server_requests_seconds_count{method=\"GET\",path=\"/books\",status=\"2xx\"}"));
+        assertTrue(metrics.contains("http_server_requests_in_flight"));
+        assertTrue(metrics.contains("hikaricp_connections"));
+        assertTrue(metrics.contains("jvm_memory_bytes_used"));
+    }
+
+    @Test
+    public void testHealthEndpointsWithoutAuth() throws Exception {
+        Response live = target("health/live").request().get();
+
+        assertEquals(200, live.getStatus());
+
+        Response ready = target("health/ready").request().get();
+        for (int i = 0; i < 100 && ready.getStatus() != 200; i++) {
+            assertEquals(503, ready.getStatus());
+            Thread.sleep(100);
+            ready = target("health/ready").request().get();
+        }
+
+        assertEquals(200, ready.getStatus());
+        assertEquals("READY", ready.readEntity(String.class));
+    }
+
+    @Test
+    public void testMatrixParametersDoNotSkipAuth() {
+        assertEquals(401, target("books;x=/health/").request().get().getStatus());
+        assertEquals(401, target("books;x=/health/").request().delete().getStatus());
+        assertEquals(401, target("books;x=swagger.json").request().get().getStatus());
+        assertEquals(401, target("books/" + bookId + ";x=/health/").request().get().getStatus());
+    }
+
+    @Test
+    public void testStaticSwaggerSpec() throws Exception {
+        Response response = target("swagger.json").request().get();
+
+        assertEquals(200, response.getStatus());
+        assertTrue(response.readEntity(String.class).contains("\"/books/{id}\""));
+
+        EntityTag entityTag = response.getEntityTag();
+        assertNotNull(entityTag);
+
+        Response notModified = target("swagger.json")
+                .request()
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag.toString())
+                .get();
+
+        assertEquals(304, notModified.getStatus());
+    }
+
+    @Test
+    public void testChangeStreamResumesFromLastEventId() throws Exception {
+        EventInput changes = changeStream(null);
+        target("books/" + bookId).request().header(HttpHeaders.AUTHORIZATION, authHeaderValue).delete();
+
+        InboundEvent deleted = nextEvent(changes);
+        changes.close();
+        assertEquals("deleted", deleted.getName());
+        assertTrue(deleted.readData(String.class).contains(bookId));
+
+        addBook();
+        EventInput resumed = changeStream(deleted.getId());
+
+        InboundEvent created = nextEvent(resumed);
+        resumed.close();
+        assertEquals("created", created.getName());
+        assertTrue(created.readData(String.class).contains(bookId));
+
+        EventInput stale = changeStream("unknown-1");
+        assertEquals("resync", nextEvent(stale).getName());
+        stale.close();
+    }
+
+    private Response patch(String mergePatch, String ifMatch) {
+        return patch(mergePatch, ifMatch, bookId);
+    }
+
+    private Response patch(String mergePatch, String ifMatch, String id) {
+        return target("books").path(id)
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .header(HttpHeaders.IF_MATCH, ifMatch)
+                .method("PATCH", Entity.entity(mergePatch, APPLICATION_MERGE_PATCH_JSON));
+    }
+
+    private static InboundEvent nextEvent(EventInput eventInput) {
+        InboundEvent event = eventInput.read();
+        while (event.getName() == null) {
+            // heartbeat comment
+            event = eventInput.read();
+        }
+        return event;
+    }
+
+    private EventInput changeStream(String lastEventId) {
+        return target("books/changes/stream")
+                .request(SseFeature.SERVER_SENT_EVENTS_TYPE)
+                .header(HttpHeaders.AUTHORIZATION, authHeaderValue)
+                .header(SseFeature.LAST_EVENT_ID_HEADER, lastEventId)
+                .get(EventInput.class);
+    }
+
     @Test
     public void shouldNotBeAllowedWithoutBasicAuth() throws Exception {
         Response response = target("books")
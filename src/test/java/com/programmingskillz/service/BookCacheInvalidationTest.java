@@ -0,0 +1,160 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookNotFoundException;
+import com.programmingskillz.repository.BookRepository;
+import com.programmingskillz.repository.DataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Two {@link BookServiceImpl} instances with their own caches and change log pollers, sharing an H2 TCP server
+ * like two servers sharing a database (they share the connection pool of this JVM as well).
+ *
+ * @author Durim Kryeziu
+ */
+public class BookCacheInvalidationTest {
+
+    private Server server;
+    private JdbcDataSource database;
+    private BookServiceImpl first;
+    private BookServiceImpl second;
+
+    @Before
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = Server.createTcpServer("-tcpPort", Integer.toString(port)).start();
+        String jdbcUrl = "jdbc:h2:tcp://localhost:" + port + "/mem:cache-invalidation;DB_CLOSE_DELAY=-1";
+        // Connects without DriverManager, which has no H2 driver left once a test application was destroyed
+        database = new JdbcDataSource();
+        database.setURL(jdbcUrl);
+        database.setUser("root");
+        database.setPassword("root");
+
+        System.setProperty("hikari.jdbcUrl", jdbcUrl);
+        System.setProperty("repository.changeLog.enabled", "true");
+        System.setProperty("books.cache.enabled", "true");
+        System.setProperty("books.cache.pollIntervalMillis", "20");
+        DataSource.init();
+        DataSource.applySchema();
+
+        first = new BookServiceImpl(new BookRepository());
+        second = new BookServiceImpl(new BookRepository());
+        await(() -> first.isCaching() && second.isCaching(), true);
+    }
+
+    @After
+    public void tearDown() {
+        first.close();
+        second.close();
+        DataSource.close();
+        server.stop();
+        System.clearProperty("hikari.jdbcUrl");
+        System.clearProperty("repository.changeLog.enabled");
+        System.clearProperty("books.cache.enabled");
+        System.clearProperty("books.cache.pollIntervalMillis");
+    }
+
+    @Test
+    public void testChangesOnOneInstanceEvictTheOthersCache() throws Exception {
+        Book book = first.add(book("Original"));
+        // The id filter of the second instance learns the new id from the change log
+        assertEquals("Original", await(() -> second.get(book.getId()).getTitle(), "Original"));
+
+        execute("UPDATE books SET title = 'Not announced' WHERE id = ?", book.getId());
+        assertEquals("Original", second.get(book.getId()).getTitle());
+
+        book.setTitle("Updated");
+        first.update(book);
+        assertEquals("Updated", await(() -> second.get(book.getId()).getTitle(), "Updated"));
+
+        first.delete(book.getId());
+        assertEquals("deleted", await(() -> {
+            try {
+                return second.get(book.getId()).getTitle();
+            } catch (BookNotFoundException e) {
+                return "deleted";
+            }
+        }, "deleted"));
+    }
+
+    @Test
+    public void testChangeCommittedAfterALaterOneIsNotMissed() throws Exception {
+        Book late = first.add(book("Late"));
+        Book other = first.add(book("Other"));
+        await(() -> second.get(late.getId()).getTitle(), "Late");
+        await(() -> second.get(other.getId()).getTitle(), "Other");
+
+        try (Connection conn = database.getConnection()) {
+            conn.setAutoCommit(false);
+            execute(conn, "UPDATE books SET title = 'Late and updated' WHERE id = ?", late.getId());
+            execute(conn, "INSERT INTO book_changes (book_id) VALUES (?)", late.getId());
+
+            // Takes the next version and commits first, its eviction shows the poller moved past the open version
+            other.setTitle("Other and updated");
+            first.update(other);
+            await(() -> second.get(other.getId()).getTitle(), "Other and updated");
+
+            conn.commit();
+        }
+
+        assertEquals("Late and updated", await(() -> second.get(late.getId()).getTitle(), "Late and updated"));
+    }
+
+    private void execute(String sql, String id) throws Exception {
+        try (Connection conn = database.getConnection()) {
+            execute(conn, sql, id);
+        }
+    }
+
+    private static void execute(Connection conn, String sql, String id) throws Exception {
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, id);
+            statement.executeUpdate();
+        }
+    }
+
+    private static <T> T await(Callable<T> value, T expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        T last = null;
+        while (System.nanoTime() < deadline) {
+            try {
+                last = value.call();
+                if (expected.equals(last)) {
+                    return last;
+                }
+            } catch (BookNotFoundException e) {
+                // not known to this instance yet
+            }
+            Thread.sleep(10);
+        }
+        fail("Expected " + expected + " but was " + last);
+        return last;
+    }
+
+    private static Book book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Joshua Bloch");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        return book;
+    }
+}
@@ -0,0 +1,125 @@
+package com.programmingskillz.service;
+
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class BookChangeFeedTest {
+
+    private BookChangeFeed feed;
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        System.setProperty("changes.stream.senderThreads", "1");
+        System.setProperty("changes.stream.writeTimeoutMillis", "200");
+        System.setProperty("changes.stream.maxStandInThreads", "1");
+        feed = new BookChangeFeed();
+    }
+
+    @After
+    public void tearDown() {
+        unblock.countDown();
+        feed.close();
+        System.clearProperty("changes.stream.senderThreads");
+        System.clearProperty("changes.stream.writeTimeoutMillis");
+        System.clearProperty("changes.stream.maxStandInThreads");
+    }
+
+    @Test
+    public void testStalledSubscriberDoesNotHoldUpTheOthers() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        EventOutput stalled = new EventOutput() {
+            @Override
+            public void write(OutboundEvent event) {
+                blocked.countDown();
+                awaitUninterruptibly(unblock);
+            }
+        };
+        assertTrue(feed.subscribe(stalled, null));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        // The only sender is stuck in the write above
+        BlockingQueue<OutboundEvent> received = new LinkedBlockingQueue<>();
+        EventOutput reading = new EventOutput() {
+            @Override
+            public void write(OutboundEvent event) {
+                received.add(event);
+            }
+        };
+        assertTrue(feed.subscribe(reading, null));
+        feed.onChange(BookChange.deleted("1"));
+
+        OutboundEvent event = received.poll(5, TimeUnit.SECONDS);
+        while (event != null && event.getName() == null) {
+            event = received.poll(5, TimeUnit.SECONDS);
+        }
+        assertNotNull(event);
+        assertEquals("deleted", event.getName());
+        assertTrue(stalled.isClosed());
+    }
+
+    @Test
+    public void testStandInThreadsAreCapped() throws Exception {
+        EventOutput first = stalled();
+        EventOutput second = stalled();
+        assertTrue(feed.subscribe(first, null));
+        assertTrue(feed.subscribe(second, null));
+
+        // The only sender is stuck with the first, the one stand-in with the second
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!(first.isClosed() && second.isClosed()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(first.isClosed());
+        assertTrue(second.isClosed());
+
+        BlockingQueue<OutboundEvent> received = new LinkedBlockingQueue<>();
+        assertTrue(feed.subscribe(new EventOutput() {
+            @Override
+            public void write(OutboundEvent event) {
+                received.add(event);
+            }
+        }, null));
+        feed.onChange(BookChange.deleted("1"));
+        assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+
+        unblock.countDown();
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    }
+
+    private EventOutput stalled() {
+        return new EventOutput() {
+            @Override
+            public void write(OutboundEvent event) {
+                awaitUninterruptibly(unblock);
+            }
+        };
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Like a blocking socket write, which ignores interrupts
+            }
+        }
+    }
+}
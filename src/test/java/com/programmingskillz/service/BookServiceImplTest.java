@@ -0,0 +1,150 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.exceptions.BookModifiedException;
+import com.programmingskillz.repository.InMemoryBookRepository;
+import com.programmingskillz.util.Mappers;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolationException;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class BookServiceImplTest {
+
+    private final InMemoryBookRepository repository = new InMemoryBookRepository();
+    private final BookServiceImpl bookService = new BookServiceImpl(repository);
+
+    @After
+    public void tearDown() {
+        bookService.close();
+    }
+
+    @Test
+    public void testPatchLeavesTheBookItWasGivenAlone() throws Exception {
+        Book book = new Book();
+        book.setTitle("Effective Java");
+        book.setAuthor("Joshua Bloch");
+        book.setPublisher("Addison-Wesley");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        String id = bookService.add(book).getId();
+
+        Book read = bookService.get(id);
+        try {
+            bookService.patch(read, patch("{\"title\": null}"), false);
+            fail("A book without title is not valid");
+        } catch (ConstraintViolationException expected) {
+            // nothing written
+        }
+        assertEquals("Effective Java", read.getTitle());
+        assertEquals("Effective Java", bookService.get(id).getTitle());
+
+        Book patched = bookService.patch(read, patch("{\"author\": \"Bloch\"}"), false);
+        assertEquals("Bloch", patched.getAuthor());
+        assertEquals("Joshua Bloch", read.getAuthor());
+        assertEquals("Bloch", repository.findOne(id).getAuthor());
+    }
+
+    @Test
+    public void testPatchIfUnchangedFailsAfterAnotherWrite() throws Exception {
+        Book book = new Book();
+        book.setTitle("Effective Java");
+        book.setAuthor("Joshua Bloch");
+        book.setIsbn("9780321356680");
+        book.setPages(346);
+        String id = bookService.add(book).getId();
+
+        Book read = bookService.get(id);
+        Book updated = bookService.get(id);
+        updated.setPages(412);
+        bookService.update(updated);
+
+        try {
+            bookService.patch(read, patch("{\"author\": \"Bloch\"}"), true);
+            fail("The pages are not the ones read anymore");
+        } catch (BookModifiedException expected) {
+            // nothing written
+        }
+        assertEquals("Joshua Bloch", bookService.get(id).getAuthor());
+
+        Book patched = bookService.patch(bookService.get(id), patch("{\"author\": \"Bloch\"}"), true);
+        assertEquals("Bloch", patched.getAuthor());
+        assertEquals(412, bookService.get(id).getPages().intValue());
+    }
+
+    @Test
+    public void testConcurrentUpdateAndDeleteLeaveTheBookUncounted() throws Exception {
+        CountDownLatch updated = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        InMemoryBookRepository pausingRepository = new InMemoryBookRepository() {
+            @Override
+            public Book update(Book entity) throws SQLException {
+                Book book = super.update(entity);
+                updated.countDown();
+                try {
+                    resume.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return book;
+            }
+        };
+        BookServiceImpl service = new BookServiceImpl(pausingRepository);
+        try {
+            Book book = new Book();
+            book.setTitle("Effective Java");
+            book.setAuthor("Joshua Bloch");
+            String id = service.add(book).getId();
+            assertEquals(1, service.stats().getBooks());
+
+            Book changed = service.get(id);
+            changed.setAuthor("Bloch");
+            Thread updater = new Thread(() -> {
+                try {
+                    service.update(changed);
+                } catch (Exception e) {
+                    // the delete may win, the counts have to agree with the repository either way
+                }
+            });
+            updater.start();
+            assertTrue(updated.await(5, TimeUnit.SECONDS));
+
+            // The update is written but not counted yet, the delete has to wait for it
+            Thread deleter = new Thread(() -> {
+                try {
+                    service.delete(id);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            deleter.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (deleter.isAlive() && deleter.getState() != Thread.State.BLOCKED && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            resume.countDown();
+            updater.join();
+            deleter.join();
+
+            assertEquals(0, pausingRepository.findAll().size());
+            assertEquals(0, service.stats().getBooks());
+            assertEquals(0, service.stats().getAuthors().size());
+        } finally {
+            service.close();
+        }
+    }
+
+    private static BookPatch patch(String json) throws Exception {
+        return BookPatch.of(Mappers.json().readTree(json));
+    }
+}
@@ -0,0 +1,79 @@
+package com.programmingskillz.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.util.BookXml;
+import com.programmingskillz.util.Mappers;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class CatalogSnapshotTest {
+
+    @Test
+    public void testChangesMatchASortedMapAndKeepOlderVersions() {
+        Random random = new Random(42);
+        TreeMap<String, Book> expected = new TreeMap<>();
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Collections.emptyList(), 1);
+
+        for (int i = 0; i < 2000; i++) {
+            String id = String.format("%036d", random.nextInt(500));
+            CatalogSnapshot previous = snapshot;
+            List<Book> previousBooks = previous.books();
+
+            if (random.nextInt(4) == 0) {
+                snapshot = snapshot.without(id);
+                expected.remove(id);
+            } else {
+                Book book = book(id, "Title " + i);
+                snapshot = snapshot.with(book);
+                book.setTitle("Modified after it was added");
+                expected.put(id, book(id, "Title " + i));
+            }
+
+            assertEquals(new ArrayList<>(expected.values()), snapshot.books());
+            assertEquals(expected.size(), snapshot.size());
+            assertEquals(previousBooks, previous.books());
+        }
+
+        CatalogSnapshot cleared = snapshot.cleared();
+        assertEquals(0, cleared.size());
+        assertTrue(cleared.books().isEmpty());
+        assertEquals(snapshot.version() + 1, cleared.version());
+    }
+
+    @Test
+    public void testSerializedFormsMatchTheMappers() throws Exception {
+        List<Book> books = Arrays.asList(book("b", "Second"), book("a", "First"));
+        CatalogSnapshot snapshot = CatalogSnapshot.of(books, 7);
+
+        TypeReference<List<Book>> bookList = new TypeReference<List<Book>>() {
+        };
+        List<Book> sorted = Arrays.asList(book("a", "First"), book("b", "Second"));
+        assertArrayEquals(Mappers.json().writerFor(bookList).writeValueAsBytes(sorted), snapshot.json());
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        BookXml.write(sorted, xml, 1);
+        assertArrayEquals(xml.toByteArray(), snapshot.xml());
+        assertSame(snapshot.json(), snapshot.json());
+        assertEquals(7, snapshot.version());
+        assertEquals(8, snapshot.with(book("c", "Third")).version());
+        assertSame(snapshot, snapshot.without("unknown"));
+    }
+
+    private static Book book(String id, String title) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor("Joshua Bloch");
+        book.setPages(346);
+        book.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        return book;
+    }
+}
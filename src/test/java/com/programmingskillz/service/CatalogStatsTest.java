@@ -0,0 +1,80 @@
+package com.programmingskillz.service;
+
+import com.programmingskillz.domain.Book;
+import com.programmingskillz.domain.BookStats;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class CatalogStatsTest {
+
+    @Test
+    public void testWritesUpdateTheCounts() {
+        CatalogStats stats = new CatalogStats();
+        stats.record(book("1", "Joshua Bloch", "Addison-Wesley", 346, "2008-05-28T00:00:00Z"));
+        stats.record(book("2", "Joshua Bloch", null, 99, null));
+        stats.record(book("3", "Brian Goetz", "Addison-Wesley", 1000, "2006-05-19T00:00:00Z"));
+
+        BookStats counted = stats.toBookStats();
+        assertEquals(3, counted.getBooks());
+        assertCounts(counted.getAuthors(), "Joshua Bloch", 2, "Brian Goetz", 1);
+        assertCounts(counted.getPublishers(), "Addison-Wesley", 2);
+        assertCounts(counted.getPublishedYears(), "2006", 1, "2008", 1);
+        assertCounts(counted.getPages(), "0-99", 1, "300-399", 1, "1000+", 1);
+
+        // Recording a changed book replaces what it counted before, removing twice counts once
+        stats.record(book("2", "Brian Goetz", null, 99, null));
+        stats.remove("1");
+        stats.remove("1");
+
+        counted = stats.toBookStats();
+        assertEquals(2, counted.getBooks());
+        assertCounts(counted.getAuthors(), "Brian Goetz", 2);
+        assertCounts(counted.getPublishers(), "Addison-Wesley", 1);
+        assertCounts(counted.getPages(), "0-99", 1, "1000+", 1);
+    }
+
+    @Test
+    public void testRebuildDoesNotBringBackBooksRemovedMeanwhile() {
+        CatalogStats stats = CatalogStats.rebuilding();
+        Book read = book("1", "Joshua Bloch", null, 346, null);
+        stats.remove("1");
+        stats.record(book("2", "Brian Goetz", null, 400, null));
+
+        // Read before the writes above
+        stats.recordIfAbsent(read);
+        stats.recordIfAbsent(book("2", "Someone else", null, 400, null));
+        stats.rebuilt();
+
+        BookStats counted = stats.toBookStats();
+        assertEquals(1, counted.getBooks());
+        assertCounts(counted.getAuthors(), "Brian Goetz", 1);
+    }
+
+    private static void assertCounts(List<BookStats.Count> counts, Object... expected) {
+        assertEquals(expected.length / 2, counts.size());
+        for (int i = 0; i < counts.size(); i++) {
+            assertEquals(expected[2 * i], counts.get(i).getValue());
+            assertEquals(((Integer) expected[2 * i + 1]).longValue(), counts.get(i).getCount());
+        }
+        assertTrue(counts.stream().allMatch(count -> count.getCount() > 0));
+    }
+
+    private static Book book(String id, String author, String publisher, int pages, String published) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Title");
+        book.setAuthor(author);
+        book.setPublisher(publisher);
+        book.setPages(pages);
+        book.setPublished(published == null ? null : Instant.parse(published));
+        return book;
+    }
+}
@@ -0,0 +1,131 @@
+package com.programmingskillz.service;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneCall() throws Exception {
+        SingleFlight<String, StringBuilder> singleFlight = new SingleFlight<>(StringBuilder::new, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<StringBuilder> first = executor.submit(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return new StringBuilder("value");
+        }));
+        awaitCalls(singleFlight, 1);
+
+        List<Future<StringBuilder>> waiters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return new StringBuilder("other");
+            })));
+        }
+        awaitWaiting(singleFlight, 4);
+        release.countDown();
+
+        StringBuilder value = first.get(5, TimeUnit.SECONDS);
+        value.append(" modified");
+        for (Future<StringBuilder> waiter : waiters) {
+            assertEquals("value", waiter.get(5, TimeUnit.SECONDS).toString());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(4, singleFlight.coalesced());
+
+        // Nothing in flight anymore
+        assertEquals("next", singleFlight.execute("key", () -> new StringBuilder("next")).toString());
+    }
+
+    @Test
+    public void testWaitersGetTheException() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(value -> value, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> first = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            throw new SQLException("failed");
+        }));
+        awaitCalls(singleFlight, 1);
+        Future<String> waiter = executor.submit(() -> singleFlight.execute("key", () -> "value"));
+        awaitWaiting(singleFlight, 1);
+        release.countDown();
+
+        List<Future<String>> futures = Arrays.asList(first, waiter);
+        for (Future<String> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Expected an exception");
+            } catch (ExecutionException e) {
+                assertEquals("failed", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testWaiterTimesOutAndForgottenKeysStartANewCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(value -> value, 50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> first = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            return "stale";
+        }));
+        awaitCalls(singleFlight, 1);
+
+        try {
+            singleFlight.execute("key", () -> "value");
+            fail("Expected a timeout");
+        } catch (SQLTimeoutException e) {
+            assertEquals(1, singleFlight.timeouts());
+        }
+
+        singleFlight.forget("key");
+        assertEquals("fresh", singleFlight.execute("key", () -> "fresh"));
+        release.countDown();
+        assertEquals("stale", first.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitCalls(SingleFlight<?, ?> singleFlight, long calls) throws InterruptedException {
+        while (singleFlight.calls() < calls) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitWaiting(SingleFlight<?, ?> singleFlight, int waiting) throws InterruptedException {
+        while (singleFlight.waiting() < waiting) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.programmingskillz.util;
+
+import com.programmingskillz.domain.Book;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Durim Kryeziu
+ */
+public class BookXmlTest {
+
+    @Test
+    public void testBooksAreWrittenLikeTheXmlMapperWritesThem() throws Exception {
+        Book full = new Book();
+        full.setId("767a463c-4cc3-48c1-b93e-25c0d216032b");
+        full.setTitle("Tom & Jerry <\"Über\"> 😀");
+        full.setAuthor("Joshua Bloch");
+        full.setDescription("");
+        full.setIsbn("9780321356680");
+        full.setPages(346);
+        full.setPublisher("Addison-Wesley");
+        full.setPublished(Instant.parse("2008-05-28T00:00:00Z"));
+        Book sparse = new Book();
+        sparse.setTitle("Sparse");
+
+        List<Book> books = Arrays.asList(full, sparse, full);
+        StringBuilder expected = new StringBuilder("<books>");
+        for (Book book : books) {
+            expected.append(Mappers.xml().writeValueAsString(book));
+        }
+        expected.append("</books>");
+
+        assertEquals(expected.toString(), write(books, 2));
+        assertEquals("<books/>", write(Collections.emptyList(), 2));
+    }
+
+    private static String write(List<Book> books, int flushEvery) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BookXml.write(books, out, flushEvery);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}